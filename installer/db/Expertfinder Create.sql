@@ -17,6 +17,8 @@ CREATE  TABLE IF NOT EXISTS `expertfinder`.`document` (
   `id` INT NOT NULL ,
   `title` VARCHAR(255) NOT NULL ,
   `redirects_to` INT NULL ,
+  `id_latest_revision` INT NULL ,
+  `revision_count` INT NOT NULL DEFAULT 0 ,
   PRIMARY KEY (`id`) ,
   UNIQUE INDEX `document_title` (`title` ASC) ,
   INDEX `fk_document_document1` (`redirects_to` ASC) ,
@@ -69,6 +71,8 @@ CREATE  TABLE IF NOT EXISTS `expertfinder`.`revision` (
   PRIMARY KEY (`id`, `id_document`, `id_author`) ,
   INDEX `fk_revision_document1` (`id_document` ASC) ,
   INDEX `fk_revision_author1` (`id_author` ASC) ,
+  INDEX `revision_document_id` (`id_document` ASC, `id` ASC) ,
+  INDEX `revision_author_id` (`id_author` ASC, `id` ASC) ,
   CONSTRAINT `fk_revision_document1`
     FOREIGN KEY (`id_document` )
     REFERENCES `expertfinder`.`document` (`id` )
@@ -105,6 +109,7 @@ CREATE  TABLE IF NOT EXISTS `expertfinder`.`section` (
   INDEX `fk_section_section1` (`id_parent_section` ASC) ,
   INDEX `fk_section_revision1` (`id_revision_created` ASC) ,
   INDEX `fk_section_revision2` (`id_revision_deleted` ASC) ,
+  INDEX `section_created_deleted` (`id_revision_created` ASC, `id_revision_deleted` ASC) ,
   CONSTRAINT `fk_section_section1`
     FOREIGN KEY (`id_parent_section` )
     REFERENCES `expertfinder`.`section` (`id` )
@@ -168,6 +173,9 @@ CREATE  TABLE IF NOT EXISTS `expertfinder`.`word` (
   INDEX `fk_word_section1` (`id_section` ASC) ,
   INDEX `word_word` (`word` ASC) ,
   INDEX `word_wordstem` (`wordStem` ASC) ,
+  INDEX `word_concept_created` (`id_concept` ASC, `id_revision_created` ASC) ,
+  INDEX `word_section_deleted` (`id_section` ASC, `id_revision_deleted` ASC) ,
+  INDEX `word_created_deleted` (`id_revision_created` ASC, `id_revision_deleted` ASC) ,
   CONSTRAINT `fk_word_revision1`
     FOREIGN KEY (`id_revision_created` )
     REFERENCES `expertfinder`.`revision` (`id` )
@@ -236,6 +244,7 @@ CREATE  TABLE IF NOT EXISTS `expertfinder`.`section_has_concept` (
   `similarity` DOUBLE NULL ,
   INDEX `fk_section_has_concept_section1` (`id_section` ASC) ,
   INDEX `fk_section_has_concept_concept1` (`id_concept` ASC) ,
+  INDEX `section_has_concept_concept_section` (`id_concept` ASC, `id_section` ASC) ,
   PRIMARY KEY (`id`) ,
   CONSTRAINT `fk_section_has_concept_section1`
     FOREIGN KEY (`id_section` )
@@ -463,6 +472,67 @@ COLLATE = latin1_general_ci;
 SHOW WARNINGS;
 
 
+-- -----------------------------------------------------
+-- Table `expertfinder`.`id_sequence`
+-- -----------------------------------------------------
+DROP TABLE IF EXISTS `expertfinder`.`id_sequence` ;
+
+SHOW WARNINGS;
+CREATE  TABLE IF NOT EXISTS `expertfinder`.`id_sequence` (
+  `sequence_name` VARCHAR(255) NOT NULL ,
+  `next_val` BIGINT NOT NULL ,
+  PRIMARY KEY (`sequence_name`) )
+ENGINE = InnoDB
+DEFAULT CHARACTER SET = latin1
+COLLATE = latin1_general_ci;
+
+SHOW WARNINGS;
+
+-- -----------------------------------------------------
+-- Table `expertfinder`.`word_deleted`
+-- -----------------------------------------------------
+DROP TABLE IF EXISTS `expertfinder`.`word_deleted` ;
+
+SHOW WARNINGS;
+CREATE  TABLE IF NOT EXISTS `expertfinder`.`word_deleted` (
+  `id` INT NOT NULL ,
+  `word` VARCHAR(255) NOT NULL ,
+  `wordStem` VARCHAR(255) NULL ,
+  `startPos` INT NOT NULL ,
+  `endPos` INT NOT NULL ,
+  `id_revision_created` INT NULL ,
+  `id_revision_deleted` INT NULL ,
+  `id_concept` INT NULL ,
+  `id_section` INT NULL ,
+  `isNoun` TINYINT(1) NULL ,
+  PRIMARY KEY (`id`) ,
+  INDEX `word_deleted_concept_created` (`id_concept` ASC, `id_revision_created` ASC) ,
+  INDEX `word_deleted_section` (`id_section` ASC) ,
+  INDEX `word_deleted_created` (`id_revision_created` ASC) ,
+  INDEX `word_deleted_deleted` (`id_revision_deleted` ASC) )
+ENGINE = InnoDB
+DEFAULT CHARACTER SET = latin1
+COLLATE = latin1_general_ci;
+
+SHOW WARNINGS;
+
+-- -----------------------------------------------------
+-- View `expertfinder`.`word_all` (current and deleted words)
+-- -----------------------------------------------------
+CREATE OR REPLACE VIEW `expertfinder`.`word_all` AS
+  SELECT `id`, `word`, `wordStem`, `startPos`, `endPos`, `id_revision_created`, `id_revision_deleted`, `id_concept`, `id_section`, `isNoun` FROM `expertfinder`.`word`
+  UNION ALL
+  SELECT `id`, `word`, `wordStem`, `startPos`, `endPos`, `id_revision_created`, `id_revision_deleted`, `id_concept`, `id_section`, `isNoun` FROM `expertfinder`.`word_deleted`;
+
+SHOW WARNINGS;
+
+-- -----------------------------------------------------
+-- Schema version (see de.csw.expertfinder.persistence.SchemaMigrator)
+-- -----------------------------------------------------
+INSERT INTO `expertfinder`.`application_data` (`key`, `value`) VALUES ('SCHEMA_VERSION', '3');
+
+SHOW WARNINGS;
+
 SET SQL_MODE=@OLD_SQL_MODE;
 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS;
 SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS;
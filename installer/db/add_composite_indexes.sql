@@ -0,0 +1,13 @@
+-- Creates the composite indexes used by the contribution and revision queries on an existing
+-- database (schema version 1, see de.csw.expertfinder.persistence.SchemaMigrator). Alternatively,
+-- set persistence.schema.automigrate = true and the indexes are created at startup.
+CREATE INDEX `word_concept_created` ON `expertfinder`.`word` (`id_concept`, `id_revision_created`);
+CREATE INDEX `word_section_deleted` ON `expertfinder`.`word` (`id_section`, `id_revision_deleted`);
+CREATE INDEX `word_created_deleted` ON `expertfinder`.`word` (`id_revision_created`, `id_revision_deleted`);
+CREATE INDEX `revision_document_id` ON `expertfinder`.`revision` (`id_document`, `id`);
+CREATE INDEX `revision_author_id` ON `expertfinder`.`revision` (`id_author`, `id`);
+CREATE INDEX `section_created_deleted` ON `expertfinder`.`section` (`id_revision_created`, `id_revision_deleted`);
+CREATE INDEX `section_has_concept_concept_section` ON `expertfinder`.`section_has_concept` (`id_concept`, `id_section`);
+
+INSERT INTO `expertfinder`.`application_data` (`key`, `value`) VALUES ('SCHEMA_VERSION', '1')
+  ON DUPLICATE KEY UPDATE `value` = '1';
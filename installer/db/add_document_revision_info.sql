@@ -0,0 +1,13 @@
+-- Adds the latest revision id and the revision count to the document table of an existing
+-- database and fills them from the revision table (schema version 2, see
+-- de.csw.expertfinder.persistence.SchemaMigrator). Requires schema version 1
+-- (add_composite_indexes.sql).
+ALTER TABLE `expertfinder`.`document`
+  ADD COLUMN `id_latest_revision` INT NULL ,
+  ADD COLUMN `revision_count` INT NOT NULL DEFAULT 0 ;
+
+UPDATE `expertfinder`.`document` d SET
+  `id_latest_revision` = (SELECT MAX(r.`id`) FROM `expertfinder`.`revision` r WHERE r.`id_document` = d.`id`),
+  `revision_count` = (SELECT COUNT(*) FROM `expertfinder`.`revision` r WHERE r.`id_document` = d.`id`);
+
+UPDATE `expertfinder`.`application_data` SET `value` = '2' WHERE `key` = 'SCHEMA_VERSION';
@@ -0,0 +1,12 @@
+-- Creates the id_sequence table used by the block allocating identifier generator
+-- (words, sections and section concepts) on an existing database and initializes
+-- each sequence with the next free id.
+CREATE TABLE IF NOT EXISTS `expertfinder`.`id_sequence` (
+  `sequence_name` VARCHAR(255) NOT NULL ,
+  `next_val` BIGINT NOT NULL ,
+  PRIMARY KEY (`sequence_name`) )
+ENGINE = InnoDB;
+
+INSERT INTO `expertfinder`.`id_sequence` (`sequence_name`, `next_val`) SELECT 'word', COALESCE(MAX(`id`), 0) + 1 FROM `expertfinder`.`word`;
+INSERT INTO `expertfinder`.`id_sequence` (`sequence_name`, `next_val`) SELECT 'section', COALESCE(MAX(`id`), 0) + 1 FROM `expertfinder`.`section`;
+INSERT INTO `expertfinder`.`id_sequence` (`sequence_name`, `next_val`) SELECT 'section_has_concept', COALESCE(MAX(`id`), 0) + 1 FROM `expertfinder`.`section_has_concept`;
@@ -0,0 +1,30 @@
+-- Creates the table of deleted words and the view of all words on an existing database (schema
+-- version 3, see de.csw.expertfinder.persistence.SchemaMigrator). Requires schema version 2
+-- (add_document_revision_info.sql). Deleted words are moved from the word table at startup if
+-- persistence.splitdeletedwords is set to true.
+CREATE TABLE IF NOT EXISTS `expertfinder`.`word_deleted` (
+  `id` INT NOT NULL ,
+  `word` VARCHAR(255) NOT NULL ,
+  `wordStem` VARCHAR(255) NULL ,
+  `startPos` INT NOT NULL ,
+  `endPos` INT NOT NULL ,
+  `id_revision_created` INT NULL ,
+  `id_revision_deleted` INT NULL ,
+  `id_concept` INT NULL ,
+  `id_section` INT NULL ,
+  `isNoun` TINYINT(1) NULL ,
+  PRIMARY KEY (`id`) ,
+  INDEX `word_deleted_concept_created` (`id_concept` ASC, `id_revision_created` ASC) ,
+  INDEX `word_deleted_section` (`id_section` ASC) ,
+  INDEX `word_deleted_created` (`id_revision_created` ASC) ,
+  INDEX `word_deleted_deleted` (`id_revision_deleted` ASC) )
+ENGINE = InnoDB
+DEFAULT CHARACTER SET = latin1
+COLLATE = latin1_general_ci;
+
+CREATE OR REPLACE VIEW `expertfinder`.`word_all` AS
+  SELECT `id`, `word`, `wordStem`, `startPos`, `endPos`, `id_revision_created`, `id_revision_deleted`, `id_concept`, `id_section`, `isNoun` FROM `expertfinder`.`word`
+  UNION ALL
+  SELECT `id`, `word`, `wordStem`, `startPos`, `endPos`, `id_revision_created`, `id_revision_deleted`, `id_concept`, `id_section`, `isNoun` FROM `expertfinder`.`word_deleted`;
+
+UPDATE `expertfinder`.`application_data` SET `value` = '3' WHERE `key` = 'SCHEMA_VERSION';
@@ -28,9 +28,12 @@ package de.csw.expertfinder;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.collections.iterators.EmptyIterator;
@@ -42,6 +45,7 @@ import com.hp.hpl.jena.ontology.OntModel;
 import de.csw.expertfinder.config.Config;
 import de.csw.expertfinder.expertise.ExpertiseModel;
 import de.csw.expertfinder.ontology.OntologyIndex;
+import de.csw.expertfinder.persistence.PersistenceStoreFacade;
 
 /**
  * This class implements the backend handle for the ExpertFinder application.
@@ -230,4 +234,57 @@ public class ExpertFinder {
 	public double getReputation(String authorName, String topicName) {
 		return ExpertiseModel.get().getCredibility(authorName, topicName);
 	}
+	
+	/**
+	 * Returns the consolidated expertise scores of the given authors for the
+	 * given topic (see {@link #getExpertise(String, String)}). All scores are
+	 * read in one transaction.
+	 * 
+	 * @param authorNames
+	 * @param topicName
+	 * @return the expertise scores by author name.
+	 */
+	public Map<String, Double> getExpertise(Collection<String> authorNames, String topicName) {
+		ExpertiseModel expertiseModel = ExpertiseModel.get();
+		PersistenceStoreFacade persistenceStore = PersistenceStoreFacade.get();
+		Map<String, Double> result = new LinkedHashMap<String, Double>();
+		
+		persistenceStore.beginUnitOfWork(true);
+		try {
+			for (String authorName : authorNames) {
+				result.put(authorName, expertiseModel.getExpertiseScore(authorName, topicName));
+			}
+			persistenceStore.commitUnitOfWork();
+		} finally {
+			persistenceStore.endUnitOfWork();
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the reputations of the given authors wrt. the given topic (see
+	 * {@link #getReputation(String, String)}). All reputations are calculated
+	 * in one transaction.
+	 * 
+	 * @param authorNames
+	 * @param topicName
+	 * @return the reputations by author name.
+	 */
+	public Map<String, Double> getReputation(Collection<String> authorNames, String topicName) {
+		ExpertiseModel expertiseModel = ExpertiseModel.get();
+		PersistenceStoreFacade persistenceStore = PersistenceStoreFacade.get();
+		Map<String, Double> result = new LinkedHashMap<String, Double>();
+		
+		// calculated reputations are stored, thus read-write
+		persistenceStore.beginUnitOfWork(false);
+		try {
+			for (String authorName : authorNames) {
+				result.put(authorName, expertiseModel.getCredibility(authorName, topicName));
+			}
+			persistenceStore.commitUnitOfWork();
+		} finally {
+			persistenceStore.endUnitOfWork();
+		}
+		return result;
+	}
 }
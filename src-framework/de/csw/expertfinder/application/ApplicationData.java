@@ -37,6 +37,9 @@ public class ApplicationData {
 	
 	/** Key for the ontology file md5 string */
 	public static final String ONTOLOGY_MD5 = "ONTOLOGY_MD5";
+	
+	/** Key for the version of the latest applied schema migration */
+	public static final String SCHEMA_VERSION = "SCHEMA_VERSION";
 
 	private String key;
 	private String value;
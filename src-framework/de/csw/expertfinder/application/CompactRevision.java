@@ -0,0 +1,504 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.application;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import de.csw.expertfinder.document.Concept;
+import de.csw.expertfinder.document.Noun;
+import de.csw.expertfinder.document.Revision;
+import de.csw.expertfinder.document.Section;
+import de.csw.expertfinder.document.SectionConcept;
+import de.csw.expertfinder.document.Sentence;
+import de.csw.expertfinder.document.Word;
+
+/**
+ * A compact encoding of the last revision of an article, see
+ * {@link RevisionStore}. The strings of the revision are stored once in a
+ * string table, the properties of its sections, sentences and words in
+ * parallel arrays. The revisions in which the sections and words have been
+ * created and the concepts associated with them are stored by id.
+ * 
+ * {@link #toRevision()} rebuilds the revision as far as it is needed for the
+ * comparison with the next revision of the article: its sections and words
+ * are detached entities with their persistent ids, the revisions and
+ * concepts they refer to are new instances carrying only their ids (and
+ * URIs). The rebuilt revision itself has no document and no author.
+ * 
+ * @author ralph
+ */
+class CompactRevision {
+	
+	private static final int NONE = -1;
+	
+	private long id;
+	private long count;
+	
+	private String[] strings;
+	
+	private long[] revisionIds;
+	
+	private long[] conceptIds;
+	private int[] conceptUris;
+	
+	private long[] sectionIds;
+	private int[] sectionTitles;
+	private int[] sectionLevels;
+	private int[] sectionStarts;
+	private int[] sectionEnds;
+	private int[] sectionParents;
+	private int[] sectionRevisions;
+	/** the index of the first sentence of each section, followed by the number of sentences */
+	private int[] sectionSentences;
+	/** the index of the first section concept of each section, followed by the number of section concepts */
+	private int[] sectionConcepts;
+	
+	private long[] sectionConceptIds;
+	private int[] sectionConceptConcepts;
+	private double[] sectionConceptSimilarities;
+	
+	/** the index of the first word of each sentence, followed by the number of words */
+	private int[] sentenceWords;
+	
+	private long[] wordIds;
+	private int[] wordStrings;
+	private int[] wordStems;
+	private int[] wordStarts;
+	private int[] wordEnds;
+	private int[] wordSections;
+	private int[] wordRevisions;
+	private int[] wordConcepts;
+	private boolean[] nouns;
+	
+	private CompactRevision() {
+	}
+	
+	/**
+	 * Encodes the given revision.
+	 * @param revision
+	 * @return the encoded revision or null if some of its sections or words
+	 * have not been saved yet, i.e. have no id.
+	 */
+	static CompactRevision encode(Revision revision) {
+		CompactRevision result = new CompactRevision();
+		Encoder encoder = new Encoder();
+		
+		result.id = revision.getId();
+		result.count = revision.getCount();
+		
+		List<Section> sections = revision.getSections();
+		int sectionCount = sections.size();
+		int sentenceCount = 0;
+		int sectionConceptCount = 0;
+		int wordCount = 0;
+		IdentityHashMap<Section, Integer> sectionIndexes = new IdentityHashMap<Section, Integer>();
+		for (int i = 0; i < sectionCount; i++) {
+			Section section = sections.get(i);
+			if (section.getId() == null)
+				return null;
+			sectionIndexes.put(section, i);
+			Set<SectionConcept> concepts = section.getConcepts();
+			if (concepts != null)
+				sectionConceptCount += concepts.size();
+			for (Sentence sentence : section.getSentences(false)) {
+				sentenceCount++;
+				wordCount += sentence.getWords().size();
+			}
+		}
+		
+		result.sectionIds = new long[sectionCount];
+		result.sectionTitles = new int[sectionCount];
+		result.sectionLevels = new int[sectionCount];
+		result.sectionStarts = new int[sectionCount];
+		result.sectionEnds = new int[sectionCount];
+		result.sectionParents = new int[sectionCount];
+		result.sectionRevisions = new int[sectionCount];
+		result.sectionSentences = new int[sectionCount + 1];
+		result.sectionConcepts = new int[sectionCount + 1];
+		result.sectionConceptIds = new long[sectionConceptCount];
+		result.sectionConceptConcepts = new int[sectionConceptCount];
+		result.sectionConceptSimilarities = new double[sectionConceptCount];
+		result.sentenceWords = new int[sentenceCount + 1];
+		result.wordIds = new long[wordCount];
+		result.wordStrings = new int[wordCount];
+		result.wordStems = new int[wordCount];
+		result.wordStarts = new int[wordCount];
+		result.wordEnds = new int[wordCount];
+		result.wordSections = new int[wordCount];
+		result.wordRevisions = new int[wordCount];
+		result.wordConcepts = new int[wordCount];
+		result.nouns = new boolean[wordCount];
+		
+		int sentenceIndex = 0;
+		int sectionConceptIndex = 0;
+		int wordIndex = 0;
+		for (int i = 0; i < sectionCount; i++) {
+			Section section = sections.get(i);
+			result.sectionIds[i] = section.getId();
+			result.sectionTitles[i] = encoder.string(section.getTitle());
+			result.sectionLevels[i] = section.getLevel();
+			result.sectionStarts[i] = section.getStartPos();
+			result.sectionEnds[i] = section.getEndPos();
+			result.sectionParents[i] = index(sectionIndexes, section.getParentSection());
+			result.sectionRevisions[i] = encoder.revision(section.getRevisionCreated());
+			
+			result.sectionConcepts[i] = sectionConceptIndex;
+			Set<SectionConcept> concepts = section.getConcepts();
+			if (concepts != null) {
+				for (SectionConcept sectionConcept : concepts) {
+					if (sectionConcept.getId() == null || !hasId(sectionConcept.getConcept()))
+						return null;
+					result.sectionConceptIds[sectionConceptIndex] = (Long)sectionConcept.getId();
+					result.sectionConceptConcepts[sectionConceptIndex] = encoder.concept(sectionConcept.getConcept());
+					result.sectionConceptSimilarities[sectionConceptIndex] = sectionConcept.getSimilarity();
+					sectionConceptIndex++;
+				}
+			}
+			
+			result.sectionSentences[i] = sentenceIndex;
+			for (Sentence sentence : section.getSentences(false)) {
+				result.sentenceWords[sentenceIndex++] = wordIndex;
+				for (Word word : sentence.getWords()) {
+					if (word.getId() == null || !hasId(word.getConcept()))
+						return null;
+					result.wordIds[wordIndex] = word.getId();
+					result.wordStrings[wordIndex] = encoder.string(word.getWord());
+					result.wordStems[wordIndex] = encoder.string(word.getWordStem());
+					result.wordStarts[wordIndex] = word.getStartPos();
+					result.wordEnds[wordIndex] = word.getEndPos();
+					result.wordSections[wordIndex] = index(sectionIndexes, word.getSection());
+					result.wordRevisions[wordIndex] = encoder.revision(word.getRevisionCreated());
+					result.wordConcepts[wordIndex] = encoder.concept(word.getConcept());
+					result.nouns[wordIndex] = word instanceof Noun;
+					wordIndex++;
+				}
+			}
+		}
+		result.sectionSentences[sectionCount] = sentenceIndex;
+		result.sectionConcepts[sectionCount] = sectionConceptIndex;
+		result.sentenceWords[sentenceCount] = wordIndex;
+		
+		result.strings = encoder.strings.toArray(new String[encoder.strings.size()]);
+		result.revisionIds = toLongArray(encoder.revisionIds);
+		result.conceptIds = toLongArray(encoder.conceptIds);
+		result.conceptUris = new int[encoder.conceptUris.size()];
+		for (int i = 0; i < result.conceptUris.length; i++) {
+			result.conceptUris[i] = encoder.conceptUris.get(i);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Rebuilds the revision from this encoding.
+	 * @return
+	 */
+	Revision toRevision() {
+		Revision revision = new Revision(id, null, null, null);
+		revision.setCount(count);
+		
+		Revision[] revisions = new Revision[revisionIds.length];
+		for (int i = 0; i < revisions.length; i++) {
+			revisions[i] = revisionIds[i] == id ? revision : new Revision(revisionIds[i], null, null, null);
+		}
+		
+		Concept[] concepts = new Concept[conceptIds.length];
+		for (int i = 0; i < concepts.length; i++) {
+			concepts[i] = new Concept(strings[conceptUris[i]]);
+			concepts[i].setId(conceptIds[i]);
+		}
+		
+		int sectionCount = sectionIds.length;
+		Section[] sections = new Section[sectionCount];
+		for (int i = 0; i < sectionCount; i++) {
+			Section section = new Section(string(sectionTitles[i]), sectionLevels[i], sectionStarts[i], sectionEnds[i]);
+			section.setId(sectionIds[i]);
+			section.setRevisionCreated(element(revisions, sectionRevisions[i]));
+			
+			int firstSectionConcept = sectionConcepts[i];
+			int lastSectionConcept = sectionConcepts[i + 1];
+			if (firstSectionConcept < lastSectionConcept) {
+				HashSet<SectionConcept> sectionConceptSet = new HashSet<SectionConcept>();
+				for (int j = firstSectionConcept; j < lastSectionConcept; j++) {
+					SectionConcept sectionConcept = new SectionConcept(section, concepts[sectionConceptConcepts[j]], sectionConceptSimilarities[j]);
+					sectionConcept.setId(sectionConceptIds[j]);
+					sectionConceptSet.add(sectionConcept);
+				}
+				section.setConcepts(sectionConceptSet);
+			}
+			
+			sections[i] = section;
+			revision.addSection(section);
+		}
+		
+		// Child sections are returned in the order they have been added to
+		// their parent. The consumer adds them in the order of the text.
+		Integer[] byPosition = new Integer[sectionCount];
+		for (int i = 0; i < sectionCount; i++) {
+			byPosition[i] = i;
+		}
+		Arrays.sort(byPosition, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return sectionStarts[i1] - sectionStarts[i2];
+			}
+		});
+		for (Integer i : byPosition) {
+			if (sectionParents[i] != NONE)
+				sections[i].setParentSection(sections[sectionParents[i]]);
+		}
+		
+		for (int i = 0; i < sectionCount; i++) {
+			for (int j = sectionSentences[i]; j < sectionSentences[i + 1]; j++) {
+				Sentence sentence = new Sentence();
+				for (int k = sentenceWords[j]; k < sentenceWords[j + 1]; k++) {
+					Word word;
+					if (nouns[k]) {
+						word = new Noun(string(wordStrings[k]), string(wordStems[k]), wordStarts[k], wordEnds[k]);
+					} else {
+						word = new Word(string(wordStrings[k]), string(wordStems[k]), wordStarts[k], wordEnds[k]);
+					}
+					word.setId(wordIds[k]);
+					word.setSection(element(sections, wordSections[k]));
+					word.setRevisionCreated(element(revisions, wordRevisions[k]));
+					word.setConcept(element(concepts, wordConcepts[k]));
+					sentence.addWord(word);
+				}
+				sections[i].addSentence(sentence);
+			}
+		}
+		
+		return revision;
+	}
+	
+	/**
+	 * Writes this encoding to the given output.
+	 * @param out
+	 * @throws IOException
+	 */
+	void writeTo(DataOutput out) throws IOException {
+		out.writeLong(id);
+		out.writeLong(count);
+		out.writeInt(strings.length);
+		for (String string : strings) {
+			out.writeUTF(string);
+		}
+		write(out, revisionIds);
+		write(out, conceptIds);
+		write(out, conceptUris);
+		write(out, sectionIds);
+		write(out, sectionTitles);
+		write(out, sectionLevels);
+		write(out, sectionStarts);
+		write(out, sectionEnds);
+		write(out, sectionParents);
+		write(out, sectionRevisions);
+		write(out, sectionSentences);
+		write(out, sectionConcepts);
+		write(out, sectionConceptIds);
+		write(out, sectionConceptConcepts);
+		out.writeInt(sectionConceptSimilarities.length);
+		for (double similarity : sectionConceptSimilarities) {
+			out.writeDouble(similarity);
+		}
+		write(out, sentenceWords);
+		write(out, wordIds);
+		write(out, wordStrings);
+		write(out, wordStems);
+		write(out, wordStarts);
+		write(out, wordEnds);
+		write(out, wordSections);
+		write(out, wordRevisions);
+		write(out, wordConcepts);
+		out.writeInt(nouns.length);
+		for (boolean noun : nouns) {
+			out.writeBoolean(noun);
+		}
+	}
+	
+	/**
+	 * Reads an encoding written by {@link #writeTo(DataOutput)}.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	static CompactRevision readFrom(DataInput in) throws IOException {
+		CompactRevision result = new CompactRevision();
+		result.id = in.readLong();
+		result.count = in.readLong();
+		result.strings = new String[in.readInt()];
+		for (int i = 0; i < result.strings.length; i++) {
+			result.strings[i] = in.readUTF();
+		}
+		result.revisionIds = readLongs(in);
+		result.conceptIds = readLongs(in);
+		result.conceptUris = readInts(in);
+		result.sectionIds = readLongs(in);
+		result.sectionTitles = readInts(in);
+		result.sectionLevels = readInts(in);
+		result.sectionStarts = readInts(in);
+		result.sectionEnds = readInts(in);
+		result.sectionParents = readInts(in);
+		result.sectionRevisions = readInts(in);
+		result.sectionSentences = readInts(in);
+		result.sectionConcepts = readInts(in);
+		result.sectionConceptIds = readLongs(in);
+		result.sectionConceptConcepts = readInts(in);
+		result.sectionConceptSimilarities = new double[in.readInt()];
+		for (int i = 0; i < result.sectionConceptSimilarities.length; i++) {
+			result.sectionConceptSimilarities[i] = in.readDouble();
+		}
+		result.sentenceWords = readInts(in);
+		result.wordIds = readLongs(in);
+		result.wordStrings = readInts(in);
+		result.wordStems = readInts(in);
+		result.wordStarts = readInts(in);
+		result.wordEnds = readInts(in);
+		result.wordSections = readInts(in);
+		result.wordRevisions = readInts(in);
+		result.wordConcepts = readInts(in);
+		result.nouns = new boolean[in.readInt()];
+		for (int i = 0; i < result.nouns.length; i++) {
+			result.nouns[i] = in.readBoolean();
+		}
+		return result;
+	}
+	
+	private static boolean hasId(Concept concept) {
+		return concept == null || concept.getId() != null;
+	}
+	
+	private String string(int index) {
+		return index == NONE ? null : strings[index];
+	}
+	
+	private static <T> T element(T[] array, int index) {
+		return index == NONE ? null : array[index];
+	}
+	
+	private static int index(IdentityHashMap<Section, Integer> sectionIndexes, Section section) {
+		Integer index = section == null ? null : sectionIndexes.get(section);
+		return index == null ? NONE : index;
+	}
+	
+	private static long[] toLongArray(List<Long> list) {
+		long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i);
+		}
+		return result;
+	}
+	
+	private static void write(DataOutput out, int[] array) throws IOException {
+		out.writeInt(array.length);
+		for (int value : array) {
+			out.writeInt(value);
+		}
+	}
+	
+	private static void write(DataOutput out, long[] array) throws IOException {
+		out.writeInt(array.length);
+		for (long value : array) {
+			out.writeLong(value);
+		}
+	}
+	
+	private static int[] readInts(DataInput in) throws IOException {
+		int[] result = new int[in.readInt()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = in.readInt();
+		}
+		return result;
+	}
+	
+	private static long[] readLongs(DataInput in) throws IOException {
+		long[] result = new long[in.readInt()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = in.readLong();
+		}
+		return result;
+	}
+	
+	/**
+	 * Collects the strings, revisions and concepts of a revision while it is
+	 * encoded.
+	 */
+	private static class Encoder {
+		private ArrayList<String> strings = new ArrayList<String>();
+		private HashMap<String, Integer> stringIndexes = new HashMap<String, Integer>();
+		private ArrayList<Long> revisionIds = new ArrayList<Long>();
+		private HashMap<Long, Integer> revisionIndexes = new HashMap<Long, Integer>();
+		private ArrayList<Long> conceptIds = new ArrayList<Long>();
+		private ArrayList<Integer> conceptUris = new ArrayList<Integer>();
+		private HashMap<Long, Integer> conceptIndexes = new HashMap<Long, Integer>();
+		
+		int string(String string) {
+			if (string == null)
+				return NONE;
+			Integer index = stringIndexes.get(string);
+			if (index == null) {
+				index = strings.size();
+				strings.add(string);
+				stringIndexes.put(string, index);
+			}
+			return index;
+		}
+		
+		int revision(Revision revision) {
+			if (revision == null)
+				return NONE;
+			Integer index = revisionIndexes.get(revision.getId());
+			if (index == null) {
+				index = revisionIds.size();
+				revisionIds.add(revision.getId());
+				revisionIndexes.put(revision.getId(), index);
+			}
+			return index;
+		}
+		
+		int concept(Concept concept) {
+			if (concept == null)
+				return NONE;
+			Integer index = conceptIndexes.get(concept.getId());
+			if (index == null) {
+				index = conceptIds.size();
+				conceptIds.add(concept.getId());
+				conceptUris.add(string(concept.getUri()));
+				conceptIndexes.put(concept.getId(), index);
+			}
+			return index;
+		}
+	}
+}
@@ -25,33 +25,249 @@
  ******************************************************************************/
 package de.csw.expertfinder.application;
 
-import java.util.HashMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 
+import org.apache.log4j.Logger;
+
+import cern.colt.map.OpenIntIntHashMap;
+import de.csw.expertfinder.config.Config;
 import de.csw.expertfinder.document.Revision;
 
 /**
+ * Keeps the last revision of each article for the comparison with the next
+ * revision of the article.
+ * 
+ * Only the revision stored last is kept as is. All other revisions are kept
+ * in a compact encoding (see {@link CompactRevision}) and rebuilt by
+ * {@link #getLastRevision()}. Revisions whose new sections and words have not
+ * been saved yet (because they are waiting in the write-behind queue) cannot
+ * be encoded and are kept as is until they have been saved.
+ * 
+ * At most {@link Config.Key#REVISION_STORE_SIZE} revisions are kept in memory.
+ * The least recently used ones are spilled to a temporary file in
+ * {@link Config.Key#REVISION_STORE_SPILL_DIRECTORY} and read back when the next
+ * revision of their article is processed. The space of revisions read back
+ * is only reclaimed once all spilled revisions have been read back.
+ * 
  * @author ralph
- *
  */
 public class RevisionStore {
-	private static HashMap<Integer, RevisionStore> instances = new HashMap<Integer, RevisionStore>();
 	
-	public static RevisionStore get(int articleId) {
+	private static final Logger log = Logger.getLogger(RevisionStore.class);
+	
+	/** The stores in memory, least recently used first */
+	private static LinkedHashMap<Integer, RevisionStore> instances;
+	private static int maxSize;
+	
+	/** The stores whose last revision has not been encoded yet */
+	private static LinkedList<RevisionStore> uncompacted = new LinkedList<RevisionStore>();
+
+	/** 
+	 * The positions of the spilled revisions in the spill file by article id.
+	 * Revisions are written at multiples of 8 bytes, the map contains the
+	 * positions divided by 8.
+	 */
+	private static OpenIntIntHashMap spilled = new OpenIntIntHashMap();
+	private static File spillFile;
+	private static RandomAccessFile spillData;
+	
+	public static synchronized RevisionStore get(int articleId) {
+		if (instances == null) {
+			instances = new LinkedHashMap<Integer, RevisionStore>(16, 0.75f, true);
+			maxSize = Config.getIntAppProperty(Config.Key.REVISION_STORE_SIZE);
+		}
 		RevisionStore store = instances.get(articleId);
 		if (store == null) {
-			store = new RevisionStore();
-			instances.put(articleId, store);
+			store = new RevisionStore(articleId);
+			store.attach(true);
 		}
 		return store;
 	}
 	
+	/**
+	 * Forgets the last revision of the given article, e.g. because its
+	 * entities have been changed by a transaction that has been rolled back.
+	 * @param articleId
+	 */
+	public static synchronized void remove(int articleId) {
+		if (instances == null)
+			return;
+		RevisionStore store = instances.remove(articleId);
+		if (store != null) {
+			store.lastRevision = null;
+			store.compactRevision = null;
+			uncompacted.remove(store);
+		}
+		spilled.removeKey(articleId);
+	}
+	
+	/**
+	 * Forgets all revisions and deletes the spill file.
+	 */
+	public static synchronized void clear() {
+		instances = null;
+		uncompacted.clear();
+		spilled.clear();
+		if (spillData != null) {
+			try {
+				spillData.close();
+			} catch (IOException e) {
+				log.warn("Could not close " + spillFile, e);
+			}
+			spillFile.delete();
+			spillData = null;
+			spillFile = null;
+		}
+	}
+	
+	private int articleId;
+	
 	private Revision lastRevision;
+	private CompactRevision compactRevision;
+	
+	private RevisionStore(int articleId) {
+		this.articleId = articleId;
+	}
 
+	/**
+	 * Returns the last revision of this store's article. Unless it is the
+	 * revision stored last, it is a copy rebuilt from its compact encoding.
+	 * @return the last revision or null if no revision has been stored yet.
+	 */
 	public Revision getLastRevision() {
-		return lastRevision;
+		CompactRevision encoded;
+		synchronized (RevisionStore.class) {
+			attach(true);
+			if (lastRevision != null)
+				return lastRevision;
+			encoded = compactRevision;
+		}
+		return encoded == null ? null : encoded.toRevision();
 	}
 
 	public void setLastRevision(Revision lastRevision) {
-		this.lastRevision = lastRevision;
+		synchronized (RevisionStore.class) {
+			attach(false);
+			compactRevision = null;
+			this.lastRevision = lastRevision;
+			if (!uncompacted.contains(this))
+				uncompacted.add(this);
+			compact();
+			evict(this);
+		}
+	}
+	
+	/**
+	 * Puts this store into the map of stores in memory, if it has been
+	 * spilled or removed since it has been retrieved.
+	 * @param load whether a spilled revision is read back. 
+	 */
+	private void attach(boolean load) {
+		if (instances.get(articleId) == this)
+			return;
+		if (spilled.containsKey(articleId)) {
+			if (load)
+				compactRevision = readSpilled(articleId, (long)spilled.get(articleId) << 3);
+			spilled.removeKey(articleId);
+			if (spilled.isEmpty())
+				truncateSpillFile();
+		}
+		instances.put(articleId, this);
+		evict(this);
+	}
+	
+	/**
+	 * Encodes the last revisions of all stores except the one stored last, as
+	 * far as their entities have been saved. 
+	 */
+	private void compact() {
+		for (Iterator<RevisionStore> iter = uncompacted.iterator(); iter.hasNext();) {
+			RevisionStore store = iter.next();
+			if (store == this)
+				continue;
+			if (store.lastRevision == null) {
+				iter.remove();
+				continue;
+			}
+			CompactRevision compactRevision = CompactRevision.encode(store.lastRevision);
+			if (compactRevision != null) {
+				store.compactRevision = compactRevision;
+				store.lastRevision = null;
+				iter.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Spills the least recently used stores until there are at most
+	 * {@link Config.Key#REVISION_STORE_SIZE} stores in memory. Stores with
+	 * a revision that has not been encoded yet are skipped.
+	 * @param current the store being used, which is not spilled either.
+	 */
+	private static void evict(RevisionStore current) {
+		for (Iterator<RevisionStore> iter = instances.values().iterator(); instances.size() > maxSize && iter.hasNext();) {
+			RevisionStore store = iter.next();
+			if (store == current || store.lastRevision != null)
+				continue;
+			if (store.compactRevision == null || spill(store)) {
+				store.compactRevision = null;
+				iter.remove();
+			}
+		}
+	}
+	
+	private static boolean spill(RevisionStore store) {
+		try {
+			if (spillData == null) {
+				spillFile = File.createTempFile("revisions", ".spill", new File(Config.getAppProperty(Config.Key.REVISION_STORE_SPILL_DIRECTORY)));
+				spillFile.deleteOnExit();
+				spillData = new RandomAccessFile(spillFile, "rw");
+				log.info("Spilling the least recently used revisions to " + spillFile);
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			store.compactRevision.writeTo(out);
+			out.close();
+			
+			long position = (spillData.length() + 7) & ~7L;
+			if (position >> 3 > Integer.MAX_VALUE)
+				throw new IOException("The spill file " + spillFile + " is full.");
+			spillData.seek(position);
+			spillData.writeInt(bytes.size());
+			spillData.write(bytes.toByteArray());
+			spilled.put(store.articleId, (int)(position >> 3));
+			return true;
+		} catch (IOException e) {
+			log.error("Could not spill the last revision of article " + store.articleId + ", keeping it in memory.", e);
+			return false;
+		}
+	}
+	
+	private static CompactRevision readSpilled(int articleId, long position) {
+		try {
+			spillData.seek(position);
+			byte[] bytes = new byte[spillData.readInt()];
+			spillData.readFully(bytes);
+			return CompactRevision.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read the last revision of article " + articleId + " from " + spillFile, e);
+		}
+	}
+	
+	private static void truncateSpillFile() {
+		try {
+			spillData.setLength(0);
+		} catch (IOException e) {
+			log.warn("Could not truncate " + spillFile, e);
+		}
 	}
 }
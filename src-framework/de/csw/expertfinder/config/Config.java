@@ -125,7 +125,129 @@ public class Config {
 		EXPERTISE_WEIGHT_SECTION_3_CONTRIBUTION ("expertise.weight.section_3_contribution", Integer.class, true),
 		EXPERTISE_WEIGHT_SECTION_4_CONTRIBUTION ("expertise.weight.section_4_contribution", Integer.class, true),
 		EXPERTISE_WEIGHT_SECTION_5_CONTRIBUTION ("expertise.weight.section_5_contribution", Integer.class, true),
-		EXPERTISE_WEIGHT_SECTION_6_CONTRIBUTION ("expertise.weight.section_6_contribution", Integer.class, true)
+		EXPERTISE_WEIGHT_SECTION_6_CONTRIBUTION ("expertise.weight.section_6_contribution", Integer.class, true),
+		
+		/** 
+		 * Boolean property indicating whether the entities of a revision are written
+		 * to the database with batched JDBC statements (true) or one by one through
+		 * the hibernate session (false). 
+		 */
+		PERSISTENCE_BULK_WRITE ("persistence.bulkwrite", Boolean.class, false, true),
+		
+		/** The maximum number of rows written by a single batched statement */
+		PERSISTENCE_BATCH_SIZE ("persistence.batchsize", Integer.class, false, 250),
+		
+		/** The number of identifiers that are allocated at once from the id sequence table */
+		PERSISTENCE_ID_BLOCK_SIZE ("persistence.id.blocksize", Integer.class, false, 500),
+		
+		/** The number of database connections opened when the connection pool is created */
+		PERSISTENCE_POOL_MIN_SIZE ("persistence.pool.minsize", Integer.class, false, 2),
+		
+		/** The maximum number of database connections in use at the same time */
+		PERSISTENCE_POOL_MAX_SIZE ("persistence.pool.maxsize", Integer.class, false, 10),
+		
+		/** Milliseconds a thread waits for a free database connection before failing */
+		PERSISTENCE_POOL_ACQUIRE_TIMEOUT ("persistence.pool.acquiretimeout", Integer.class, false, 30000),
+		
+		/** Milliseconds after which an unused database connection is closed */
+		PERSISTENCE_POOL_IDLE_TIMEOUT ("persistence.pool.idletimeout", Integer.class, false, 600000),
+		
+		/** The number of prepared statements cached per connection (0 disables statement caching) */
+		PERSISTENCE_POOL_STATEMENT_CACHE_SIZE ("persistence.pool.statementcachesize", Integer.class, false, 250),
+		
+		/** The maximum number of concepts cached by their URIs */
+		PERSISTENCE_CACHE_CONCEPTS ("persistence.cache.concepts", Integer.class, false, 20000),
+		
+		/** The maximum number of authors cached by their names */
+		PERSISTENCE_CACHE_AUTHORS ("persistence.cache.authors", Integer.class, false, 10000),
+		
+		/** The maximum number of categories cached by their names */
+		PERSISTENCE_CACHE_CATEGORIES ("persistence.cache.categories", Integer.class, false, 5000),
+		
+		/** The number of rows fetched at once when large query results are streamed */
+		PERSISTENCE_FETCH_SIZE ("persistence.fetchsize", Integer.class, false, 1000),
+		
+		/** Boolean property indicating whether pending schema migrations are applied at startup */
+		PERSISTENCE_SCHEMA_AUTO_MIGRATE ("persistence.schema.automigrate", Boolean.class, false, false),
+		
+		/** The storage backend: "mysql" (configured in hibernate.cfg.xml) or "sqlite" (embedded database file) */
+		PERSISTENCE_STORAGE ("persistence.storage", String.class, false, "mysql"),
+		
+		/** The database file of the embedded storage backend */
+		PERSISTENCE_SQLITE_FILE ("persistence.sqlite.file", String.class, false, "expertfinder.db"),
+		
+		/** Boolean property indicating whether deleted words are moved from the word table to a table of their own */
+		PERSISTENCE_SPLIT_DELETED_WORDS ("persistence.splitdeletedwords", Boolean.class, false, false),
+		
+		/** 
+		 * Boolean property indicating whether the entities of a revision are written
+		 * to the database by background threads (write-behind), so that the analysis
+		 * of the next revisions does not wait for the database.
+		 */
+		PERSISTENCE_WRITE_BEHIND ("persistence.writebehind", Boolean.class, false, false),
+		
+		/** The number of threads writing revisions to the database in write-behind mode */
+		PERSISTENCE_WRITE_BEHIND_THREADS ("persistence.writebehind.threads", Integer.class, false, 1),
+		
+		/** The maximum number of revisions waiting to be written per write-behind thread */
+		PERSISTENCE_WRITE_BEHIND_QUEUE_SIZE ("persistence.writebehind.queuesize", Integer.class, false, 8),
+		
+		/** Whether hibernate statistics and the execution times of the persistence facade's methods are collected */
+		PERSISTENCE_STATISTICS ("persistence.statistics", Boolean.class, false, false),
+		
+		/** The interval in seconds at which the persistence statistics are logged (0 disables logging) */
+		PERSISTENCE_STATISTICS_LOG_INTERVAL ("persistence.statistics.loginterval", Integer.class, false, 300),
+		
+		/** Queries taking longer than this number of milliseconds are logged (0 disables the slow query log) */
+		PERSISTENCE_SLOW_QUERY_THRESHOLD ("persistence.slowquery.threshold", Integer.class, false, 1000),
+		
+		/** Whether the persistence statistics are published as JMX MBeans */
+		PERSISTENCE_JMX ("persistence.jmx", Boolean.class, false, false),
+		
+		/** The maximum number of concepts the entity resolver keeps in memory */
+		PERSISTENCE_RESOLVER_CONCEPTS ("persistence.resolver.concepts", Integer.class, false, 100000),
+		
+		/** The maximum number of documents the entity resolver keeps the latest revision id of */
+		PERSISTENCE_RESOLVER_DOCUMENTS ("persistence.resolver.documents", Integer.class, false, 2000000),
+		
+		/** The maximum number of revisions committed in one transaction */
+		PERSISTENCE_COMMIT_REVISIONS ("persistence.commit.revisions", Integer.class, false, 1),
+		
+		/** The maximum time in milliseconds a transaction containing several revisions is kept open (0 = no limit) */
+		PERSISTENCE_COMMIT_INTERVAL ("persistence.commit.interval", Integer.class, false, 0),
+		
+		/** The maximum number of articles whose last revision is kept in memory */
+		REVISION_STORE_SIZE ("revisionstore.size", Integer.class, false, 10000),
+		
+		/** The directory of the file the least recently used revisions are spilled to */
+		REVISION_STORE_SPILL_DIRECTORY ("revisionstore.spilldirectory", String.class, false, System.getProperty("java.io.tmpdir")),
+		
+		/** The number of threads processing revisions in the consumer, the articles are partitioned among them */
+		CONSUMER_THREADS ("consumer.threads", Integer.class, false, 1),
+		
+		/** The maximum number of revisions waiting for each consumer thread */
+		CONSUMER_QUEUE_SIZE ("consumer.queuesize", Integer.class, false, 16),
+		
+		/** The maximum number of section titles (with the titles of their ancestors) whose concepts are cached */
+		SECTION_TITLE_CACHE_SIZE ("consumer.sectiontitlecache.size", Integer.class, false, 10000),
+		
+		/** The number of distinct words a deleted and a new sentence must share in order to be compared in a diff */
+		DIFF_ALIGNMENT_MIN_SHARED_WORDS ("diff.alignment.minsharedwords", Integer.class, false, 1),
+		
+		/** Whether only nouns are counted as shared words of a deleted and a new sentence */
+		DIFF_ALIGNMENT_NOUNS_ONLY ("diff.alignment.nounsonly", Boolean.class, false, false),
+		
+		/** The sentence alignment of diffs: "invertedindex" (exact) or "minhash" (approximate Jaccard distance) */
+		DIFF_ALIGNMENT_ALGORITHM ("diff.alignment.algorithm", String.class, false, "invertedindex"),
+		
+		/** The number of hash functions of the MinHash signatures of sentences */
+		DIFF_ALIGNMENT_MINHASH_SIZE ("diff.alignment.minhash.size", Integer.class, false, 64),
+		
+		/** The number of bands the MinHash signatures are divided into */
+		DIFF_ALIGNMENT_MINHASH_BANDS ("diff.alignment.minhash.bands", Integer.class, false, 32),
+		
+		/** Whether the MinHash signatures are computed from the word stems instead of the words */
+		DIFF_ALIGNMENT_MINHASH_STEMS ("diff.alignment.minhash.stems", Boolean.class, false, false)
 
 		;
 		
@@ -236,22 +358,33 @@ public class Config {
 			log.error("No application properties.");
 			return "";
 		}
-		String value = applicationProperties.getProperty(key.name);
-		if (value == null) {
-			log.error("Property not found: " + key.name);
-		}
-		return value;
+		return getValue(key);
 	}
 
 	/**
 	 * @see #getAppProperty(String)
 	 */
 	public static int getIntAppProperty(Key key) {
-		String value = applicationProperties.getProperty(key.name);
+		return Integer.valueOf(getValue(key));
+	}
+	
+	/**
+	 * Returns the value of the given key. If the properties file does not
+	 * contain an entry for the key, the key's default value is returned (if
+	 * the key has one).
+	 * 
+	 * @param key
+	 * @return the value of the given key or its default value.
+	 */
+	private static String getValue(Key key) {
+		String value = getAppProperties().getProperty(key.name);
 		if (value == null) {
+			if (key.defaultValue != null) {
+				return key.defaultValue.toString();
+			}
 			log.error("Property not found: " + key.name);
 		}
-		return Integer.valueOf(value);
+		return value;
 	}
 
 	/**
@@ -282,19 +415,11 @@ public class Config {
 	}
 
 	public static boolean getBooleanAppProperty(Key key) {
-		String value = applicationProperties.getProperty(key.name);
-		if (value == null) {
-			log.error("Property not found: " + key.name);
-		}
-		return Boolean.valueOf(applicationProperties.getProperty(key.name));
+		return Boolean.valueOf(getValue(key));
 	}
 
 	public static double getDoubleAppProperty(Key key) {
-		String value = applicationProperties.getProperty(key.name);
-		if (value == null) {
-			log.error("Property not found: " + key.name);
-		}
-		return Float.parseFloat(applicationProperties.getProperty(key.name));
+		return Float.parseFloat(getValue(key));
 	}
 
 }
@@ -42,9 +42,12 @@ import java.util.TreeSet;
 import org.apache.log4j.Logger;
 import org.incava.util.diff.Difference;
 
+import de.csw.expertfinder.config.Config;
 import de.csw.expertfinder.diff.sentencealignment.BestMatchingSentence;
 import de.csw.expertfinder.diff.sentencealignment.BestMatchingSentences;
 import de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm;
+import de.csw.expertfinder.diff.sentencealignment.invertedindex.InvertedIndexSentenceAligner;
+import de.csw.expertfinder.diff.sentencealignment.minhash.MinHashSentenceAligner;
 import de.csw.expertfinder.diff.sentencealignment.nounandanchor.NounAndAnchorSentenceAligner;
 import de.csw.expertfinder.document.Revision;
 import de.csw.expertfinder.document.Sentence;
@@ -81,7 +84,9 @@ import de.csw.expertfinder.document.Word;
  * the word count of the shorter sentence. I.e. if half of the edit distance
  * between sentence 1 and sentence 2 is below the length of the shorter of the
  * two sentences, they are considered the same modified sentence. If not, they
- * are considered completely different sentences.
+ * are considered completely different sentences. Only sentences sharing words
+ * are compared (see {@link InvertedIndexSentenceAligner}), the others are
+ * completely different anyway.
  * 
  * Then, for the sentences considered the same, a word based diff is performed.
  * The sentences identified as completely new or completely removed, are
@@ -106,7 +111,13 @@ public class PositionInsensitiveDiff {
 	private ArrayList<Word> addedWords = new ArrayList<Word>();
 	private Map<Word, Word> unchangedWords = new HashMap<Word, Word>();
 
-	private SentenceAlignmentAlgorithm sentenceAlignmentAlgorithm = new NounAndAnchorSentenceAligner();
+	/** aligns sentences using an inverted index, see {@link Config.Key#DIFF_ALIGNMENT_ALGORITHM} */
+	public static final String ALIGNMENT_INVERTED_INDEX = "invertedindex";
+
+	/** aligns sentences using MinHash signatures, see {@link Config.Key#DIFF_ALIGNMENT_ALGORITHM} */
+	public static final String ALIGNMENT_MINHASH = "minhash";
+	
+	private SentenceAlignmentAlgorithm sentenceAlignmentAlgorithm = createSentenceAlignmentAlgorithm();
 
 	/**
 	 * Constructs a new PositionSensitiveDiff
@@ -254,6 +265,23 @@ public class PositionInsensitiveDiff {
 
 	}
 
+	/**
+	 * Creates the sentence alignment algorithm configured by
+	 * {@link Config.Key#DIFF_ALIGNMENT_ALGORITHM}.
+	 * @return the sentence alignment algorithm.
+	 */
+	private static SentenceAlignmentAlgorithm createSentenceAlignmentAlgorithm() {
+		String algorithm = Config.getAppProperty(Config.Key.DIFF_ALIGNMENT_ALGORITHM);
+		if (ALIGNMENT_MINHASH.equalsIgnoreCase(algorithm)) {
+			return new MinHashSentenceAligner(Config.getIntAppProperty(Config.Key.DIFF_ALIGNMENT_MINHASH_SIZE),
+					Config.getIntAppProperty(Config.Key.DIFF_ALIGNMENT_MINHASH_BANDS), Config.getBooleanAppProperty(Config.Key.DIFF_ALIGNMENT_MINHASH_STEMS));
+		}
+		if (!ALIGNMENT_INVERTED_INDEX.equalsIgnoreCase(algorithm))
+			log.warn("Unknown sentence alignment algorithm " + algorithm + ", using " + ALIGNMENT_INVERTED_INDEX);
+		return new InvertedIndexSentenceAligner(new NounAndAnchorSentenceAligner(),
+				Config.getIntAppProperty(Config.Key.DIFF_ALIGNMENT_MIN_SHARED_WORDS), Config.getBooleanAppProperty(Config.Key.DIFF_ALIGNMENT_NOUNS_ONLY));
+	}
+
 	/**
 	 * 
 	 * @param diffingSentences
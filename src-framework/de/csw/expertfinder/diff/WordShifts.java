@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import de.csw.expertfinder.document.Section;
+import de.csw.expertfinder.document.Word;
+
+/**
+ * Determines which of the unchanged words of a revision (see
+ * {@link PositionInsensitiveDiff#getUnchangedWords()}) have to be written.
+ * 
+ * Words that have neither moved nor changed their section need not be
+ * written at all. Words that have only moved within their section are
+ * written as shifts of position ranges (see
+ * {@link Section#addWordShift(int, int, int)}): each run of words that are
+ * adjacent within their section in the previous revision and have been moved
+ * by the same number of characters becomes one shift. Only the remaining
+ * words are written one by one. Thus, the number of rows written for a
+ * revision depends on the size of the edit rather than the size of the
+ * article.
+ * 
+ * @author ralph
+ */
+public class WordShifts {
+	
+	/** Sorts words by the id of their section and their position */
+	private static final Comparator<Word> BY_SECTION_AND_POSITION = new Comparator<Word>() {
+		public int compare(Word word1, Word word2) {
+			Long section1 = getSectionId(word1);
+			Long section2 = getSectionId(word2);
+			if (section1 == null ? section2 != null : !section1.equals(section2)) {
+				if (section1 == null)
+					return -1;
+				if (section2 == null)
+					return 1;
+				return section1.compareTo(section2);
+			}
+			return word1.getStartPos() - word2.getStartPos();
+		}
+	};
+	
+	private WordShifts() {
+	}
+	
+	/**
+	 * Records the shifts of the unchanged words with the sections of the new
+	 * revision and returns the unchanged words that have to be written one by
+	 * one. The new words must have got the ids of the old ones, and the new
+	 * sections the ids of the old ones they correspond to.
+	 * @param oldWords all words of the previous revision.
+	 * @param unchangedWords the unchanged words, old words mapped to new words.
+	 * @return the new words whose sections or lengths have changed.
+	 */
+	public static List<Word> track(List<Word> oldWords, Map<Word, Word> unchangedWords) {
+		ArrayList<Word> result = new ArrayList<Word>();
+		
+		ArrayList<Word> sortedOldWords = new ArrayList<Word>(oldWords);
+		Collections.sort(sortedOldWords, BY_SECTION_AND_POSITION);
+		
+		// the current run of shifted words
+		Section section = null;
+		Long sectionId = null;
+		int fromPos = 0;
+		int toPos = 0;
+		int delta = 0;
+		
+		for (Word oldWord : sortedOldWords) {
+			Word newWord = unchangedWords.get(oldWord);
+			boolean shifted = false;
+			int wordDelta = 0;
+			if (newWord != null) {
+				wordDelta = newWord.getStartPos() - oldWord.getStartPos();
+				Long oldSectionId = getSectionId(oldWord);
+				if (oldSectionId == null || !oldSectionId.equals(getSectionId(newWord)) || 
+						newWord.getEndPos() - oldWord.getEndPos() != wordDelta) {
+					result.add(newWord);
+				} else {
+					shifted = wordDelta != 0;
+				}
+			}
+			
+			if (shifted && section != null && wordDelta == delta && sectionId.equals(getSectionId(oldWord))) {
+				toPos = oldWord.getStartPos();
+				continue;
+			}
+			
+			// any other word ends the current run, it must not be shifted along
+			if (section != null)
+				section.addWordShift(fromPos, toPos, delta);
+			if (shifted) {
+				section = newWord.getSection();
+				sectionId = section.getId();
+				fromPos = toPos = oldWord.getStartPos();
+				delta = wordDelta;
+			} else {
+				section = null;
+			}
+		}
+		if (section != null)
+			section.addWordShift(fromPos, toPos, delta);
+		
+		return result;
+	}
+	
+	private static Long getSectionId(Word word) {
+		Section section = word.getSection();
+		return section == null ? null : section.getId();
+	}
+}
@@ -26,6 +26,7 @@
 package de.csw.expertfinder.diff.sentencealignment;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -55,6 +56,18 @@ public class BestMatchingSentences implements Iterable<BestMatchingSentence> {
 		newRest.add(newSentence);
 	}
 	
+	/**
+	 * Adds sentences without adding pairs, e.g. if only some pairs of
+	 * sentences have been compared. Sentences that are not part of a best
+	 * matching pair are returned by {@link #oldRest()} and {@link #newRest()}.
+	 * @param oldSentences
+	 * @param newSentences
+	 */
+	public void addSentences(Collection<Sentence> oldSentences, Collection<Sentence> newSentences) {
+		oldRest.addAll(oldSentences);
+		newRest.addAll(newSentences);
+	}
+	
 	/**
 	 * Returns an iterator which returns the best matching sentence pairs.
 	 * After the itarator is exhausted, call getOldRest and getNewRest
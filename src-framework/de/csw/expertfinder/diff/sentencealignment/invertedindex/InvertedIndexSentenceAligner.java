@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.diff.sentencealignment.invertedindex;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import cern.colt.list.IntArrayList;
+import de.csw.expertfinder.diff.DiffingSentences;
+import de.csw.expertfinder.diff.sentencealignment.BestMatchingSentences;
+import de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm;
+import de.csw.expertfinder.diff.sentencealignment.SentenceDistance;
+import de.csw.expertfinder.document.Noun;
+import de.csw.expertfinder.document.Sentence;
+import de.csw.expertfinder.document.Word;
+
+/**
+ * Aligns sentences without comparing each new sentence with each deleted
+ * sentence. An inverted index maps each word to the deleted sentences
+ * containing it. Only the pairs of sentences sharing at least a given number of
+ * distinct words (or nouns) are compared, using the given distance metric.
+ * Sentences without a candidate are returned as unmatched by
+ * {@link BestMatchingSentences#oldRest()} and
+ * {@link BestMatchingSentences#newRest()}.
+ * 
+ * Sentences not sharing any word are at the maximum distance for the metrics
+ * based on shared words (see
+ * {@link de.csw.expertfinder.diff.sentencealignment.jaccard.JaccardSentenceAligner}
+ * and
+ * {@link de.csw.expertfinder.diff.sentencealignment.nounandanchor.NounAndAnchorSentenceAligner}),
+ * thus requiring one shared word does not change the alignment for them.
+ * 
+ * @author ralph
+ */
+public class InvertedIndexSentenceAligner implements SentenceAlignmentAlgorithm {
+	
+	private final SentenceDistance distance;
+	
+	private final int minSharedWords;
+	
+	private final boolean nounsOnly;
+	
+	/**
+	 * Creates an aligner comparing the sentences that share at least one word.
+	 * @param distance the metric the candidate pairs are compared with
+	 */
+	public InvertedIndexSentenceAligner(SentenceDistance distance) {
+		this(distance, 1, false);
+	}
+
+	/**
+	 * @param distance the metric the candidate pairs are compared with
+	 * @param minSharedWords the number of distinct words a pair of sentences
+	 *        must share in order to be compared, at least 1
+	 * @param nounsOnly if true, only nouns are indexed and counted as shared
+	 *        words
+	 */
+	public InvertedIndexSentenceAligner(SentenceDistance distance, int minSharedWords, boolean nounsOnly) {
+		this.distance = distance;
+		this.minSharedWords = Math.max(1, minSharedWords);
+		this.nounsOnly = nounsOnly;
+	}
+
+	/**
+	 * @see de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm#getBestMatchingSentences(de.csw.expertfinder.diff.DiffingSentences)
+	 */
+	public BestMatchingSentences getBestMatchingSentences(DiffingSentences diffingSentences) {
+		BestMatchingSentences bestFittingSentences = new BestMatchingSentences();
+		List<Sentence> newSentences = diffingSentences.getNewSentences();
+		List<Sentence> deletedSentences = diffingSentences.getDeletedSentences();
+		bestFittingSentences.addSentences(deletedSentences, newSentences);
+		
+		// the indexes of the deleted sentences by the words they contain
+		HashMap<String, IntArrayList> index = new HashMap<String, IntArrayList>();
+		int deletedCount = deletedSentences.size();
+		for (int i = 0; i < deletedCount; i++) {
+			for (String word : getIndexedWords(deletedSentences.get(i))) {
+				IntArrayList sentences = index.get(word);
+				if (sentences == null) {
+					sentences = new IntArrayList(4);
+					index.put(word, sentences);
+				}
+				sentences.add(i);
+			}
+		}
+		
+		// the number of words each deleted sentence shares with the current
+		// new sentence, and the deleted sentences sharing at least one word
+		int[] sharedWords = new int[deletedCount];
+		IntArrayList candidates = new IntArrayList();
+		for (Sentence newSentence : newSentences) {
+			for (String word : getIndexedWords(newSentence)) {
+				IntArrayList sentences = index.get(word);
+				if (sentences == null)
+					continue;
+				int size = sentences.size();
+				for (int j = 0; j < size; j++) {
+					int i = sentences.getQuick(j);
+					if (sharedWords[i]++ == 0)
+						candidates.add(i);
+				}
+			}
+			
+			// compare in the order of the deleted sentences, like the aligners
+			// comparing all pairs, since pairs with equal distances are taken
+			// in the order they have been added
+			candidates.sort();
+			int size = candidates.size();
+			for (int j = 0; j < size; j++) {
+				int i = candidates.getQuick(j);
+				if (sharedWords[i] >= minSharedWords) {
+					Sentence oldSentence = deletedSentences.get(i);
+					bestFittingSentences.add(oldSentence, newSentence, distance.getDistance(oldSentence, newSentence));
+				}
+				sharedWords[i] = 0;
+			}
+			candidates.clear();
+		}
+		return bestFittingSentences;
+	}
+	
+	/**
+	 * Returns the distinct texts of the words of the given sentence that are
+	 * indexed.
+	 * @param sentence
+	 * @return the distinct texts of the indexed words.
+	 */
+	private HashSet<String> getIndexedWords(Sentence sentence) {
+		HashSet<String> result = new HashSet<String>();
+		if (nounsOnly) {
+			for (Noun noun : sentence.getNouns()) {
+				result.add(noun.getWord());
+			}
+		} else {
+			for (Word word : sentence.getWords()) {
+				result.add(word.getWord());
+			}
+		}
+		return result;
+	}
+}
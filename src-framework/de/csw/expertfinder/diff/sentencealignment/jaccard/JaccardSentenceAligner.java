@@ -30,6 +30,7 @@ import java.util.List;
 import de.csw.expertfinder.diff.DiffingSentences;
 import de.csw.expertfinder.diff.sentencealignment.BestMatchingSentences;
 import de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm;
+import de.csw.expertfinder.diff.sentencealignment.SentenceDistance;
 import de.csw.expertfinder.document.Sentence;
 import de.csw.expertfinder.document.Word;
 
@@ -37,7 +38,7 @@ import de.csw.expertfinder.document.Word;
  * @author ralph
  *
  */
-public class JaccardSentenceAligner implements SentenceAlignmentAlgorithm {
+public class JaccardSentenceAligner implements SentenceAlignmentAlgorithm, SentenceDistance {
 
 	/**
 	 * @see de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm#getBestMatchingSentences(de.csw.expertfinder.diff.DiffingSentences)
@@ -51,11 +52,18 @@ public class JaccardSentenceAligner implements SentenceAlignmentAlgorithm {
 			for(Sentence oldSentence : deletedSentences) {
 				List<Word> deletedWords = oldSentence.getWords();
 //				int distance = Levenshtein.lev(deletedWords, addedWords);
-				double distance = JaccardMetric.calculateJaccardCoefficient(oldSentence, newSentence);
+				double distance = getDistance(oldSentence, newSentence);
 				bestFittingSentences.add(oldSentence, newSentence, distance);
 			}
 		}
 		return bestFittingSentences;
 	}
 
+	/**
+	 * @see de.csw.expertfinder.diff.sentencealignment.SentenceDistance#getDistance(de.csw.expertfinder.document.Sentence, de.csw.expertfinder.document.Sentence)
+	 */
+	public double getDistance(Sentence oldSentence, Sentence newSentence) {
+		return JaccardMetric.calculateJaccardCoefficient(oldSentence, newSentence);
+	}
+
 }
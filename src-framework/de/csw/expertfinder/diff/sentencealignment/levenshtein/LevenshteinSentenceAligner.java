@@ -30,6 +30,7 @@ import java.util.List;
 import de.csw.expertfinder.diff.DiffingSentences;
 import de.csw.expertfinder.diff.sentencealignment.BestMatchingSentences;
 import de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm;
+import de.csw.expertfinder.diff.sentencealignment.SentenceDistance;
 import de.csw.expertfinder.document.Sentence;
 import de.csw.expertfinder.document.Word;
 import de.csw.expertfinder.tokenization.Levenshtein;
@@ -38,7 +39,7 @@ import de.csw.expertfinder.tokenization.Levenshtein;
  * @author ralph
  *
  */
-public class LevenshteinSentenceAligner implements SentenceAlignmentAlgorithm {
+public class LevenshteinSentenceAligner implements SentenceAlignmentAlgorithm, SentenceDistance {
 
 	/**
 	 * @see de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm#getBestMatchingSentences(de.csw.expertfinder.diff.DiffingSentences)
@@ -58,4 +59,11 @@ public class LevenshteinSentenceAligner implements SentenceAlignmentAlgorithm {
 		}
 		return bestFittingSentences;
 	}
+
+	/**
+	 * @see de.csw.expertfinder.diff.sentencealignment.SentenceDistance#getDistance(de.csw.expertfinder.document.Sentence, de.csw.expertfinder.document.Sentence)
+	 */
+	public double getDistance(Sentence oldSentence, Sentence newSentence) {
+		return Levenshtein.lev(oldSentence.getWords(), newSentence.getWords());
+	}
 }
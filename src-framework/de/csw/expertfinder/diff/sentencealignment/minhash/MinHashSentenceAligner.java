@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.diff.sentencealignment.minhash;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import cern.colt.list.IntArrayList;
+import de.csw.expertfinder.diff.DiffingSentences;
+import de.csw.expertfinder.diff.sentencealignment.BestMatchingSentences;
+import de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm;
+import de.csw.expertfinder.diff.sentencealignment.jaccard.JaccardSentenceAligner;
+import de.csw.expertfinder.document.Sentence;
+import de.csw.expertfinder.document.Word;
+
+/**
+ * Aligns sentences by an approximation of the Jaccard distance of their
+ * words (see {@link JaccardSentenceAligner}), in nearly linear time.
+ * 
+ * Each sentence gets a MinHash signature: for each of a number of hash
+ * functions, the minimum hash value of its words. Two sentences agree in a
+ * position of their signatures with a probability equal to the Jaccard
+ * coefficient of their words. The signatures are divided into bands of
+ * consecutive positions (locality sensitive hashing). Only pairs of sentences
+ * whose signatures are equal in at least one band are compared, their
+ * distance is the fraction of the positions in which their signatures differ.
+ * 
+ * With b bands of r positions, sentences with a Jaccard coefficient s are
+ * compared with a probability of 1 - (1 - s^r)^b. Fewer positions per band
+ * find more similar pairs but compare more dissimilar ones, too.
+ * 
+ * @author ralph
+ */
+public class MinHashSentenceAligner implements SentenceAlignmentAlgorithm {
+	
+	/** seeds the hash functions, the same for all instances */
+	private static final long SEED = 0x5DEECE66DL;
+	
+	private final int signatureSize;
+	
+	private final int bands;
+	
+	private final int rows;
+	
+	private final boolean stems;
+	
+	/** the hash functions h(x) = mix(a * x + b) */
+	private final int[] a, b;
+	
+	/**
+	 * @param signatureSize the number of hash functions
+	 * @param bands the number of bands, signatureSize must be a multiple of it
+	 * @param stems if true, the word stems are compared instead of the words
+	 */
+	public MinHashSentenceAligner(int signatureSize, int bands, boolean stems) {
+		if (bands < 1 || signatureSize < bands || signatureSize % bands != 0)
+			throw new IllegalArgumentException("The signature size (" + signatureSize + ") must be a multiple of the number of bands (" + bands + ").");
+		this.signatureSize = signatureSize;
+		this.bands = bands;
+		this.rows = signatureSize / bands;
+		this.stems = stems;
+		
+		Random random = new Random(SEED);
+		a = new int[signatureSize];
+		b = new int[signatureSize];
+		for (int i = 0; i < signatureSize; i++) {
+			a[i] = random.nextInt() | 1;
+			b[i] = random.nextInt();
+		}
+	}
+
+	/**
+	 * @see de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm#getBestMatchingSentences(de.csw.expertfinder.diff.DiffingSentences)
+	 */
+	public BestMatchingSentences getBestMatchingSentences(DiffingSentences diffingSentences) {
+		BestMatchingSentences bestFittingSentences = new BestMatchingSentences();
+		List<Sentence> newSentences = diffingSentences.getNewSentences();
+		List<Sentence> deletedSentences = diffingSentences.getDeletedSentences();
+		bestFittingSentences.addSentences(deletedSentences, newSentences);
+		
+		// the indexes of the deleted sentences by the hash of each band of their signatures 
+		int deletedCount = deletedSentences.size();
+		int[][] deletedSignatures = new int[deletedCount][];
+		@SuppressWarnings("unchecked")
+		HashMap<Long, IntArrayList>[] buckets = new HashMap[bands];
+		for (int band = 0; band < bands; band++) {
+			buckets[band] = new HashMap<Long, IntArrayList>();
+		}
+		for (int i = 0; i < deletedCount; i++) {
+			int[] signature = getSignature(deletedSentences.get(i));
+			if (signature == null)
+				continue;
+			deletedSignatures[i] = signature;
+			for (int band = 0; band < bands; band++) {
+				Long key = getBandKey(signature, band);
+				IntArrayList bucket = buckets[band].get(key);
+				if (bucket == null) {
+					bucket = new IntArrayList(2);
+					buckets[band].put(key, bucket);
+				}
+				bucket.add(i);
+			}
+		}
+		
+		boolean[] isCandidate = new boolean[deletedCount];
+		IntArrayList candidates = new IntArrayList();
+		for (Sentence newSentence : newSentences) {
+			int[] signature = getSignature(newSentence);
+			if (signature == null)
+				continue;
+			for (int band = 0; band < bands; band++) {
+				IntArrayList bucket = buckets[band].get(getBandKey(signature, band));
+				if (bucket == null)
+					continue;
+				int size = bucket.size();
+				for (int j = 0; j < size; j++) {
+					int i = bucket.getQuick(j);
+					if (!isCandidate[i]) {
+						isCandidate[i] = true;
+						candidates.add(i);
+					}
+				}
+			}
+			
+			// compare in the order of the deleted sentences, pairs with equal
+			// distances are taken in the order they have been added
+			candidates.sort();
+			int size = candidates.size();
+			for (int j = 0; j < size; j++) {
+				int i = candidates.getQuick(j);
+				bestFittingSentences.add(deletedSentences.get(i), newSentence, getDistance(deletedSignatures[i], signature));
+				isCandidate[i] = false;
+			}
+			candidates.clear();
+		}
+		return bestFittingSentences;
+	}
+	
+	/**
+	 * Returns the MinHash signature of the given sentence.
+	 * @param sentence
+	 * @return the signature or null if the sentence has no words.
+	 */
+	private int[] getSignature(Sentence sentence) {
+		List<Word> words = sentence.getWords();
+		if (words.isEmpty())
+			return null;
+		int[] signature = new int[signatureSize];
+		for (int i = 0; i < signatureSize; i++) {
+			signature[i] = Integer.MAX_VALUE;
+		}
+		
+		// a word occurring several times is counted as several distinct words,
+		// like JaccardMetric does
+		HashSet<String> texts = new HashSet<String>();
+		for (Word word : words) {
+			String text = stems && word.getWordStem() != null ? word.getWordStem() : word.getWord();
+			while (!texts.add(text)) {
+				text += "*";
+			}
+			int x = text.hashCode();
+			for (int i = 0; i < signatureSize; i++) {
+				int h = mix(a[i] * x + b[i]);
+				if (h < signature[i])
+					signature[i] = h;
+			}
+		}
+		return signature;
+	}
+	
+	/**
+	 * Scrambles the bits of the given value (the finalizer of MurmurHash3).
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+	
+	/**
+	 * Returns a hash of the positions of the given band of a signature.
+	 */
+	private Long getBandKey(int[] signature, int band) {
+		long key = 0;
+		int end = (band + 1) * rows;
+		for (int i = band * rows; i < end; i++) {
+			key = 31 * key + signature[i];
+		}
+		return key;
+	}
+	
+	/**
+	 * Returns the fraction of the positions in which the given signatures
+	 * differ, the approximate Jaccard distance of the sentences.
+	 */
+	private double getDistance(int[] signature1, int[] signature2) {
+		int equal = 0;
+		for (int i = 0; i < signatureSize; i++) {
+			if (signature1[i] == signature2[i])
+				equal++;
+		}
+		return 1d - (double)equal / signatureSize;
+	}
+}
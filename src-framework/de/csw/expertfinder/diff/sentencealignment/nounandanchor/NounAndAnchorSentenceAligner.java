@@ -36,6 +36,7 @@ import de.csw.expertfinder.diff.DiffingSentences;
 import de.csw.expertfinder.diff.sentencealignment.BestMatchingSentence;
 import de.csw.expertfinder.diff.sentencealignment.BestMatchingSentences;
 import de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm;
+import de.csw.expertfinder.diff.sentencealignment.SentenceDistance;
 import de.csw.expertfinder.document.Noun;
 import de.csw.expertfinder.document.Sentence;
 import de.csw.expertfinder.document.Word;
@@ -44,7 +45,7 @@ import de.csw.expertfinder.document.Word;
  * @author ralph
  * 
  */
-public class NounAndAnchorSentenceAligner implements SentenceAlignmentAlgorithm {
+public class NounAndAnchorSentenceAligner implements SentenceAlignmentAlgorithm, SentenceDistance {
 
 	private class Interval {
 		int start, end;
@@ -62,7 +63,7 @@ public class NounAndAnchorSentenceAligner implements SentenceAlignmentAlgorithm
 			for (Sentence oldSentence : deletedSentences) {
 				List<Word> deletedWords = oldSentence.getWords();
 				// int distance = Levenshtein.lev(deletedWords, addedWords);
-				double distance = 1 - sim(oldSentence, newSentence);
+				double distance = getDistance(oldSentence, newSentence);
 				bestFittingSentences.add(oldSentence, newSentence, distance);
 			}
 		}
@@ -70,6 +71,13 @@ public class NounAndAnchorSentenceAligner implements SentenceAlignmentAlgorithm
 
 	}
 
+	/**
+	 * @see de.csw.expertfinder.diff.sentencealignment.SentenceDistance#getDistance(de.csw.expertfinder.document.Sentence, de.csw.expertfinder.document.Sentence)
+	 */
+	public double getDistance(Sentence oldSentence, Sentence newSentence) {
+		return 1 - sim(oldSentence, newSentence);
+	}
+
 
 	/**
 	 * @see de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm#getBestMatchingSentences(de.csw.expertfinder.diff.DiffingSentences)
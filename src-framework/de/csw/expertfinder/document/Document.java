@@ -44,6 +44,8 @@ public class Document extends PersistableEntity<Long> {
 	private String title;
 	private Set<Concept> concepts;
 	private Set<DocumentCategory> categories;
+	private Long latestRevisionId;
+	private long revisionCount;
 
 	
 	/**
@@ -151,6 +153,52 @@ public class Document extends PersistableEntity<Long> {
 	}
 	
 
+	/**
+	 * @return the id of the latest persisted revision of this document or null
+	 *         if no revision has been persisted yet.
+	 */
+	public Long getLatestRevisionId() {
+		return latestRevisionId;
+	}
+
+	/**
+	 * @param latestRevisionId the id of the latest persisted revision of this document
+	 */
+	public void setLatestRevisionId(Long latestRevisionId) {
+		this.latestRevisionId = latestRevisionId;
+	}
+
+	/**
+	 * @return the number of persisted revisions of this document
+	 */
+	public long getRevisionCount() {
+		return revisionCount;
+	}
+
+	/**
+	 * @param revisionCount the number of persisted revisions of this document
+	 */
+	public void setRevisionCount(long revisionCount) {
+		this.revisionCount = revisionCount;
+	}
+	
+	/**
+	 * Updates the latest revision id and the revision count of this document
+	 * when the given revision is persisted. The revision's count is its
+	 * position in the document's history, thus calling this method again for
+	 * the same revision does not change anything.
+	 * 
+	 * @param revision a revision of this document.
+	 */
+	public void updateLatestRevision(Revision revision) {
+		if (latestRevisionId == null || revision.getId() > latestRevisionId) {
+			latestRevisionId = revision.getId();
+		}
+		if (revision.getCount() > revisionCount) {
+			revisionCount = revision.getCount();
+		}
+	}
+
 	/**
 	 * @see de.csw.expertfinder.document.PersistableEntity#hashCode()
 	 */
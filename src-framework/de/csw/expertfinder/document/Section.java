@@ -48,6 +48,10 @@ public class Section extends LifespanObject<Long> implements TextChunk {
 	
 	private List<Word> words;
 	
+	/** position shifts of unchanged words (fromPos, toPos, delta), not persisted, see {@link #addWordShift(int, int, int)} */
+	private int[] wordShifts;
+	private int wordShiftCount;
+	
 
 	/**
 	 * Constructs an empty Section (internal use only).
@@ -271,6 +275,52 @@ public class Section extends LifespanObject<Long> implements TextChunk {
 		links.add(link);
 	}
 
+	/**
+	 * Records that the words of this section starting between the given
+	 * positions of the previous revision have been moved by delta characters,
+	 * and are unchanged otherwise. Instead of updating each of these words,
+	 * their positions are shifted together when this section is saved.
+	 * @param fromPos the start position of the first word in the previous revision.
+	 * @param toPos the start position of the last word in the previous revision.
+	 * @param delta the number of characters the words have been moved by.
+	 */
+	public void addWordShift(int fromPos, int toPos, int delta) {
+		if (wordShifts == null) {
+			wordShifts = new int[3 * 4];
+		} else if (wordShifts.length == 3 * wordShiftCount) {
+			int[] newWordShifts = new int[2 * wordShifts.length];
+			System.arraycopy(wordShifts, 0, newWordShifts, 0, wordShifts.length);
+			wordShifts = newWordShifts;
+		}
+		int i = 3 * wordShiftCount++;
+		wordShifts[i] = fromPos;
+		wordShifts[i + 1] = toPos;
+		wordShifts[i + 2] = delta;
+	}
+	
+	/**
+	 * @return the number of word shifts, see {@link #addWordShift(int, int, int)}.
+	 */
+	public int getWordShiftCount() {
+		return wordShiftCount;
+	}
+	
+	/**
+	 * @return the word shifts, three values (fromPos, toPos, delta) for each of
+	 *         the first {@link #getWordShiftCount()} shifts.
+	 */
+	public int[] getWordShifts() {
+		return wordShifts;
+	}
+	
+	/**
+	 * Forgets the word shifts once they have been written.
+	 */
+	public void clearWordShifts() {
+		wordShifts = null;
+		wordShiftCount = 0;
+	}
+
 	/**
 	 * @see de.csw.expertfinder.document.PersistableEntity#hashCode()
 	 */
@@ -49,9 +49,7 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.io.FileUtils;
-import org.hibernate.Hibernate;
 import org.hibernate.Query;
-import org.hibernate.SQLQuery;
 
 import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.ontology.OntModel;
@@ -67,6 +65,7 @@ import de.csw.expertfinder.document.Concept;
 import de.csw.expertfinder.document.Document;
 import de.csw.expertfinder.ontology.OntologyIndex;
 import de.csw.expertfinder.persistence.PersistenceStoreFacade;
+import de.csw.expertfinder.persistence.RowHandler;
 import de.csw.expertfinder.test.util.StopWatch;
 import de.csw.expertfinder.util.Pair;
 
@@ -103,7 +102,7 @@ public class ExpertiseModel {
 	 * Gets the single instance of this class.
 	 * @return
 	 */
-	public static ExpertiseModel get() {
+	public static synchronized ExpertiseModel get() {
 		if (instance == null) {
 			instance = new ExpertiseModel();
 		}
@@ -141,17 +140,22 @@ public class ExpertiseModel {
 			return 0d;
 		}
 				
-		persistenceStore.beginTransaction();
-		Concept topic = persistenceStore.getConcept(topicClass.getURI());
-		Author author = persistenceStore.getAuthor(authorName);
-		persistenceStore.endTransaction();
-		
-		if (author == null || topic == null) {
-			return 0d;
+		// the credibility is calculated and saved in the same unit of work
+		persistenceStore.beginUnitOfWork(false);
+		try {
+			Concept topic = persistenceStore.getConcept(topicClass.getURI());
+			Author author = persistenceStore.getAuthor(authorName);
+			
+			double credibility = 0d;
+			if (author != null && topic != null) {
+				credibility = getCredibility(author, topic);
+			}
+			
+			persistenceStore.commitUnitOfWork();
+			return credibility;
+		} finally {
+			persistenceStore.endUnitOfWork();
 		}
-		
-		return getCredibility(author, topic);
-		
 	}	
 
 
@@ -169,144 +173,170 @@ public class ExpertiseModel {
 	public double getCredibility(Author author, Concept concept) { 
 		
 		// get all contributions of the author to sections associated with the given concept		
-		persistenceStore.beginTransaction();
-		
-		AuthorCredibility authorCredibility = persistenceStore.getAuthorCredibility(author, concept);
-		
-		if (authorCredibility == null) { 
-			authorCredibility = new AuthorCredibility(author, concept);
-		} else {
-			Double credibility = authorCredibility.getCredibility();
-			if (credibility != null) {
-				persistenceStore.endTransaction();
-				return credibility;
+		persistenceStore.beginUnitOfWork(false);
+		try {
+			AuthorCredibility authorCredibility = persistenceStore.getAuthorCredibility(author, concept);
+			
+			if (authorCredibility == null) { 
+				authorCredibility = new AuthorCredibility(author, concept);
+			} else {
+				Double credibility = authorCredibility.getCredibility();
+				if (credibility != null) {
+					persistenceStore.commitUnitOfWork();
+					return credibility;
+				}
+			}
+			
+			CredibilityAccumulator accumulator = new CredibilityAccumulator(author);
+			persistenceStore.scrollContributionsToSectionsWithConceptForAuthor(concept, author, accumulator.sectionContributionHandler);
+			
+			// now the actual contributions (=words matching the concept)
+			
+			accumulator.documentId = -1L;
+			accumulator.latestRevision = -1L;
+			persistenceStore.scrollContributionForConcept(concept, author, accumulator.wordContributionHandler);
+			
+			double numerator = accumulator.numerator;
+			double denumenator = accumulator.denumenator;
+			
+			double credibility;
+			
+			if (denumenator == 0d) {
+				// obviously no contribution to this topic at all
+				credibility = 0d;
+			} else {
+				credibility = numerator / denumenator;
 			}
+			
+			
+			authorCredibility.setCredibility(credibility);
+			authorCredibility.setCredibilityItemCount((long)denumenator);
+			
+			persistenceStore.save(authorCredibility);
+			persistenceStore.commitUnitOfWork();
+			
+			return credibility;
+		} finally {
+			persistenceStore.endUnitOfWork();
 		}
+	}
+	
+	/**
+	 * Accumulates the credibility of an author wrt. a topic from the streamed
+	 * contributions of the author (see {@link #getCredibility(Author, Concept)}).
+	 */
+	private class CredibilityAccumulator {
 		
-		List<Object[]> sections = persistenceStore.getContributionsToSectionsWithConceptForAuthor(concept, author);
-
+		private final Author author;
 		
-		double numerator = 0d;
-		double denumenator = 0;
+		private double numerator = 0d;
+		private double denumenator = 0;
 		
 		// adding words to a section during one revision
-		long sectionId = -1L;
-		int sectionLevel = -1;
+		private long sectionId = -1L;
+		private int sectionLevel = -1;
 		
-		long documentId = -1L;
+		private long documentId = -1L;
 		
-		long latestRevision = -1L;
+		private long latestRevision = -1L;
 		
-		for (Object[] contribution : sections) {
-			long newDocumentId = (Long)contribution[POS_DOCUMENT_ID];
-			if (newDocumentId != documentId) {
-				// new document
-				documentId = newDocumentId;
-				latestRevision = persistenceStore.getLatestPersistedRevision(documentId).getCount();
-			}
-			
-			long newSectionId = (Long)contribution[POS_SECTION_ID];
-			if (newSectionId != sectionId) {
-				// new section
-				sectionId = newSectionId;
-				sectionLevel = (Integer)contribution[POS_SECTION_LEVEL];
-			}
-
-			double sectionConceptSimilarity = (Double)contribution[POS_SECTION_SIMILARITY];
-			double sectionContributionWeight = sectionContributionWeights[sectionLevel - 1] * sectionConceptSimilarity;
-			
-			
-			long revisionCreated = (Long)contribution[POS_REVISION_CREATED]; 
-			Long revisionDeleted = (Long)contribution[POS_REVISION_DELETED];
-			if (revisionDeleted == null) {
-				// contribution has not been deleted
-				numerator += (1 - Math.pow(credibilityGrowthBase, -(latestRevision + 1 - revisionCreated))) * sectionContributionWeight;
-				denumenator += sectionContributionWeight;
-			} else {
-				// contribution has been deleted
-				long deletorId = (Long)contribution[POS_DELETOR];
-				if (deletorId != author.getId()) {
-					// Only if the contribution was deleted by a different author, the contribution is counted.
-					// If the deletor is the actual author of the contribution, it is just not taken into account
-					numerator += (1 - Math.pow(credibilityGrowthBase, -(revisionDeleted + 1 - revisionCreated))) * sectionContributionWeight;
-					denumenator += sectionContributionWeight;
-				}
-			}
+		private CredibilityAccumulator(Author author) {
+			this.author = author;
 		}
 		
-		// now the actual contributions (=words matching the concept)
-		
-		List<Object[]> words = persistenceStore.getContributionForConcept(concept, author);
-		
-		documentId = -1L;
-		latestRevision = -1L;
-
-		for (Object[] contribution : words) {
-			long newDocumentId = (Long)contribution[POS_SINGLE_DOCUMENT_ID];
-			if (newDocumentId != documentId) {
-				// new document
-				documentId = newDocumentId;
-				latestRevision = persistenceStore.getLatestPersistedRevision(documentId).getCount();
+		/**
+		 * Handles contributions to sections associated with the topic.
+		 */
+		private final RowHandler sectionContributionHandler = new RowHandler() {
+			public void handleRow(Object[] contribution) {
+				long newDocumentId = (Long)contribution[POS_DOCUMENT_ID];
+				if (newDocumentId != documentId) {
+					// new document
+					documentId = newDocumentId;
+					latestRevision = persistenceStore.getRevisionCount(documentId);
+				}
+				
+				long newSectionId = (Long)contribution[POS_SECTION_ID];
+				if (newSectionId != sectionId) {
+					// new section
+					sectionId = newSectionId;
+					sectionLevel = (Integer)contribution[POS_SECTION_LEVEL];
+				}
+	
+				double sectionConceptSimilarity = (Double)contribution[POS_SECTION_SIMILARITY];
+				double sectionContributionWeight = sectionContributionWeights[sectionLevel - 1] * sectionConceptSimilarity;
+				
+				
+				long revisionCreated = (Long)contribution[POS_REVISION_CREATED]; 
+				Long revisionDeleted = (Long)contribution[POS_REVISION_DELETED];
+				if (revisionDeleted == null) {
+					// contribution has not been deleted
+					numerator += (1 - Math.pow(credibilityGrowthBase, -(latestRevision + 1 - revisionCreated))) * sectionContributionWeight;
+					denumenator += sectionContributionWeight;
+				} else {
+					// contribution has been deleted
+					long deletorId = (Long)contribution[POS_DELETOR];
+					if (deletorId != author.getId()) {
+						// Only if the contribution was deleted by a different author, the contribution is counted.
+						// If the deletor is the actual author of the contribution, it is just not taken into account
+						numerator += (1 - Math.pow(credibilityGrowthBase, -(revisionDeleted + 1 - revisionCreated))) * sectionContributionWeight;
+						denumenator += sectionContributionWeight;
+					}
+				}
 			}
-
-			long revisionCreated = (Long)contribution[POS_SINGLE_CONTRIB_REVISION_CREATED]; 
-			Long revisionDeleted = (Long)contribution[POS_SINGLE_CONTRIB_REVISION_DELETED];
-			if (revisionDeleted == null) {
-				// contribution has not been deleted
-				numerator += (1 - Math.pow(credibilityGrowthBase, -(latestRevision + 1 - revisionCreated)));
-				denumenator += 1;
-			} else {
-				// contribution has been deleted
-				long deletorId = (Long)contribution[POS_SINGLE_DELETOR];
-				if (deletorId != author.getId()) {
-					// Only if the contribution was deleted by a different author, the contribution is counted.
-					// If the deletor is the actual author of the contribution, it is just not taken into account
-					// TODO: this is stupid, because contributions deleted by s.o. else increase the credibility score while
-					// those deleted by the creator himself don't. 
-					// Recap of the facts.
-					// 1. Deletion of content can mean that content is either junk or outdated.
-					// 1a. If content is junk, then it gets deleted soon with high probability (by someone else).
-					//     -> Even if we count junk, then the credibility score for this bit will remain low (because it's deleted very soon).
-					// 1b. If content is outdated, then it's still worth taking it into account for the time it was present.
-					//     => Content deleted by s.o. else should be taken into account.
-					// 2. Deletion of content by the creator can actually mean the same (either junk or outdated).
-					// 2a. If the creator himself decides to withdraw his contribution, then his reason for this is "harder".
-					//     If he thinks he has written junk, then he will delete it very soon.
-					//     If he thinks his contributions are outdated, then it is improbable that he will delete them.
-					// 2b. The only reason why an author may delete his contribution after a long time is that he corrects/replaces content.
-					// => We can never be absolutely sure why someone deletes s.o. else's content or his own. We should always count content
-					// during its lifetime, regardless of whether the deletor is someone else or not.
-					
-					// => we put the following two lines...
-//					numerator += (1 - Math.pow(credibilityGrowthBase, -(revisionDeleted + 1 - revisionCreated)));
-//					denumenator += 1;
+		};
+		
+		/**
+		 * Handles the actual contributions (words matching the topic).
+		 */
+		private final RowHandler wordContributionHandler = new RowHandler() {
+			public void handleRow(Object[] contribution) {
+				long newDocumentId = (Long)contribution[POS_SINGLE_DOCUMENT_ID];
+				if (newDocumentId != documentId) {
+					// new document
+					documentId = newDocumentId;
+					latestRevision = persistenceStore.getRevisionCount(documentId);
 				}
+	
+				long revisionCreated = (Long)contribution[POS_SINGLE_CONTRIB_REVISION_CREATED]; 
+				Long revisionDeleted = (Long)contribution[POS_SINGLE_CONTRIB_REVISION_DELETED];
+				if (revisionDeleted == null) {
+					// contribution has not been deleted
+					numerator += (1 - Math.pow(credibilityGrowthBase, -(latestRevision + 1 - revisionCreated)));
+					denumenator += 1;
+				} else {
+					// contribution has been deleted
+					long deletorId = (Long)contribution[POS_SINGLE_DELETOR];
+					if (deletorId != author.getId()) {
+						// Only if the contribution was deleted by a different author, the contribution is counted.
+						// If the deletor is the actual author of the contribution, it is just not taken into account
+						// TODO: this is stupid, because contributions deleted by s.o. else increase the credibility score while
+						// those deleted by the creator himself don't. 
+						// Recap of the facts.
+						// 1. Deletion of content can mean that content is either junk or outdated.
+						// 1a. If content is junk, then it gets deleted soon with high probability (by someone else).
+						//     -> Even if we count junk, then the credibility score for this bit will remain low (because it's deleted very soon).
+						// 1b. If content is outdated, then it's still worth taking it into account for the time it was present.
+						//     => Content deleted by s.o. else should be taken into account.
+						// 2. Deletion of content by the creator can actually mean the same (either junk or outdated).
+						// 2a. If the creator himself decides to withdraw his contribution, then his reason for this is "harder".
+						//     If he thinks he has written junk, then he will delete it very soon.
+						//     If he thinks his contributions are outdated, then it is improbable that he will delete them.
+						// 2b. The only reason why an author may delete his contribution after a long time is that he corrects/replaces content.
+						// => We can never be absolutely sure why someone deletes s.o. else's content or his own. We should always count content
+						// during its lifetime, regardless of whether the deletor is someone else or not.
+					
+						// => we put the following two lines...
+//						numerator += (1 - Math.pow(credibilityGrowthBase, -(revisionDeleted + 1 - revisionCreated)));
+//						denumenator += 1;
+					}
 				
-				// ... down here!
-				numerator += (1 - Math.pow(credibilityGrowthBase, -(revisionDeleted + 1 - revisionCreated)));
-				denumenator += 1;
+					// ... down here!
+					numerator += (1 - Math.pow(credibilityGrowthBase, -(revisionDeleted + 1 - revisionCreated)));
+					denumenator += 1;
+				}
 			}
-
-		}
-
-		
-		double credibility;
-		
-		if (denumenator == 0d) {
-			// obviously no contribution to this topic at all
-			credibility = 0d;
-		} else {
-			credibility = numerator / denumenator;
-		}
-		
-		
-		authorCredibility.setCredibility(credibility);
-		authorCredibility.setCredibilityItemCount((long)denumenator);
-		
-		persistenceStore.save(authorCredibility);
-		persistenceStore.commitChanges();
-		
-		return credibility;
+		};
 	}
 	
 	public double getExpertiseScore(String authorName, String topicName) {
@@ -315,25 +345,34 @@ public class ExpertiseModel {
 			return 0d;
 		}
 				
-		persistenceStore.beginTransaction();
-		Concept topic = persistenceStore.getConcept(topicClass.getURI());
-		Author author = persistenceStore.getAuthor(authorName);
-		persistenceStore.endTransaction();
-		
-		if (author == null || topic == null) {
-			return 0d;
+		persistenceStore.beginUnitOfWork(true);
+		try {
+			Concept topic = persistenceStore.getConcept(topicClass.getURI());
+			Author author = persistenceStore.getAuthor(authorName);
+			
+			double expertise = 0d;
+			if (author != null && topic != null) {
+				expertise = getExpertiseScore(author, topic);
+			}
+			
+			persistenceStore.commitUnitOfWork();
+			return expertise;
+		} finally {
+			persistenceStore.endUnitOfWork();
 		}
-		
-		return getExpertiseScore(author, topic);
 	}
 
 	public double getExpertiseScore(Author author, Concept topic) {
-		persistenceStore.beginTransaction();
-		AuthorCredibility authorCredibility = persistenceStore.getAuthorCredibility(author, topic);
-		persistenceStore.endTransaction();
-		if (authorCredibility == null)
-			return 0d;
-		return authorCredibility.getExpertiseAll();
+		persistenceStore.beginUnitOfWork(true);
+		try {
+			AuthorCredibility authorCredibility = persistenceStore.getAuthorCredibility(author, topic);
+			persistenceStore.commitUnitOfWork();
+			if (authorCredibility == null)
+				return 0d;
+			return authorCredibility.getExpertiseAll();
+		} finally {
+			persistenceStore.endUnitOfWork();
+		}
 	}
 	
 	/**
@@ -352,17 +391,19 @@ public class ExpertiseModel {
 			return;
 		}
 				
-		persistenceStore.beginTransaction();
-		Concept topic = persistenceStore.getConcept(topicClass.getURI());
-		Author author = persistenceStore.getAuthor(authorName);
-		persistenceStore.endTransaction();
-		
-		if (author == null || topic == null) {
-			return;
+		persistenceStore.beginUnitOfWork(false);
+		try {
+			Concept topic = persistenceStore.getConcept(topicClass.getURI());
+			Author author = persistenceStore.getAuthor(authorName);
+			
+			if (author != null && topic != null) {
+				calculateExpertiseScore(author, topic);
+			}
+			
+			persistenceStore.commitUnitOfWork();
+		} finally {
+			persistenceStore.endUnitOfWork();
 		}
-		
-		calculateExpertiseScore(author, topic);
-		
 	}
 
 	/**
@@ -376,74 +417,77 @@ public class ExpertiseModel {
 	 * @return
 	 */
 	public void calculateExpertiseScore(Author author, Concept topic) {
-		persistenceStore.beginTransaction();
-		
-		AuthorCredibility authorCredibility = persistenceStore.getAuthorCredibility(author, topic);
-		
-		// my expertise for this topic
-		Double myExpertise = authorCredibility.getExpertise();
-		if (myExpertise == 0d) {
-			// we can stop here, because if my expertise is 0, I won't add anything to related topics either (I would add 0, which has no effect)
-			persistenceStore.endTransaction();
-			return;
-		}
+		persistenceStore.beginUnitOfWork(false);
+		try {
+			AuthorCredibility authorCredibility = persistenceStore.getAuthorCredibility(author, topic);
+		
+			// my expertise for this topic
+			Double myExpertise = authorCredibility.getExpertise();
+			if (myExpertise == 0d) {
+				// we can stop here, because if my expertise is 0, I won't add anything to related topics either (I would add 0, which has no effect)
+				persistenceStore.commitUnitOfWork();
+				return;
+			}
 		
-		Long myExpertiseItemCount = authorCredibility.getExpertiseItemCount();
+			Long myExpertiseItemCount = authorCredibility.getExpertiseItemCount();
 
-		// my credibility for this topic
-		Double myCredibility = authorCredibility.getCredibility();
-		Long myCredibilityItemCount = authorCredibility.getCredibilityItemCount();
+			// my credibility for this topic
+			Double myCredibility = authorCredibility.getCredibility();
+			Long myCredibilityItemCount = authorCredibility.getCredibilityItemCount();
 		
 				
-		// gets similar topics and (including the given one) and their similarity values
-		List<Pair<Concept, Double>> similarConcepts = persistenceStore.getMostSimilarConcepts(topic, minSimilarity);
-		for (Pair<Concept, Double> similarConceptSimPair : similarConcepts) {
-			Concept similarConcept = similarConceptSimPair.getKey();
-			if (similarConcept.equals(topic)) {
-				// we already have our expertise value. Continue
-				continue;
-			}
+			// gets similar topics and (including the given one) and their similarity values
+			List<Pair<Concept, Double>> similarConcepts = persistenceStore.getMostSimilarConcepts(topic, minSimilarity);
+			for (Pair<Concept, Double> similarConceptSimPair : similarConcepts) {
+				Concept similarConcept = similarConceptSimPair.getKey();
+				if (similarConcept.equals(topic)) {
+					// we already have our expertise value. Continue
+					continue;
+				}
 			
-			Double similarity = similarConceptSimPair.getValue();
+				Double similarity = similarConceptSimPair.getValue();
 			
-			AuthorCredibility similarConceptAuthorCredibility = persistenceStore.getAuthorCredibility(author, similarConcept);
+				AuthorCredibility similarConceptAuthorCredibility = persistenceStore.getAuthorCredibility(author, similarConcept);
 			
-			// add this credibility (weighted by similarity) to similar concept credibility (average)
-			Double similarConceptCredibility = similarConceptAuthorCredibility.getCredibilityAll();
-			Long similarConceptCredibilityItemCount = similarConceptAuthorCredibility.getCredibilityItemCountAll();
-			if (similarConceptCredibility == null) {
-				similarConceptCredibility = similarConceptAuthorCredibility.getCredibility();
-				similarConceptCredibilityItemCount = similarConceptAuthorCredibility.getCredibilityItemCount();
-			}
+				// add this credibility (weighted by similarity) to similar concept credibility (average)
+				Double similarConceptCredibility = similarConceptAuthorCredibility.getCredibilityAll();
+				Long similarConceptCredibilityItemCount = similarConceptAuthorCredibility.getCredibilityItemCountAll();
+				if (similarConceptCredibility == null) {
+					similarConceptCredibility = similarConceptAuthorCredibility.getCredibility();
+					similarConceptCredibilityItemCount = similarConceptAuthorCredibility.getCredibilityItemCount();
+				}
 			
-			Long newCredibilityItemCount = similarConceptCredibilityItemCount + myCredibilityItemCount;
-			Double denomitator = (double)similarConceptCredibilityItemCount + ((double)myCredibilityItemCount * similarity);
-			Double newCredibility = (similarConceptCredibility + (myCredibility * similarity)) / denomitator;
+				Long newCredibilityItemCount = similarConceptCredibilityItemCount + myCredibilityItemCount;
+				Double denomitator = (double)similarConceptCredibilityItemCount + ((double)myCredibilityItemCount * similarity);
+				Double newCredibility = (similarConceptCredibility + (myCredibility * similarity)) / denomitator;
 			
-			similarConceptAuthorCredibility.setCredibilityAll(newCredibility);
-			similarConceptAuthorCredibility.setCredibilityItemCountAll(newCredibilityItemCount);
+				similarConceptAuthorCredibility.setCredibilityAll(newCredibility);
+				similarConceptAuthorCredibility.setCredibilityItemCountAll(newCredibilityItemCount);
 			
 			
-			// add this expertise (weighted by similarity) to similar concept expertise (sum)
-			Double similarConceptExpertise = similarConceptAuthorCredibility.getExpertiseAll();
-			Long similarConceptExpertiseItemCount = similarConceptAuthorCredibility.getExpertiseItemCountAll();
-			if (similarConceptExpertise == null) {
-				similarConceptExpertise = similarConceptAuthorCredibility.getExpertise();
-				similarConceptExpertiseItemCount = similarConceptAuthorCredibility.getExpertiseItemCount();
-			}
+				// add this expertise (weighted by similarity) to similar concept expertise (sum)
+				Double similarConceptExpertise = similarConceptAuthorCredibility.getExpertiseAll();
+				Long similarConceptExpertiseItemCount = similarConceptAuthorCredibility.getExpertiseItemCountAll();
+				if (similarConceptExpertise == null) {
+					similarConceptExpertise = similarConceptAuthorCredibility.getExpertise();
+					similarConceptExpertiseItemCount = similarConceptAuthorCredibility.getExpertiseItemCount();
+				}
 			
-			Long newExpertiseItemCount = similarConceptExpertiseItemCount + myExpertiseItemCount;
-			Double newExpertise = similarConceptExpertise + (myExpertise * similarity);
+				Long newExpertiseItemCount = similarConceptExpertiseItemCount + myExpertiseItemCount;
+				Double newExpertise = similarConceptExpertise + (myExpertise * similarity);
 			
-			similarConceptAuthorCredibility.setExpertiseAll(newExpertise);
-			similarConceptAuthorCredibility.setExpertiseItemCountAll(newExpertiseItemCount);
+				similarConceptAuthorCredibility.setExpertiseAll(newExpertise);
+				similarConceptAuthorCredibility.setExpertiseItemCountAll(newExpertiseItemCount);
 
-			persistenceStore.save(similarConceptAuthorCredibility);
+				persistenceStore.save(similarConceptAuthorCredibility);
 			
 			
-		}
+			}
 		
-		persistenceStore.commitChanges();
+			persistenceStore.commitUnitOfWork();
+		} finally {
+			persistenceStore.endUnitOfWork();
+		}
 
 	}
 	
@@ -516,47 +560,52 @@ public class ExpertiseModel {
 	 */
 	public double getRawExpertiseScore(Author author, Concept topic) {
 		
-		persistenceStore.beginTransaction();
-		AuthorCredibility authorCredibility = persistenceStore.getAuthorCredibility(author, topic);
+		persistenceStore.beginUnitOfWork(false);
+		try {
+			AuthorCredibility authorCredibility = persistenceStore.getAuthorCredibility(author, topic);
 		
-		Double expertise = 0d;
-
-		List<Object[]> sections = persistenceStore.getContributionsToSectionsWithConceptForAuthor(topic, author);
+			Double expertise = 0d;
 
+			final double[] sectionExpertise = new double[1];
 		
-		
-		// adding words to a section during one revision
-		long sectionId = -1L;
-		int sectionLevel = -1;
-		
-		for (Object[] contribution : sections) {
-			long newSectionId = (Long)contribution[POS_SECTION_ID];
-			if (newSectionId != sectionId) {
-				// new section
-				sectionId = newSectionId;
-				sectionLevel = (Integer)contribution[POS_SECTION_LEVEL];
-				
-			}
-
-			double sectionConceptSimilarity = (Double)contribution[POS_SECTION_SIMILARITY];
+			int sectionCount = persistenceStore.scrollContributionsToSectionsWithConceptForAuthor(topic, author, new RowHandler() {
+				// adding words to a section during one revision
+				long sectionId = -1L;
+				int sectionLevel = -1;
 			
-			expertise += sectionConceptSimilarity * sectionContributionWeights[sectionLevel-1];
-		}
+				public void handleRow(Object[] contribution) {
+					long newSectionId = (Long)contribution[POS_SECTION_ID];
+					if (newSectionId != sectionId) {
+						// new section
+						sectionId = newSectionId;
+						sectionLevel = (Integer)contribution[POS_SECTION_LEVEL];
+					
+					}
+	
+					double sectionConceptSimilarity = (Double)contribution[POS_SECTION_SIMILARITY];
+				
+					sectionExpertise[0] += sectionConceptSimilarity * sectionContributionWeights[sectionLevel-1];
+				}
+			});
+			expertise += sectionExpertise[0];
 		
-		// now the actual contributions (=words matching the concept)
+			// now the actual contributions (=words matching the concept), each counts 1
 		
-		List<Object[]> words = persistenceStore.getContributionForConcept(topic, author);
-		for (Object[] contribution : words) {
-			expertise += 1d;
-		}
+			int wordCount = persistenceStore.scrollContributionForConcept(topic, author, new RowHandler() {
+				public void handleRow(Object[] contribution) {
+				}
+			});
+			expertise += wordCount;
 
-		authorCredibility.setExpertise(expertise);
-		authorCredibility.setExpertiseItemCount((long)(sections.size() + words.size()));
-		
-		persistenceStore.commitChanges();
+			authorCredibility.setExpertise(expertise);
+			authorCredibility.setExpertiseItemCount((long)(sectionCount + wordCount));
 		
-		return expertise;
- 
+			persistenceStore.commitUnitOfWork();
+			
+			return expertise;
+		} finally {
+			persistenceStore.endUnitOfWork();
+		}
 	}
 	
 	/**
@@ -576,37 +625,37 @@ public class ExpertiseModel {
 
 		String topicURI = clazz.getURI();
 
-		persistenceStore.beginTransaction();
-		
-		Concept topic = persistenceStore.getConcept(topicURI);
-		
-		List<AuthorContribution> contributions = persistenceStore.getCachedAuthorContributions(topic);
-		
-		persistenceStore.endTransaction();
-
-		if (!contributions.isEmpty()) {
-			for (AuthorContribution authorContribution : contributions) {
-				String authorName = authorContribution.getAuthor().getName();
-				result.add(authorName);
+		persistenceStore.beginUnitOfWork(true);
+		try {
+			Concept topic = persistenceStore.getConcept(topicURI);
+			
+			List<AuthorContribution> contributions = persistenceStore.getCachedAuthorContributions(topic);
+			
+			if (!contributions.isEmpty()) {
+				for (AuthorContribution authorContribution : contributions) {
+					String authorName = authorContribution.getAuthor().getName();
+					result.add(authorName);
+				}
+				persistenceStore.commitUnitOfWork();
+				return result;
+			}
+			
+			List<Author> directAuthors = persistenceStore.getAuthorsWhoContributedToTopic(topic);
+			List<Author> indirectAuthors = persistenceStore.getAuthorsWhoIndirectlyContributedToTopic(topic);
+			persistenceStore.commitUnitOfWork();
+			
+			for (Author author : directAuthors) {
+				result.add(author.getName());
 			}
+			
+			for (Author author : indirectAuthors) {
+				result.add(author.getName());
+			}
+			
 			return result;
+		} finally {
+			persistenceStore.endUnitOfWork();
 		}
-		
-		
-		persistenceStore.beginTransaction();
-		List<Author> directAuthors = persistenceStore.getAuthorsWhoContributedToTopic(topic);
-		List<Author> indirectAuthors = persistenceStore.getAuthorsWhoIndirectlyContributedToTopic(topic);
-		persistenceStore.endTransaction();
-		
-		for (Author author : directAuthors) {
-			result.add(author.getName());
-		}
-		
-		for (Author author : indirectAuthors) {
-			result.add(author.getName());
-		}
-		
-		return result;
 	}
 	
 	/**
@@ -621,12 +670,23 @@ public class ExpertiseModel {
 
 		OntModel model = OntologyIndex.get().getModel();
 
-		persistenceStore.beginTransaction();
-		
-		Author author = persistenceStore.getAuthor(authorName);		
-		List<AuthorContribution> contributions = persistenceStore.getCachedAuthorContributions(author);
-		
-		persistenceStore.endTransaction();
+		Author author;
+		List<AuthorContribution> contributions;
+		List<Concept> directContributions = Collections.emptyList();
+		List<Concept> indirectContributions = Collections.emptyList();
+		
+		persistenceStore.beginUnitOfWork(true);
+		try {
+			author = persistenceStore.getAuthor(authorName);		
+			contributions = persistenceStore.getCachedAuthorContributions(author);
+			if (contributions.isEmpty() && author != null) {
+				directContributions = persistenceStore.getContributedTopics(author);
+				indirectContributions = persistenceStore.getIndirectContributedTopics(author);
+			}
+			persistenceStore.commitUnitOfWork();
+		} finally {
+			persistenceStore.endUnitOfWork();
+		}
 
 		if (!contributions.isEmpty()) {
 			for (AuthorContribution authorContribution : contributions) {
@@ -646,11 +706,6 @@ public class ExpertiseModel {
 			return Collections.EMPTY_SET;
 		}
 		
-		persistenceStore.beginTransaction();
-		List<Concept> directContributions = persistenceStore.getContributedTopics(author);
-		List<Concept> indirectContributions = persistenceStore.getIndirectContributedTopics(author);
-		persistenceStore.endTransaction();
-		
 		for (Concept topic : directContributions) {
 			OntClass clazz = model.getOntClass(topic.getUri());
 			ExtendedIterator iter = clazz.listLabels(Config.getAppProperty(Config.Key.LANGUAGE));
@@ -701,50 +756,21 @@ public class ExpertiseModel {
 	 * @return the TF/IDF
 	 */
 	public double getTFIDFWeight(Long documentId, String word) {
-		persistenceStore.beginTransaction();
-		
-		SQLQuery q = persistenceStore.createSQLQuery("select count(*) as count from ( " + 
-				"select word from word w,  revision r " + 
-				"where w.id_revision_created = r.id " + 
-				"and w.id_revision_deleted is null " + 
-				"and r.id_document = :documentId " + 
-				"and word = :word) words");
-		
-		q.setLong("documentId", documentId).setString("word", word);
-		q.addScalar("count", Hibernate.INTEGER);
-		
-		int wordDocumentFreq = (Integer)q.uniqueResult();
-
-		q = persistenceStore.createSQLQuery("select count(*) as count from ( " + 
-				"select word from word w,  revision r " + 
-				"where w.id_revision_created = r.id " + 
-				"and w.id_revision_deleted is null " + 
-				"and r.id_document = :documentId) words");
-		
-		q.setLong("documentId", documentId);
-		q.addScalar("count", Hibernate.INTEGER);
-		
-		int allDocumentFreq = (Integer)q.uniqueResult();
-		
-		q = persistenceStore.createSQLQuery("select count(*) as count from document");
-		q.addScalar("count", Hibernate.INTEGER);
-		
-		int documentCount = (Integer)q.uniqueResult();
-		
-		
-		q = persistenceStore.createSQLQuery("select count(*) as count from ( " + 
-				"	select distinct d.id from document d, revision rc, word w " + 
-				"	where w.word=:word " + 
-				"	and w.id_revision_created = rc.id " + 
-				"	and w.id_revision_deleted is null " + 
-				"	and rc.id_document = d.id) word");
-		
-		q.setString("word", word);
-		q.addScalar("count", Hibernate.INTEGER);
-		
-		int wordCorpusFreq = (Integer)q.uniqueResult();
-
-		persistenceStore.endTransaction();
+		int wordDocumentFreq;
+		int allDocumentFreq;
+		int documentCount;
+		int wordCorpusFreq;
+		
+		persistenceStore.beginUnitOfWork(true);
+		try {
+			wordDocumentFreq = persistenceStore.getWordFrequency(documentId, word);
+			allDocumentFreq = persistenceStore.getWordCount(documentId);
+			documentCount = persistenceStore.getDocumentCount();
+			wordCorpusFreq = persistenceStore.getDocumentFrequency(word);
+			persistenceStore.commitUnitOfWork();
+		} finally {
+			persistenceStore.endUnitOfWork();
+		}
 		
 		double tf = (double)wordDocumentFreq / (double)allDocumentFreq;
 		double idf = Math.log((double)documentCount / (double)wordCorpusFreq);
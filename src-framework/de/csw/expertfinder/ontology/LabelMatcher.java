@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.ontology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.hp.hpl.jena.ontology.OntClass;
+
+/**
+ * Finds the longest sequence of words matching the label of an ontology
+ * class, see {@link OntologyIndex#getClassesMatchingTerms(java.util.List)}.
+ * 
+ * The stemmed labels are stored in a trie over token ids, each distinct stem
+ * of a label having its own id. A text is matched by converting each of its
+ * words to a token id once (see {@link #getTokenId(String)}) and sliding a
+ * ring buffer of at most {@link #getMaximumLength()} token ids over them. At
+ * each position, {@link #match(int[], int, int)} follows the trie as far as
+ * the tokens in the buffer allow. Matching does not allocate any objects.
+ * 
+ * The matcher does not change once it has been created and can be used by
+ * several threads.
+ * 
+ * @author ralph
+ */
+public class LabelMatcher {
+	
+	/** the token id of words not contained in any label */
+	public static final int UNKNOWN_TOKEN = -1;
+	
+	/** returned by {@link #match(int[], int, int)} if no label matches */
+	public static final int NO_MATCH = -1;
+	
+	private static final int[] NO_CHILDREN = new int[0];
+	
+	private final OntologyIndex index;
+	
+	private final HashMap<String, Integer> tokenIds = new HashMap<String, Integer>();
+	
+	private final int maxLength;
+	
+	// the trie, node 0 is the root. The children of each node are sorted by
+	// their token ids.
+	private final int[][] childTokens;
+	private final int[][] childNodes;
+	private final int[] depths;
+	/** the class whose label ends at each node, or null */
+	private final OntClass[] classes;
+	
+	/**
+	 * Creates a matcher for the given stemmed labels.
+	 * @param index the index stemming the words.
+	 * @param classesByStemmedLabels the classes by their stemmed labels, the
+	 *            stems being separated by {@link OntologyIndex#PREFIX_SEPARATOR}.
+	 * @param maxLength the maximum number of words of a label.
+	 */
+	LabelMatcher(OntologyIndex index, Map<String, OntClass> classesByStemmedLabels, int maxLength) {
+		this.index = index;
+		this.maxLength = maxLength;
+		
+		ArrayList<HashMap<Integer, Integer>> children = new ArrayList<HashMap<Integer, Integer>>();
+		ArrayList<OntClass> nodeClasses = new ArrayList<OntClass>();
+		ArrayList<Integer> nodeDepths = new ArrayList<Integer>();
+		children.add(new HashMap<Integer, Integer>());
+		nodeClasses.add(null);
+		nodeDepths.add(0);
+		
+		String separator = String.valueOf(OntologyIndex.PREFIX_SEPARATOR);
+		for (Map.Entry<String, OntClass> entry : classesByStemmedLabels.entrySet()) {
+			String label = entry.getKey();
+			if (label.length() == 0)
+				continue;
+			String[] stems = label.split(separator, -1);
+			if (stems.length > maxLength)
+				continue;
+			
+			int node = 0;
+			for (String stem : stems) {
+				Integer tokenId = tokenIds.get(stem);
+				if (tokenId == null) {
+					tokenId = tokenIds.size();
+					tokenIds.put(stem, tokenId);
+				}
+				Integer child = children.get(node).get(tokenId);
+				if (child == null) {
+					child = children.size();
+					children.get(node).put(tokenId, child);
+					children.add(new HashMap<Integer, Integer>());
+					nodeClasses.add(null);
+					nodeDepths.add(nodeDepths.get(node) + 1);
+				}
+				node = child;
+			}
+			nodeClasses.set(node, entry.getValue());
+		}
+		
+		int size = children.size();
+		childTokens = new int[size][];
+		childNodes = new int[size][];
+		depths = new int[size];
+		classes = nodeClasses.toArray(new OntClass[size]);
+		for (int node = 0; node < size; node++) {
+			depths[node] = nodeDepths.get(node);
+			HashMap<Integer, Integer> nodeChildren = children.get(node);
+			if (nodeChildren.isEmpty()) {
+				childTokens[node] = NO_CHILDREN;
+				childNodes[node] = NO_CHILDREN;
+				continue;
+			}
+			int[] tokens = new int[nodeChildren.size()];
+			int i = 0;
+			for (Integer tokenId : nodeChildren.keySet()) {
+				tokens[i++] = tokenId;
+			}
+			Arrays.sort(tokens);
+			int[] nodes = new int[tokens.length];
+			for (i = 0; i < tokens.length; i++) {
+				nodes[i] = nodeChildren.get(tokens[i]);
+			}
+			childTokens[node] = tokens;
+			childNodes[node] = nodes;
+		}
+	}
+	
+	/**
+	 * Returns the token id of the given word, stemming it the same way as
+	 * {@link OntologyIndex#getClassesMatchingTerms(java.util.List)} does.
+	 * @param word a word or word stem.
+	 * @return the token id or {@link #UNKNOWN_TOKEN} if no label contains the word.
+	 */
+	public int getTokenId(String word) {
+		Integer tokenId = tokenIds.get(index.stem(word).toLowerCase());
+		return tokenId == null ? UNKNOWN_TOKEN : tokenId;
+	}
+	
+	/**
+	 * @return the maximum number of words of a label, i.e. the size of the
+	 *         ring buffer passed to {@link #match(int[], int, int)}.
+	 */
+	public int getMaximumLength() {
+		return maxLength;
+	}
+	
+	/**
+	 * Finds the longest label matching the first tokens of the given ring buffer.
+	 * @param tokens a ring buffer of token ids.
+	 * @param start the position of the first token in the buffer.
+	 * @param count the number of tokens in the buffer.
+	 * @return the longest match, see {@link #getLength(int)} and
+	 *         {@link #getOntClass(int)}, or {@link #NO_MATCH}.
+	 */
+	public int match(int[] tokens, int start, int count) {
+		int result = NO_MATCH;
+		int node = 0;
+		int capacity = tokens.length;
+		for (int i = 0; i < count; i++) {
+			int tokenId = tokens[(start + i) % capacity];
+			if (tokenId == UNKNOWN_TOKEN)
+				break;
+			int child = Arrays.binarySearch(childTokens[node], tokenId);
+			if (child < 0)
+				break;
+			node = childNodes[node][child];
+			if (classes[node] != null)
+				result = node;
+		}
+		return result;
+	}
+	
+	/**
+	 * @param match a match returned by {@link #match(int[], int, int)}.
+	 * @return the number of words matched.
+	 */
+	public int getLength(int match) {
+		return depths[match];
+	}
+	
+	/**
+	 * @param match a match returned by {@link #match(int[], int, int)}.
+	 * @return the class whose label has been matched.
+	 */
+	public OntClass getOntClass(int match) {
+		return classes[match];
+	}
+}
@@ -103,6 +103,12 @@ public class OntologyIndex {
 	
 	private HashMap<String, OntClass> classesByStemmedLabels;
 	
+	/** matches the labels in classesByStemmedLabels, created on demand */
+	private LabelMatcher labelMatcher;
+	
+	/** incremented whenever the index changes, see {@link #getGeneration()} */
+	private volatile int generation;
+	
 	/** character that is used to concatenate two fragments in the context of a prefix index */
 	public static final char PREFIX_SEPARATOR = ' ';
 	
@@ -198,7 +204,7 @@ public class OntologyIndex {
 	/**
 	 * @return the only OntologyIndex instance.
 	 */
-	public static OntologyIndex get() {
+	public static synchronized OntologyIndex get() {
 		if (instance == null)
 			instance = new OntologyIndex();
 		return instance;
@@ -207,6 +213,28 @@ public class OntologyIndex {
 	public int getMaximumCompoundTermSize() {
 		return maxTermSize;
 	}
+	
+	/**
+	 * Returns the generation of the index, which changes whenever the index
+	 * is created or reset. Results derived from the index (e.g. cached
+	 * matches) are outdated if the generation has changed since.
+	 * @return the generation of the index.
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * Returns a matcher finding the longest sequences of words that match the
+	 * label of an ontology class, equivalent to
+	 * {@link #getClassesMatchingTerms(List)}.
+	 * @return the matcher for the current index.
+	 */
+	public synchronized LabelMatcher getLabelMatcher() {
+		if (labelMatcher == null)
+			labelMatcher = new LabelMatcher(this, classesByStemmedLabels, maxTermSize);
+		return labelMatcher;
+	}
 
 	/**
 	 * @return the ontology model
@@ -262,7 +290,7 @@ public class OntologyIndex {
 		StringBuilder stemmedLabelBuf = new StringBuilder();
 		int size = words.size();
 		for (int i=0; i<size; i++) {
-			stemmedLabelBuf.append(stemmer.stem(words.get(i)).toLowerCase());
+			stemmedLabelBuf.append(stem(words.get(i)).toLowerCase());
 			stemmedLabelBuf.append(PREFIX_SEPARATOR);
 			String stemmedLabel = stemmedLabelBuf.substring(0, stemmedLabelBuf.length() - 1);
 			
@@ -409,6 +437,18 @@ public class OntologyIndex {
 		return getFirstExactMatch(term) != null;
 	}
 
+	/**
+	 * Stems the given word. The stemmer is not thread-safe, the index may be
+	 * used by several threads.
+	 * @param word
+	 * @return the stem of the word.
+	 */
+	String stem(String word) {
+		synchronized (stemmer) {
+			return stemmer.stem(word);
+		}
+	}
+
 	/**
 	 * Look up <code>term</code> in the ontology and return a list of concepts
 	 * (URIs) that corresponds to the term. It does not search for similar
@@ -420,7 +460,7 @@ public class OntologyIndex {
 	 */
 	// TODO include a more flexible search using Levenshtein for words with a length > 5
 	public List<String> getExactMatches(String term) {
-		return getFromLabelIndex(stemmer.stem(term));
+		return getFromLabelIndex(stem(term));
 	}
 
 	/**
@@ -442,7 +482,7 @@ public class OntologyIndex {
 	 * @return first matching concept or <code>null</code>
 	 */
 	public String getFirstExactMatch(String term) {
-		List<String> matches =  getFromLabelIndex(stemmer.stem(term));
+		List<String> matches =  getFromLabelIndex(stem(term));
 		return matches.size() > 0 ? matches.get(0) : null;
 	}
 
@@ -657,7 +697,7 @@ public class OntologyIndex {
 						if (stopwords.contains(labelWord)) {
 							continue;
 						}
-						stemmedLabelBuf.append(stemmer.stem(labelWord));
+						stemmedLabelBuf.append(stem(labelWord));
 						stemmedLabelBuf.append(PREFIX_SEPARATOR);
 					}
 					
@@ -678,10 +718,14 @@ public class OntologyIndex {
 				}
 				String label = OntologyUtils.getLabel(ontClass.getURI());
 				// TODO maybe we should use the GermanAnalyzer at this place to have stop words removed
-				addToLabelIndex(stemmer.stem(label), ontClass.getURI());
+				addToLabelIndex(stem(label), ontClass.getURI());
 				addToPrefixIndex(label);
 			}
 		}
+		synchronized (this) {
+			labelMatcher = null;
+			generation++;
+		}
 		log.debug("done");
 	}
 
@@ -781,7 +825,7 @@ public class OntologyIndex {
 	public boolean isPrefix(Collection<String> fragments) {
 		List<String> stems = new ArrayList<String>();
 		for (String f : fragments) {
-			stems.add(stemmer.stem(f));
+			stems.add(stem(f));
 		}
 		return prefixIdx.contains(implode(stems));
 	}
@@ -805,11 +849,11 @@ public class OntologyIndex {
 			return Collections.emptyList();
 		
 		List<String> result = new ArrayList<String>();
-		String prefix = stemmer.stem(fragments[0]);
+		String prefix = stem(fragments[0]);
 		result.add(prefix);
 			
 		for (int i = 1; i < fragments.length - 1; i++) {
-			prefix = implode(prefix, stemmer.stem(fragments[i]));
+			prefix = implode(prefix, stem(fragments[i]));
 			result.add(prefix);
 		}
 		
@@ -911,6 +955,10 @@ public class OntologyIndex {
 		model.removeAll();
 		labelIdx.clear();
 		prefixIdx.clear();
+		synchronized (this) {
+			labelMatcher = null;
+			generation++;
+		}
 	}
 	
 	public Map<String, String[]> getLabelIndex() {
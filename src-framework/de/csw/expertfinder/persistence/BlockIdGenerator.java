@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.exception.JDBCExceptionHelper;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.type.Type;
+
+import de.csw.expertfinder.config.Config;
+
+/**
+ * An identifier generator that allocates blocks of identifiers from a sequence
+ * table, using hibernate's pooled optimizer. In contrast to the native
+ * (identity) generator, identifiers are known before the rows are inserted,
+ * which allows inserts to be batched.
+ * 
+ * Unless specified otherwise in the mapping, the sequence table is
+ * {@value #DEFAULT_TABLE} and the block size is taken from
+ * {@link Config.Key#PERSISTENCE_ID_BLOCK_SIZE}. Each entity should use its own
+ * segment (parameter <code>segment_value</code>).
+ * 
+ * Blocks are normally allocated in a separate transaction. For SQLite, which
+ * locks the whole database file while writing, they are allocated within the
+ * current transaction instead.
+ * 
+ * @author ralph
+ */
+public class BlockIdGenerator extends TableGenerator {
+	
+	/** The name of the default sequence table */
+	public static final String DEFAULT_TABLE = "id_sequence";
+	
+	private boolean isolated = true;
+
+	/**
+	 * @see org.hibernate.id.enhanced.TableGenerator#configure(org.hibernate.type.Type, java.util.Properties, org.hibernate.dialect.Dialect)
+	 */
+	@Override
+	public void configure(Type type, Properties params, Dialect dialect) throws MappingException {
+		if (params.getProperty(TABLE_PARAM) == null) {
+			params.setProperty(TABLE_PARAM, DEFAULT_TABLE);
+		}
+		if (params.getProperty(INCREMENT_PARAM) == null) {
+			params.setProperty(INCREMENT_PARAM, String.valueOf(Config.getIntAppProperty(Config.Key.PERSISTENCE_ID_BLOCK_SIZE)));
+		}
+		if (params.getProperty(OPT_PARAM) == null) {
+			params.setProperty(OPT_PARAM, "pooled");
+		}
+		isolated = !(dialect instanceof SQLiteDialect);
+		super.configure(type, params, dialect);
+	}
+	
+	/**
+	 * @see org.hibernate.engine.TransactionHelper#doWorkInNewTransaction(org.hibernate.engine.SessionImplementor)
+	 */
+	@Override
+	public Serializable doWorkInNewTransaction(SessionImplementor session) throws HibernateException {
+		if (isolated) {
+			return super.doWorkInNewTransaction(session);
+		}
+		try {
+			return doWorkInCurrentTransaction(session.connection(), null);
+		} catch (SQLException e) {
+			throw JDBCExceptionHelper.convert(session.getFactory().getSQLExceptionConverter(), e, "could not allocate identifier block");
+		}
+	}
+}
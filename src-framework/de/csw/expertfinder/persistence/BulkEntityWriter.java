@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.hibernate.jdbc.Work;
+
+import de.csw.expertfinder.document.Noun;
+import de.csw.expertfinder.document.PersistableEntity;
+import de.csw.expertfinder.document.Section;
+import de.csw.expertfinder.document.SectionConcept;
+import de.csw.expertfinder.document.Word;
+
+/**
+ * Writes the sections, section concepts and words of one revision to the
+ * database using plain JDBC. New entities are inserted with multi-row insert
+ * statements, existing entities are updated with batched update statements.
+ * Deleted words can be moved from the word table to the table
+ * {@value #DELETED_WORD_TABLE} (see
+ * {@link de.csw.expertfinder.config.Config.Key#PERSISTENCE_SPLIT_DELETED_WORDS}).
+ * 
+ * The identifiers of new entities must have been assigned before (see
+ * {@link BlockIdGenerator}), and all entities referenced by the written
+ * entities (revisions, concepts) must have been flushed to the database before
+ * this work is executed.
+ * 
+ * @author ralph
+ */
+class BulkEntityWriter implements Work {
+	
+	private static final Logger log = Logger.getLogger(BulkEntityWriter.class);
+	
+	/** The table deleted words are moved to */
+	static final String DELETED_WORD_TABLE = "word_deleted";
+	
+	private static final String SECTION_COLUMNS = "id, title, level, startPos, endPos, id_parent_section, id_revision_created, id_revision_deleted";
+	private static final String SECTION_UPDATE = "update section set title = ?, level = ?, startPos = ?, endPos = ?, id_parent_section = ?, id_revision_created = ?, id_revision_deleted = ? where id = ?";
+	private static final String SECTION_CONCEPT_COLUMNS = "id, id_section, id_concept, similarity";
+	static final String WORD_COLUMNS = "id, word, wordStem, startPos, endPos, id_revision_created, id_revision_deleted, id_concept, id_section, isNoun";
+	private static final String WORD_UPDATE = "update word set word = ?, wordStem = ?, startPos = ?, endPos = ?, id_revision_created = ?, id_revision_deleted = ?, id_concept = ?, id_section = ?, isNoun = ? where id = ?";
+	private static final String WORD_DELETE = "delete from word where id = ?";
+
+	/**
+	 * Sorts sections by their level so that parent sections are inserted
+	 * before their child sections.
+	 */
+	private static final Comparator<Section> BY_LEVEL = new Comparator<Section>() {
+		public int compare(Section s1, Section s2) {
+			return s1.getLevel() - s2.getLevel();
+		}
+	};
+	
+	private final List<Section> newSections;
+	private final List<Section> changedSections;
+	private final List<SectionConcept> newSectionConcepts;
+	private final List<Word> newWords;
+	private final List<Word> changedWords;
+	private final List<Word> deletedWords;
+	private final int batchSize;
+	private final boolean multiRowInsert;
+	
+	/**
+	 * Creates a new BulkEntityWriter.
+	 * @param newSections sections to be inserted.
+	 * @param changedSections sections to be updated.
+	 * @param newSectionConcepts section concepts to be inserted.
+	 * @param newWords words to be inserted.
+	 * @param changedWords words to be updated.
+	 * @param deletedWords deleted words to be moved to {@value #DELETED_WORD_TABLE}.
+	 * @param batchSize the maximum number of rows per statement.
+	 * @param multiRowInsert if true, new rows are inserted with multi-row
+	 *        insert statements, otherwise with batched single-row statements
+	 *        (for databases that do not support multiple value tuples).
+	 */
+	BulkEntityWriter(List<Section> newSections, List<Section> changedSections, List<SectionConcept> newSectionConcepts,
+			List<Word> newWords, List<Word> changedWords, List<Word> deletedWords, int batchSize, boolean multiRowInsert) {
+		this.newSections = newSections;
+		this.changedSections = changedSections;
+		this.newSectionConcepts = newSectionConcepts;
+		this.newWords = newWords;
+		this.changedWords = changedWords;
+		this.deletedWords = deletedWords;
+		this.batchSize = Math.max(1, batchSize);
+		this.multiRowInsert = multiRowInsert;
+	}
+
+	/**
+	 * @see org.hibernate.jdbc.Work#execute(java.sql.Connection)
+	 */
+	public void execute(Connection connection) throws SQLException {
+		long start = System.currentTimeMillis();
+		
+		Collections.sort(newSections, BY_LEVEL);
+		insertSections(connection);
+		updateSections(connection);
+		insertSectionConcepts(connection);
+		updateWords(connection);
+		insertWords(connection);
+		moveDeletedWords(connection);
+		
+		if (log.isDebugEnabled()) {
+			log.debug("Bulk write: " + newSections.size() + "/" + changedSections.size() + " sections, " + 
+					newSectionConcepts.size() + " section concepts, " + newWords.size() + "/" + changedWords.size() + "/" + 
+					deletedWords.size() + " words (inserted/updated/moved) in " + (System.currentTimeMillis() - start) + " ms.");
+		}
+	}
+	
+	private void insertSections(Connection connection) throws SQLException {
+		for (int from = 0; from < newSections.size(); from += batchSize) {
+			List<Section> chunk = newSections.subList(from, Math.min(from + batchSize, newSections.size()));
+			PreparedStatement stmt = prepareInsert(connection, "section", SECTION_COLUMNS, 8, chunk.size());
+			try {
+				int i = 1;
+				for (Section section : chunk) {
+					stmt.setLong(i++, section.getId());
+					i = setSectionParameters(stmt, i, section);
+					i = endRow(stmt, i);
+				}
+				executeInsert(stmt);
+			} finally {
+				stmt.close();
+			}
+		}
+	}
+	
+	private void updateSections(Connection connection) throws SQLException {
+		if (changedSections.isEmpty())
+			return;
+		PreparedStatement stmt = connection.prepareStatement(SECTION_UPDATE);
+		try {
+			int count = 0;
+			for (Section section : changedSections) {
+				int i = setSectionParameters(stmt, 1, section);
+				stmt.setLong(i, section.getId());
+				stmt.addBatch();
+				if (++count % batchSize == 0)
+					stmt.executeBatch();
+			}
+			stmt.executeBatch();
+		} finally {
+			stmt.close();
+		}
+	}
+	
+	private void insertSectionConcepts(Connection connection) throws SQLException {
+		for (int from = 0; from < newSectionConcepts.size(); from += batchSize) {
+			List<SectionConcept> chunk = newSectionConcepts.subList(from, Math.min(from + batchSize, newSectionConcepts.size()));
+			PreparedStatement stmt = prepareInsert(connection, "section_has_concept", SECTION_CONCEPT_COLUMNS, 4, chunk.size());
+			try {
+				int i = 1;
+				for (SectionConcept sectionConcept : chunk) {
+					setId(stmt, i++, sectionConcept);
+					setId(stmt, i++, sectionConcept.getSection());
+					setId(stmt, i++, sectionConcept.getConcept());
+					stmt.setDouble(i++, sectionConcept.getSimilarity());
+					i = endRow(stmt, i);
+				}
+				executeInsert(stmt);
+			} finally {
+				stmt.close();
+			}
+		}
+	}
+
+	private void insertWords(Connection connection) throws SQLException {
+		for (int from = 0; from < newWords.size(); from += batchSize) {
+			List<Word> chunk = newWords.subList(from, Math.min(from + batchSize, newWords.size()));
+			PreparedStatement stmt = prepareInsert(connection, "word", WORD_COLUMNS, 10, chunk.size());
+			try {
+				int i = 1;
+				for (Word word : chunk) {
+					stmt.setLong(i++, word.getId());
+					i = setWordParameters(stmt, i, word);
+					i = endRow(stmt, i);
+				}
+				executeInsert(stmt);
+			} finally {
+				stmt.close();
+			}
+		}
+	}
+	
+	/**
+	 * Inserts the deleted words into {@value #DELETED_WORD_TABLE} and deletes
+	 * them from the word table.
+	 */
+	private void moveDeletedWords(Connection connection) throws SQLException {
+		if (deletedWords.isEmpty())
+			return;
+		for (int from = 0; from < deletedWords.size(); from += batchSize) {
+			List<Word> chunk = deletedWords.subList(from, Math.min(from + batchSize, deletedWords.size()));
+			PreparedStatement stmt = prepareInsert(connection, DELETED_WORD_TABLE, WORD_COLUMNS, 10, chunk.size());
+			try {
+				int i = 1;
+				for (Word word : chunk) {
+					stmt.setLong(i++, word.getId());
+					i = setWordParameters(stmt, i, word);
+					i = endRow(stmt, i);
+				}
+				executeInsert(stmt);
+			} finally {
+				stmt.close();
+			}
+		}
+		PreparedStatement stmt = connection.prepareStatement(WORD_DELETE);
+		try {
+			int count = 0;
+			for (Word word : deletedWords) {
+				stmt.setLong(1, word.getId());
+				stmt.addBatch();
+				if (++count % batchSize == 0)
+					stmt.executeBatch();
+			}
+			stmt.executeBatch();
+		} finally {
+			stmt.close();
+		}
+	}
+	
+	private void updateWords(Connection connection) throws SQLException {
+		if (changedWords.isEmpty())
+			return;
+		PreparedStatement stmt = connection.prepareStatement(WORD_UPDATE);
+		try {
+			int count = 0;
+			for (Word word : changedWords) {
+				int i = setWordParameters(stmt, 1, word);
+				stmt.setLong(i, word.getId());
+				stmt.addBatch();
+				if (++count % batchSize == 0)
+					stmt.executeBatch();
+			}
+			stmt.executeBatch();
+		} finally {
+			stmt.close();
+		}
+	}
+
+	private int setSectionParameters(PreparedStatement stmt, int i, Section section) throws SQLException {
+		stmt.setString(i++, section.getTitle());
+		stmt.setInt(i++, section.getLevel());
+		stmt.setInt(i++, section.getStartPos());
+		stmt.setInt(i++, section.getEndPos());
+		setId(stmt, i++, section.getParentSection());
+		setId(stmt, i++, section.getRevisionCreated());
+		setId(stmt, i++, section.getRevisionDeleted());
+		return i;
+	}
+
+	private int setWordParameters(PreparedStatement stmt, int i, Word word) throws SQLException {
+		stmt.setString(i++, word.getWord());
+		stmt.setString(i++, word.getWordStem());
+		stmt.setInt(i++, word.getStartPos());
+		stmt.setInt(i++, word.getEndPos());
+		setId(stmt, i++, word.getRevisionCreated());
+		setId(stmt, i++, word.getRevisionDeleted());
+		setId(stmt, i++, word.getConcept());
+		setId(stmt, i++, word.getSection());
+		stmt.setBoolean(i++, word instanceof Noun);
+		return i;
+	}
+
+	/**
+	 * Sets the identifier of the given (referenced) entity as parameter, or
+	 * NULL if there is no such entity.
+	 */
+	private void setId(PreparedStatement stmt, int i, PersistableEntity<?> entity) throws SQLException {
+		Object id = entity == null ? null : entity.getId();
+		if (id == null) {
+			if (entity != null)
+				throw new SQLException("Referenced entity " + entity + " has not been persisted yet.");
+			stmt.setNull(i, Types.INTEGER);
+		} else {
+			stmt.setLong(i, ((Number)id).longValue());
+		}
+	}
+	
+	/**
+	 * Prepares an insert statement for the given number of rows.
+	 */
+	private PreparedStatement prepareInsert(Connection connection, String table, String columns, int columnCount, int rows) throws SQLException {
+		return connection.prepareStatement(makeInsert(table, columns, columnCount, multiRowInsert ? rows : 1));
+	}
+	
+	/**
+	 * Finishes the parameters of one row of an insert statement.
+	 * @return the index of the next parameter.
+	 */
+	private int endRow(PreparedStatement stmt, int i) throws SQLException {
+		if (multiRowInsert) {
+			return i;
+		}
+		stmt.addBatch();
+		return 1;
+	}
+	
+	private void executeInsert(PreparedStatement stmt) throws SQLException {
+		if (multiRowInsert) {
+			stmt.executeUpdate();
+		} else {
+			stmt.executeBatch();
+		}
+	}
+	
+	/**
+	 * Builds an insert statement for the given table with as many value tuples
+	 * as there are rows.
+	 */
+	private static String makeInsert(String table, String columns, int columnCount, int rows) {
+		StringBuilder tuple = new StringBuilder("(");
+		for (int i = 0; i < columnCount; i++) {
+			tuple.append(i == 0 ? "?" : ", ?");
+		}
+		tuple.append(')');
+		
+		StringBuilder sql = new StringBuilder("insert into ").append(table).append(" (").append(columns).append(") values ");
+		for (int i = 0; i < rows; i++) {
+			if (i > 0)
+				sql.append(", ");
+			sql.append(tuple);
+		}
+		return sql.toString();
+	}
+}
@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import cern.colt.map.OpenIntIntHashMap;
+import de.csw.expertfinder.config.Config;
+import de.csw.expertfinder.document.Concept;
+import de.csw.expertfinder.document.Document;
+
+/**
+ * Resolves concept URIs and article ids to persistent entities for the
+ * components analyzing revisions, across transactions and documents. The
+ * resolver is shared by all threads, see
+ * {@link PersistenceStoreFacade#getEntityResolver()}.
+ * 
+ * When the resolver is created, all concepts and the ids of all documents
+ * with the id of their latest revision are loaded from the database, unless
+ * there are more than {@link Config.Key#PERSISTENCE_RESOLVER_CONCEPTS}
+ * concepts or {@link Config.Key#PERSISTENCE_RESOLVER_DOCUMENTS} documents. As
+ * long as the preloaded maps are complete, the resolver knows about new
+ * concepts, articles and revisions without asking the database. Otherwise,
+ * entities not found in the maps are looked up through the facade, and the
+ * maps are filled up to their maximum size as entities are resolved.
+ * 
+ * Entities created or revisions stored in a transaction are only known to the
+ * thread that created them until {@link #committed()} is called. If the
+ * transaction is rolled back, {@link #rolledBack()} has to be called.
+ * 
+ * The resolver assumes that no other process adds concepts or documents to
+ * the database while it is in use.
+ * 
+ * @author ralph
+ */
+public class EntityResolver {
+	
+	private static final Logger log = Logger.getLogger(EntityResolver.class);
+	
+	private final PersistenceStoreFacade persistenceStore;
+	
+	private final int maxConcepts;
+	private final HashMap<String, Concept> concepts = new HashMap<String, Concept>();
+	private final boolean conceptsComplete;
+	
+	/** the id of the latest revision (or 0 if not known) by article id */
+	private final int maxDocuments;
+	private final OpenIntIntHashMap latestRevisionIds = new OpenIntIntHashMap();
+	private final boolean documentsComplete;
+	
+	private long hits;
+	private long misses;
+	
+	private final ThreadLocal<Pending> pending = new ThreadLocal<Pending>() {
+		@Override
+		protected Pending initialValue() {
+			return new Pending();
+		}
+	};
+	
+	/**
+	 * Concepts created and revisions stored by one thread in its current transaction.
+	 */
+	private static class Pending {
+		final HashMap<String, Concept> concepts = new HashMap<String, Concept>();
+		final OpenIntIntHashMap latestRevisionIds = new OpenIntIntHashMap();
+		
+		boolean isEmpty() {
+			return concepts.isEmpty() && latestRevisionIds.isEmpty();
+		}
+		
+		void clear() {
+			concepts.clear();
+			latestRevisionIds.clear();
+		}
+	}
+	
+	/**
+	 * Creates a resolver and preloads the concepts and documents.
+	 * @param persistenceStore
+	 * @param maxConcepts the maximum number of concepts to keep.
+	 * @param maxDocuments the maximum number of documents to keep.
+	 */
+	@SuppressWarnings("unchecked")
+	EntityResolver(PersistenceStoreFacade persistenceStore, int maxConcepts, int maxDocuments) {
+		this.persistenceStore = persistenceStore;
+		this.maxConcepts = maxConcepts;
+		this.maxDocuments = maxDocuments;
+		
+		List<Concept> allConcepts = (List<Concept>)persistenceStore.preload("Concept.all", maxConcepts);
+		conceptsComplete = allConcepts.size() <= maxConcepts;
+		if (conceptsComplete) {
+			for (Concept concept : allConcepts) {
+				concepts.put(concept.getUri(), concept);
+			}
+		}
+		
+		List<Object[]> allDocuments = (List<Object[]>)persistenceStore.preload("Document.latestRevisionIds", maxDocuments);
+		documentsComplete = allDocuments.size() <= maxDocuments;
+		if (documentsComplete) {
+			for (Object[] row : allDocuments) {
+				Long latestRevisionId = (Long)row[1];
+				latestRevisionIds.put(((Long)row[0]).intValue(), latestRevisionId == null ? 0 : latestRevisionId.intValue());
+			}
+		}
+		
+		log.info("Entity resolver: " + (conceptsComplete ? concepts.size() + " concepts" : "more than " + maxConcepts + " concepts, not") + " preloaded, " +
+				(documentsComplete ? latestRevisionIds.size() + " documents" : "more than " + maxDocuments + " documents, not") + " preloaded");
+	}
+	
+	/**
+	 * Returns the concept with the given URI. If there is no such concept, a
+	 * new one is created and saved in the current transaction.
+	 * @param uri the concept's URI.
+	 * @return the concept with the given URI.
+	 */
+	public Concept getOrCreateConcept(String uri) {
+		Concept concept = getConcept(uri);
+		if (concept == null) {
+			concept = new Concept(uri);
+			persistenceStore.save(concept);
+			pending.get().concepts.put(uri, concept);
+		}
+		return concept;
+	}
+	
+	/**
+	 * Returns the concept with the given URI. If there is no such concept, a
+	 * new one is created and committed at once, such that threads resolving
+	 * concepts in parallel never create the same concept twice (see
+	 * {@link PersistenceStoreFacade#getOrCreateSharedConcept(String)}).
+	 * @param uri the concept's URI.
+	 * @return the concept with the given URI.
+	 */
+	public Concept getOrCreateSharedConcept(String uri) {
+		Concept concept = getConcept(uri);
+		if (concept == null) {
+			concept = persistenceStore.getOrCreateSharedConcept(uri);
+			synchronized (this) {
+				if (conceptsComplete || concepts.size() < maxConcepts)
+					concepts.put(uri, concept);
+			}
+		}
+		return concept;
+	}
+	
+	/**
+	 * Returns the concept with the given URI or null if no such concept exists.
+	 * @param uri the concept's URI.
+	 * @return the concept with the given URI or null.
+	 */
+	public Concept getConcept(String uri) {
+		Concept concept = pending.get().concepts.get(uri);
+		if (concept != null)
+			return concept;
+		
+		synchronized (this) {
+			concept = concepts.get(uri);
+			if (concept != null || conceptsComplete) {
+				hits++;
+				return concept;
+			}
+			misses++;
+		}
+		
+		concept = persistenceStore.getConcept(uri);
+		if (concept != null) {
+			synchronized (this) {
+				if (concepts.size() < maxConcepts)
+					concepts.put(uri, concept);
+			}
+		}
+		return concept;
+	}
+	
+	/**
+	 * Returns the document with the given article id, or null if no such
+	 * document exists. The database is not asked for articles known to be new.
+	 * @param articleId the article id.
+	 * @return the document or null.
+	 */
+	public Document getDocument(int articleId) {
+		synchronized (this) {
+			if (documentsComplete && !latestRevisionIds.containsKey(articleId) && !pending.get().latestRevisionIds.containsKey(articleId)) {
+				hits++;
+				return null;
+			}
+			misses++;
+		}
+		return persistenceStore.getDocument((long)articleId);
+	}
+	
+	/**
+	 * Tells if the revision with the given id is known to be newer than the
+	 * latest revision stored for the given article, i.e. if it cannot have been
+	 * stored yet. Revision ids grow with time.
+	 * @param articleId the article id.
+	 * @param revisionId the revision id.
+	 * @return true if the revision has not been stored yet, false if it might have been.
+	 */
+	public boolean isNewRevision(int articleId, int revisionId) {
+		int latestRevisionId = pending.get().latestRevisionIds.get(articleId);
+		if (latestRevisionId == 0) {
+			synchronized (this) {
+				if (latestRevisionIds.containsKey(articleId)) {
+					latestRevisionId = latestRevisionIds.get(articleId);
+				} else if (documentsComplete) {
+					// no revision of this article has been stored
+					return true;
+				}
+			}
+		}
+		return latestRevisionId != 0 && revisionId > latestRevisionId;
+	}
+	
+	/**
+	 * Records that the revision with the given id has been stored in the current transaction.
+	 * @param articleId the article id.
+	 * @param revisionId the revision id.
+	 */
+	public void revisionStored(int articleId, int revisionId) {
+		OpenIntIntHashMap pendingRevisionIds = pending.get().latestRevisionIds;
+		if (revisionId > pendingRevisionIds.get(articleId))
+			pendingRevisionIds.put(articleId, revisionId);
+	}
+	
+	/**
+	 * Makes the concepts and revisions of the current transaction of this
+	 * thread known to all threads. Must be called after the transaction has
+	 * been committed.
+	 */
+	public void committed() {
+		final Pending pending = this.pending.get();
+		if (pending.isEmpty())
+			return;
+		synchronized (this) {
+			for (Map.Entry<String, Concept> entry : pending.concepts.entrySet()) {
+				if (conceptsComplete || concepts.size() < maxConcepts)
+					concepts.put(entry.getKey(), entry.getValue());
+			}
+			int[] articleIds = pending.latestRevisionIds.keys().elements();
+			for (int i = 0; i < pending.latestRevisionIds.size(); i++) {
+				int articleId = articleIds[i];
+				if (documentsComplete || latestRevisionIds.containsKey(articleId) || latestRevisionIds.size() < maxDocuments)
+					latestRevisionIds.put(articleId, pending.latestRevisionIds.get(articleId));
+			}
+		}
+		pending.clear();
+	}
+	
+	/**
+	 * Discards the concepts and revisions of the current transaction of this thread.
+	 */
+	public void rolledBack() {
+		pending.get().clear();
+	}
+	
+	/**
+	 * Detaches the concepts and revisions of the current transaction from this
+	 * thread, see {@link PersistenceStoreFacade#suspendTransaction()}.
+	 * @return the pending state of the transaction.
+	 */
+	Object suspend() {
+		Pending result = pending.get();
+		pending.remove();
+		return result;
+	}
+	
+	/**
+	 * Continues a suspended transaction in this thread, see
+	 * {@link PersistenceStoreFacade#resumeTransaction(PersistenceStoreFacade.SuspendedTransaction)}.
+	 * @param state the state returned by {@link #suspend()}.
+	 */
+	void resume(Object state) {
+		pending.set((Pending)state);
+	}
+	
+	/**
+	 * Records that a document has been created for the given article in the
+	 * current transaction, without any revisions yet.
+	 * @param articleId the article id.
+	 */
+	public void documentCreated(int articleId) {
+		OpenIntIntHashMap pendingRevisionIds = pending.get().latestRevisionIds;
+		if (!pendingRevisionIds.containsKey(articleId))
+			pendingRevisionIds.put(articleId, 0);
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return "Entity resolver: " + concepts.size() + " concepts, " + latestRevisionIds.size() + " documents, " + hits + " hits, " + misses + " misses";
+	}
+}
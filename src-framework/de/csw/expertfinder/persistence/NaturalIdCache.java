@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.csw.expertfinder.document.PersistableEntity;
+
+/**
+ * A bounded cache mapping the natural ids of reference entities (e.g. the URI
+ * of a concept or the name of an author) to the (detached) entities. If the
+ * cache is full, the least recently used entry is evicted. The cache keeps
+ * track of hits, misses and evictions. All methods are thread-safe.
+ * 
+ * Only entities that are known to be persistent (i.e. whose transaction has
+ * been committed) should be put into the cache.
+ * 
+ * @param <E> the entity type.
+ * @author ralph
+ */
+public class NaturalIdCache<E extends PersistableEntity<Long>> {
+	
+	private final String name;
+	private final int maxSize;
+	private final LinkedHashMap<String, E> entries;
+	
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	/**
+	 * Creates a new cache.
+	 * @param name a name for the cache (used for logging).
+	 * @param maxSize the maximum number of entries.
+	 */
+	public NaturalIdCache(String name, final int maxSize) {
+		this.name = name;
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<String, E>(16, .75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, E> eldest) {
+				if (size() > NaturalIdCache.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the entity with the given natural id, or null if there is no such
+	 * entity in the cache.
+	 * @param naturalId
+	 * @return the entity with the given natural id or null.
+	 */
+	public synchronized E get(String naturalId) {
+		E entity = entries.get(naturalId);
+		if (entity == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return entity;
+	}
+	
+	/**
+	 * Adds the given entity to the cache.
+	 * @param naturalId the entity's natural id.
+	 * @param entity the entity.
+	 */
+	public synchronized void put(String naturalId, E entity) {
+		if (maxSize > 0) {
+			entries.put(naturalId, entity);
+		}
+	}
+	
+	/**
+	 * Removes the entity with the given natural id from the cache.
+	 * @param naturalId
+	 */
+	public synchronized void remove(String naturalId) {
+		entries.remove(naturalId);
+	}
+	
+	/**
+	 * Removes all entries from the cache. The statistics are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+	public synchronized int getSize() {
+		return entries.size();
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * Returns the fraction of lookups that could be answered from the cache.
+	 * @return the hit ratio (between 0 and 1).
+	 */
+	public synchronized double getHitRatio() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0d : (double)hits / lookups;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return name + " cache: " + entries.size() + "/" + maxSize + " entries, " + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+	}
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.jmx.StatisticsService;
+import org.hibernate.stat.Statistics;
+
+import de.csw.expertfinder.config.Config;
+
+/**
+ * Collects the execution counts and times of the {@link PersistenceStoreFacade}
+ * methods and of its named queries, logs slow queries and publishes the
+ * statistics along with hibernate's own statistics.
+ * 
+ * Queries taking longer than {@link Config.Key#PERSISTENCE_SLOW_QUERY_THRESHOLD}
+ * milliseconds are logged with level WARN to the logger
+ * <code>de.csw.expertfinder.persistence.SlowQueries</code>, which can be
+ * directed to a file of its own.
+ * 
+ * If {@link Config.Key#PERSISTENCE_STATISTICS} is set, facade methods are
+ * timed, hibernate statistics are enabled and a summary is logged every
+ * {@link Config.Key#PERSISTENCE_STATISTICS_LOG_INTERVAL} seconds. If
+ * {@link Config.Key#PERSISTENCE_JMX} is set, this object and hibernate's
+ * statistics service are registered as MBeans with the platform MBean server.
+ * 
+ * @author ralph
+ */
+public class PersistenceStatistics implements PersistenceStatisticsMBean {
+	
+	private static final Logger log = Logger.getLogger(PersistenceStatistics.class);
+	private static final Logger slowQueryLog = Logger.getLogger("de.csw.expertfinder.persistence.SlowQueries");
+	
+	private static final String MBEAN_NAME = "de.csw.expertfinder:type=PersistenceStatistics";
+	private static final String HIBERNATE_MBEAN_NAME = "de.csw.expertfinder:type=HibernateStatistics";
+	
+	private final QueryStatistics queryStatistics = new QueryStatistics();
+	private final QueryStatistics methodStatistics = new QueryStatistics();
+	
+	private final boolean enabled;
+	private volatile long slowQueryThresholdNanos;
+	private long slowQueryCount;
+	
+	private Statistics hibernateStatistics;
+	private Timer timer;
+	private final List<ObjectName> registeredMBeans = new ArrayList<ObjectName>();
+	
+	/**
+	 * Creates the statistics as configured in the application properties.
+	 */
+	PersistenceStatistics() {
+		enabled = Config.getBooleanAppProperty(Config.Key.PERSISTENCE_STATISTICS);
+		slowQueryThresholdNanos = Config.getIntAppProperty(Config.Key.PERSISTENCE_SLOW_QUERY_THRESHOLD) * 1000000L;
+	}
+	
+	/**
+	 * @return true if facade methods are timed and hibernate statistics are collected.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Starts publishing the statistics of the given session factory (periodic
+	 * log summary and JMX, as configured).
+	 * @param sessionFactory a session factory built with statistics enabled.
+	 */
+	void start(SessionFactory sessionFactory) {
+		if (!enabled)
+			return;
+		
+		hibernateStatistics = sessionFactory.getStatistics();
+		hibernateStatistics.setStatisticsEnabled(true);
+		
+		int interval = Config.getIntAppProperty(Config.Key.PERSISTENCE_STATISTICS_LOG_INTERVAL);
+		if (interval > 0) {
+			timer = new Timer("persistence-statistics", true);
+			timer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					log.info(getSummary());
+				}
+			}, interval * 1000L, interval * 1000L);
+		}
+		
+		if (Config.getBooleanAppProperty(Config.Key.PERSISTENCE_JMX)) {
+			StatisticsService hibernateStatisticsService = new StatisticsService();
+			hibernateStatisticsService.setSessionFactory(sessionFactory);
+			registerMBean(hibernateStatisticsService, HIBERNATE_MBEAN_NAME);
+			registerMBean(this, MBEAN_NAME);
+		}
+	}
+	
+	private void registerMBean(Object mbean, String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(mbean, objectName);
+			registeredMBeans.add(objectName);
+		} catch (JMException e) {
+			log.warn("Could not register MBean " + name, e);
+		}
+	}
+	
+	/**
+	 * Stops the periodic log summary and unregisters the MBeans.
+	 */
+	void stop() {
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName objectName : registeredMBeans) {
+			try {
+				server.unregisterMBean(objectName);
+			} catch (JMException e) {
+				log.warn("Could not unregister MBean " + objectName, e);
+			}
+		}
+		registeredMBeans.clear();
+	}
+	
+	/**
+	 * Records an execution of a query and logs it if it has been slow.
+	 * @param queryName the name of the query, or the query string for queries without a name.
+	 * @param queryString the query string.
+	 * @param nanos the execution time in nanoseconds.
+	 */
+	void recordQuery(String queryName, String queryString, long nanos) {
+		queryStatistics.record(queryName, nanos);
+		long threshold = slowQueryThresholdNanos;
+		if (threshold > 0 && nanos >= threshold) {
+			synchronized (this) {
+				slowQueryCount++;
+			}
+			if (slowQueryLog.isEnabledFor(Level.WARN)) {
+				slowQueryLog.warn(String.format("%s took %.1f ms: %s", queryName, nanos / 1000000d, queryString.trim().replaceAll("\\s+", " ")));
+			}
+		}
+	}
+	
+	/**
+	 * Records an execution of a facade method. Does nothing unless statistics
+	 * are enabled.
+	 * @param methodName
+	 * @param start the start time (see {@link System#nanoTime()}).
+	 */
+	void recordMethod(String methodName, long start) {
+		if (enabled) {
+			methodStatistics.record(methodName, System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * @return the execution statistics of the named queries.
+	 */
+	public QueryStatistics getQueries() {
+		return queryStatistics;
+	}
+	
+	/**
+	 * @return the execution statistics of the facade methods (empty unless statistics are enabled).
+	 */
+	public QueryStatistics getMethods() {
+		return methodStatistics;
+	}
+	
+	public String[] getMethodStatistics() {
+		return toStrings(methodStatistics.getEntries());
+	}
+	
+	public String[] getQueryStatistics() {
+		return toStrings(queryStatistics.getEntries());
+	}
+	
+	private static String[] toStrings(List<QueryStatistics.Entry> entries) {
+		String[] result = new String[entries.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = entries.get(i).toString();
+		}
+		return result;
+	}
+	
+	public synchronized long getSlowQueryCount() {
+		return slowQueryCount;
+	}
+	
+	public long getSlowQueryThresholdMillis() {
+		return slowQueryThresholdNanos / 1000000L;
+	}
+	
+	public void setSlowQueryThresholdMillis(long thresholdMillis) {
+		slowQueryThresholdNanos = thresholdMillis * 1000000L;
+	}
+	
+	public String getSummary() {
+		StringBuilder result = new StringBuilder("Persistence statistics");
+		Statistics hibernate = hibernateStatistics;
+		if (hibernate != null) {
+			result.append(String.format("%n  entities: %d loaded, %d fetched, %d inserted, %d updated, %d deleted", 
+					hibernate.getEntityLoadCount(), hibernate.getEntityFetchCount(), hibernate.getEntityInsertCount(), 
+					hibernate.getEntityUpdateCount(), hibernate.getEntityDeleteCount()));
+			result.append(String.format("%n  queries: %d executed, slowest %d ms; query cache: %d hits, %d misses", 
+					hibernate.getQueryExecutionCount(), hibernate.getQueryExecutionMaxTime(), 
+					hibernate.getQueryCacheHitCount(), hibernate.getQueryCacheMissCount()));
+			result.append(String.format("%n  %d transactions, %d flushes, %d statements prepared, %d connections obtained", 
+					hibernate.getTransactionCount(), hibernate.getFlushCount(), 
+					hibernate.getPrepareStatementCount(), hibernate.getConnectCount()));
+		}
+		result.append(String.format("%n  %d slow queries", getSlowQueryCount()));
+		for (QueryStatistics.Entry entry : methodStatistics.getEntries()) {
+			result.append("\n  method ").append(entry);
+		}
+		for (QueryStatistics.Entry entry : queryStatistics.getEntries()) {
+			result.append("\n  query ").append(entry);
+		}
+		return result.toString();
+	}
+	
+	public void clear() {
+		queryStatistics.clear();
+		methodStatistics.clear();
+		synchronized (this) {
+			slowQueryCount = 0;
+		}
+		if (hibernateStatistics != null) {
+			hibernateStatistics.clear();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+/**
+ * JMX management interface of the {@link PersistenceStatistics}.
+ * 
+ * @author ralph
+ */
+public interface PersistenceStatisticsMBean {
+	
+	/** @return execution counts and times of the facade methods, one line per method. */
+	String[] getMethodStatistics();
+	
+	/** @return execution counts and times of the named queries, one line per query. */
+	String[] getQueryStatistics();
+	
+	/** @return the number of queries that took longer than the slow query threshold. */
+	long getSlowQueryCount();
+	
+	/** @return the slow query threshold in milliseconds (0 if slow queries are not logged). */
+	long getSlowQueryThresholdMillis();
+	
+	void setSlowQueryThresholdMillis(long thresholdMillis);
+	
+	/** @return a summary of all persistence statistics, as written to the log periodically. */
+	String getSummary();
+	
+	/** Discards all statistics collected so far. */
+	void clear();
+}
@@ -25,22 +25,42 @@
  ******************************************************************************/
 package de.csw.expertfinder.persistence;
 
+import java.io.File;
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
-import org.hibernate.Hibernate;
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+import org.hibernate.context.ThreadLocalSessionContext;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.NamedQueryDefinition;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.jdbc.Work;
 
 import de.csw.expertfinder.application.ApplicationData;
+import de.csw.expertfinder.config.Config;
 import de.csw.expertfinder.document.Author;
 import de.csw.expertfinder.document.Category;
 import de.csw.expertfinder.document.Concept;
@@ -49,10 +69,12 @@ import de.csw.expertfinder.document.Document;
 import de.csw.expertfinder.document.PersistableEntity;
 import de.csw.expertfinder.document.Revision;
 import de.csw.expertfinder.document.Section;
+import de.csw.expertfinder.document.SectionConcept;
 import de.csw.expertfinder.document.Word;
 import de.csw.expertfinder.expertise.AuthorContribution;
 import de.csw.expertfinder.expertise.AuthorCredibility;
 import de.csw.expertfinder.util.Pair;
+import de.csw.expertfinder.util.SortedIntSet;
 
 /**
  * This class implements all application specific persistence related
@@ -67,11 +89,21 @@ public class PersistenceStoreFacade {
 	
 	private static final Logger log = Logger.getLogger(PersistenceStoreFacade.class);
 	
+	/** Value of {@link Config.Key#PERSISTENCE_STORAGE} for the embedded SQLite backend */
+	public static final String STORAGE_SQLITE = "sqlite";
+	
+	/** Suffix of the named queries reading the view of all words, see {@link #namedHistoryQuery(String)} */
+	private static final String SPLIT_QUERY_SUFFIX = ".split";
+	
+	/** Classpath resource of the SQLite schema script */
+	private static final String SQLITE_SCHEMA = "de/csw/expertfinder/persistence/expertfinder-sqlite.sql";
+	
 	/**
-	 * Gets the singleton instance of this class.
+	 * Gets the singleton instance of this class. The instance can be shared by
+	 * several threads, each thread works with its own session and transaction.
 	 * @return the singleton instance of this class.
 	 */
-	public static PersistenceStoreFacade get() {
+	public static synchronized PersistenceStoreFacade get() {
 		if (instance == null) {
 			instance = new PersistenceStoreFacade();
 		}
@@ -79,17 +111,275 @@ public class PersistenceStoreFacade {
 	}
 	
 	private SessionFactory sessionFactory;
+	
+	private final PersistenceStatistics statistics = new PersistenceStatistics();
+	
+	/** the names of all named queries by their query strings */
+	private final HashMap<String, String> queryNames = new HashMap<String, String>();
+	
+	/** Deleted words are stored in their own table, see {@link Config.Key#PERSISTENCE_SPLIT_DELETED_WORDS} */
+	private boolean splitDeletedWords;
+	
+	/** Created on demand if write-behind is enabled, see {@link Config.Key#PERSISTENCE_WRITE_BEHIND} */
+	private WriteBehindQueue writeBehindQueue;
+	
+	private EntityResolver entityResolver;
+	
+	private final NaturalIdCache<Concept> conceptCache = 
+		new NaturalIdCache<Concept>("Concept", Config.getIntAppProperty(Config.Key.PERSISTENCE_CACHE_CONCEPTS));
+	private final NaturalIdCache<Author> authorCache = 
+		new NaturalIdCache<Author>("Author", Config.getIntAppProperty(Config.Key.PERSISTENCE_CACHE_AUTHORS));
+	private final NaturalIdCache<Category> categoryCache = 
+		new NaturalIdCache<Category>("Category", Config.getIntAppProperty(Config.Key.PERSISTENCE_CACHE_CATEGORIES));
+	
+	/**
+	 * Concepts, authors and categories that have been saved during the current
+	 * transaction of each thread (by cache and natural id). They are visible to
+	 * lookups from the same thread at once and are added to the shared caches
+	 * when the transaction is committed.
+	 */
+	private final ThreadLocal<HashMap<NaturalIdCache<?>, HashMap<String, PersistableEntity<Long>>>> uncommittedEntities = 
+		new ThreadLocal<HashMap<NaturalIdCache<?>, HashMap<String, PersistableEntity<Long>>>>() {
+			@Override
+			protected HashMap<NaturalIdCache<?>, HashMap<String, PersistableEntity<Long>>> initialValue() {
+				return new HashMap<NaturalIdCache<?>, HashMap<String, PersistableEntity<Long>>>();
+			}
+		};
+	
+	/** serializes the creation of concepts, authors and categories shared by several threads */
+	private final Object sharedEntityLock = new Object();
+
+	/**
+	 * The unit of work of each thread, null if the thread is not inside a unit
+	 * of work. See {@link #beginUnitOfWork(boolean)}.
+	 */
+	private final ThreadLocal<UnitOfWork> unitOfWork = new ThreadLocal<UnitOfWork>();
+	
+	/**
+	 * State of the unit of work of one thread.
+	 */
+	private static class UnitOfWork {
+		private final boolean readOnly;
+		/** one entry per nesting level, true if the level has been committed */
+		private final ArrayList<Boolean> levels = new ArrayList<Boolean>();
+		/** set if a nested level has been ended without being committed */
+		private boolean rollbackOnly;
+		
+		private UnitOfWork(boolean readOnly) {
+			this.readOnly = readOnly;
+		}
+	}
 
 	/**
 	 * private Constructor for {@link PersistenceStoreFacade}
 	 */
 	private PersistenceStoreFacade() {		
-		Configuration conf = new Configuration();
-		sessionFactory = conf.configure().buildSessionFactory();
+		Configuration conf = new Configuration().configure();
+		boolean embedded = STORAGE_SQLITE.equalsIgnoreCase(Config.getAppProperty(Config.Key.PERSISTENCE_STORAGE));
+		if (embedded) {
+			configureEmbeddedStorage(conf);
+		}
+		// Words, sections and section concepts get their ids from a BlockIdGenerator,
+		// thus hibernate can batch inserts of these entities.
+		conf.setProperty(Environment.STATEMENT_BATCH_SIZE, String.valueOf(Config.getIntAppProperty(Config.Key.PERSISTENCE_BATCH_SIZE)));
+		conf.setProperty(Environment.ORDER_INSERTS, "true");
+		conf.setProperty(Environment.ORDER_UPDATES, "true");
+		if (statistics.isEnabled()) {
+			conf.setProperty(Environment.GENERATE_STATISTICS, "true");
+		}
+		// named queries are compiled and checked here
+		sessionFactory = conf.buildSessionFactory();
+		registerQueryNames(conf);
+		statistics.start(sessionFactory);
+		if (embedded) {
+			bootstrapSchema(SQLITE_SCHEMA);
+		}
+		migrateSchema();
+		
+		splitDeletedWords = Config.getBooleanAppProperty(Config.Key.PERSISTENCE_SPLIT_DELETED_WORDS);
+		if (splitDeletedWords) {
+			splitDeletedWords = moveDeletedWords();
+		}
+	}
+	
+	/**
+	 * Collects the names of all named queries, such that executions can be
+	 * recorded by name in the query statistics.
+	 */
+	@SuppressWarnings("unchecked")
+	private void registerQueryNames(Configuration conf) {
+		for (Map.Entry<String, NamedQueryDefinition> entry : ((Map<String, NamedQueryDefinition>)conf.getNamedQueries()).entrySet()) {
+			queryNames.put(entry.getValue().getQueryString(), entry.getKey());
+		}
+		for (Map.Entry<String, NamedQueryDefinition> entry : ((Map<String, NamedQueryDefinition>)conf.getNamedSQLQueries()).entrySet()) {
+			queryNames.put(entry.getValue().getQueryString(), entry.getKey());
+		}
+	}
+	
+	/**
+	 * Moves all deleted words that are still in the word table (e.g. because
+	 * the split storage of deleted words has just been enabled) to the table
+	 * of deleted words.
+	 * @return false if the words could not be moved (e.g. because the table of
+	 *         deleted words does not exist).
+	 */
+	private boolean moveDeletedWords() {
+		Session session = sessionFactory.openSession();
+		try {
+			Transaction transaction = session.beginTransaction();
+			try {
+				session.doWork(new Work() {
+					public void execute(Connection connection) throws SQLException {
+						Statement statement = connection.createStatement();
+						try {
+							int count = statement.executeUpdate("insert into " + BulkEntityWriter.DELETED_WORD_TABLE + 
+									" (" + BulkEntityWriter.WORD_COLUMNS + ") select " + BulkEntityWriter.WORD_COLUMNS + 
+									" from word where id_revision_deleted is not null");
+							if (count > 0) {
+								statement.executeUpdate("delete from word where id_revision_deleted is not null");
+								log.info("Moved " + count + " deleted words to " + BulkEntityWriter.DELETED_WORD_TABLE + ".");
+							}
+						} finally {
+							statement.close();
+						}
+					}
+				});
+				transaction.commit();
+			} catch (HibernateException e) {
+				transaction.rollback();
+				throw e;
+			}
+			return true;
+		} catch (HibernateException e) {
+			log.error("Could not move deleted words, deleted words are kept in the word table.", e);
+			return false;
+		} finally {
+			session.close();
+		}
+	}
+	
+	/**
+	 * Returns the named query (see Queries.hbm.xml) with the given name for
+	 * the current session.
+	 */
+	private Query namedQuery(String name) {
+		return sessionFactory.getCurrentSession().getNamedQuery(name);
+	}
+	
+	/**
+	 * Returns the variant of the named query with the given name that reads
+	 * all words including the deleted ones: from the word table, or from the
+	 * view of all words if deleted words are stored in a table of their own.
+	 */
+	private Query namedHistoryQuery(String name) {
+		return namedQuery(splitDeletedWords ? name + SPLIT_QUERY_SUFFIX : name);
+	}
+	
+	@SuppressWarnings("rawtypes")
+	private List list(Query query) {
+		long start = System.nanoTime();
+		List result = query.list();
+		recordExecution(query, start);
+		return result;
+	}
+	
+	private Object uniqueResult(Query query) {
+		long start = System.nanoTime();
+		Object result = query.uniqueResult();
+		recordExecution(query, start);
+		return result;
+	}
+	
+	/**
+	 * Records an execution of the given query that has started at the given
+	 * time (see {@link System#nanoTime()}) in the query statistics.
+	 */
+	private void recordExecution(Query query, long start) {
+		long nanos = System.nanoTime() - start;
+		String queryString = query.getQueryString();
+		String name = queryNames.get(queryString);
+		statistics.recordQuery(name != null ? name : queryString, queryString, nanos);
+	}
+	
+	/**
+	 * Returns the number of executions and the execution times of all queries
+	 * executed by this facade, by query name.
+	 * @return the query statistics.
+	 */
+	public QueryStatistics getQueryStatistics() {
+		return statistics.getQueries();
+	}
+	
+	/**
+	 * Returns the statistics of this facade: query and method execution times,
+	 * slow queries and hibernate's statistics (see
+	 * {@link Config.Key#PERSISTENCE_STATISTICS}).
+	 * @return the persistence statistics.
+	 */
+	public PersistenceStatistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Replaces the database connection settings of the hibernate configuration
+	 * by those of the embedded SQLite database file.
+	 */
+	private void configureEmbeddedStorage(Configuration conf) {
+		String file = Config.getAppProperty(Config.Key.PERSISTENCE_SQLITE_FILE);
+		log.info("Using embedded storage " + new File(file).getAbsolutePath());
+		
+		conf.setProperty(Environment.DRIVER, "org.sqlite.JDBC");
+		conf.setProperty(Environment.URL, "jdbc:sqlite:" + file);
+		conf.setProperty(Environment.DIALECT, SQLiteDialect.class.getName());
+		conf.getProperties().remove(Environment.USER);
+		conf.getProperties().remove(Environment.PASS);
+	}
+	
+	/**
+	 * Creates the schema from the given script if the database is empty
+	 * (see {@link SchemaBootstrap}).
+	 */
+	private void bootstrapSchema(String scriptResource) {
+		Session session = sessionFactory.openSession();
+		try {
+			Transaction transaction = session.beginTransaction();
+			try {
+				session.doWork(new SchemaBootstrap(scriptResource));
+				transaction.commit();
+			} catch (HibernateException e) {
+				transaction.rollback();
+				throw e;
+			}
+		} finally {
+			session.close();
+		}
+	}
+	
+	/**
+	 * Applies pending schema migrations (if enabled) and reports missing
+	 * indexes (see {@link SchemaMigrator}).
+	 */
+	private void migrateSchema() {
+		SchemaMigrator migrator = new SchemaMigrator(Config.getBooleanAppProperty(Config.Key.PERSISTENCE_SCHEMA_AUTO_MIGRATE));
+		Session session = sessionFactory.openSession();
+		try {
+			Transaction transaction = session.beginTransaction();
+			try {
+				session.doWork(migrator);
+				transaction.commit();
+			} catch (HibernateException e) {
+				transaction.rollback();
+				throw e;
+			}
+		} catch (HibernateException e) {
+			log.error("Could not verify the database schema.", e);
+		} finally {
+			session.close();
+		}
 	}
 	
 	/**
-	 * Begins a new transaction.
+	 * Begins a new transaction for the current thread.
 	 */
 	public void beginTransaction() {
 		Session session = sessionFactory.getCurrentSession();
@@ -101,8 +391,11 @@ public class PersistenceStoreFacade {
 	 * the persistence layer.
 	 */
 	public void commitChanges() {
+		long start = System.nanoTime();
 		Session session = sessionFactory.getCurrentSession();
 		session.getTransaction().commit();
+		publishUncommittedEntities();
+		statistics.recordMethod("commitChanges", start);
 	}
 	
 	/**
@@ -116,18 +409,316 @@ public class PersistenceStoreFacade {
 		commitChanges();
 	}
 	
+	/**
+	 * The state of a transaction that has been detached from its thread, see
+	 * {@link PersistenceStoreFacade#suspendTransaction()}.
+	 */
+	public static final class SuspendedTransaction {
+		private final Session session;
+		private final HashMap<NaturalIdCache<?>, HashMap<String, PersistableEntity<Long>>> uncommittedEntities;
+		private final Object resolverState;
+		
+		private SuspendedTransaction(Session session, HashMap<NaturalIdCache<?>, HashMap<String, PersistableEntity<Long>>> uncommittedEntities, Object resolverState) {
+			this.session = session;
+			this.uncommittedEntities = uncommittedEntities;
+			this.resolverState = resolverState;
+		}
+	}
+	
+	/**
+	 * Detaches the current transaction from the current thread without
+	 * committing it, such that it can be continued later, possibly by another
+	 * thread (see {@link #resumeTransaction(SuspendedTransaction)}). Until then,
+	 * the current thread may begin a new transaction.
+	 * @return the suspended transaction.
+	 */
+	public SuspendedTransaction suspendTransaction() {
+		Session session = ThreadLocalSessionContext.unbind(sessionFactory);
+		if (session == null || !session.getTransaction().isActive())
+			throw new IllegalStateException("No active transaction to suspend");
+		
+		SuspendedTransaction result = new SuspendedTransaction(session, uncommittedEntities.get(), 
+				entityResolver == null ? null : entityResolver.suspend());
+		uncommittedEntities.remove();
+		return result;
+	}
+	
+	/**
+	 * Continues a suspended transaction in the current thread, which must not
+	 * have an active transaction.
+	 * @param transaction a transaction returned by {@link #suspendTransaction()}.
+	 */
+	public void resumeTransaction(SuspendedTransaction transaction) {
+		Session current = ThreadLocalSessionContext.unbind(sessionFactory);
+		if (current != null) {
+			if (current.getTransaction().isActive()) {
+				ThreadLocalSessionContext.bind(current);
+				throw new IllegalStateException("Cannot resume a transaction, the current thread has an active transaction");
+			}
+			current.close();
+		}
+		ThreadLocalSessionContext.bind(transaction.session);
+		uncommittedEntities.set(transaction.uncommittedEntities);
+		if (transaction.resolverState != null) {
+			getEntityResolver().resume(transaction.resolverState);
+		}
+	}
+	
+	/**
+	 * Discards all changes that have been made during the current transaction.
+	 */
 	public void rollbackChanges() {
+		uncommittedEntities.get().clear();
 		Session session = sessionFactory.getCurrentSession();
-		session.getTransaction().rollback();
+		Transaction transaction = session.getTransaction();
+		if (transaction.isActive()) {
+			transaction.rollback();
+		} else if (session.isOpen()) {
+			// nothing to roll back, but the session is still bound to this thread
+			session.close();
+		}
 	}
 	
 	/**
-	 * Persists the given entity's state to the database.
+	 * Begins a unit of work for the current thread, grouping all following
+	 * reads and writes into one transaction. Units of work can be nested: if
+	 * the thread already is inside a unit of work, the new one joins it and
+	 * the transaction is committed when the outermost unit of work is
+	 * committed. Each call must be followed by {@link #endUnitOfWork()} in a
+	 * finally block:
+	 * 
+	 * <pre>
+	 * persistenceStore.beginUnitOfWork(true);
+	 * try {
+	 *     ...
+	 *     persistenceStore.commitUnitOfWork();
+	 * } finally {
+	 *     persistenceStore.endUnitOfWork();
+	 * }
+	 * </pre>
+	 * 
+	 * The session of a read-only unit of work is never flushed, thus changes
+	 * made to persistent entities are not written and no dirty checking takes
+	 * place on commit. A read-write unit of work cannot be nested inside a
+	 * read-only one.
+	 * 
+	 * @param readOnly true if no entities are written in this unit of work.
+	 * @throws IllegalStateException if a read-write unit of work is nested inside a read-only one.
+	 */
+	public void beginUnitOfWork(boolean readOnly) {
+		UnitOfWork current = unitOfWork.get();
+		if (current == null) {
+			beginTransaction();
+			if (readOnly) {
+				sessionFactory.getCurrentSession().setFlushMode(FlushMode.MANUAL);
+			}
+			current = new UnitOfWork(readOnly);
+			unitOfWork.set(current);
+		} else if (current.readOnly && !readOnly) {
+			throw new IllegalStateException("A read-write unit of work cannot join a read-only unit of work.");
+		}
+		current.levels.add(Boolean.FALSE);
+	}
+	
+	/**
+	 * Commits the current unit of work. The transaction is committed if this
+	 * is the outermost unit of work, otherwise the commit is left to the
+	 * outermost one.
+	 * @throws IllegalStateException if the thread is not inside a unit of work,
+	 *         or if a nested unit of work has been ended without being
+	 *         committed. In the latter case, the transaction is rolled back
+	 *         by {@link #endUnitOfWork()}.
+	 */
+	public void commitUnitOfWork() {
+		UnitOfWork current = unitOfWork.get();
+		if (current == null)
+			throw new IllegalStateException("Not inside a unit of work.");
+		int level = current.levels.size() - 1;
+		if (level == 0) {
+			if (current.rollbackOnly)
+				throw new IllegalStateException("A nested unit of work has failed, the transaction can only be rolled back.");
+			commitChanges();
+		}
+		current.levels.set(level, Boolean.TRUE);
+	}
+	
+	/**
+	 * Ends the current unit of work. If it has not been committed (e.g.
+	 * because an exception has been thrown), the transaction is rolled back
+	 * (for a nested unit of work, as soon as the outermost one is ended).
+	 */
+	public void endUnitOfWork() {
+		UnitOfWork current = unitOfWork.get();
+		if (current == null)
+			return;
+		boolean committed = current.levels.remove(current.levels.size() - 1);
+		if (!committed)
+			current.rollbackOnly = true;
+		if (current.levels.isEmpty()) {
+			unitOfWork.remove();
+			if (!committed) {
+				rollbackChanges();
+			}
+		}
+	}
+	
+	/**
+	 * Persists the given entity's state to the database. If the entity is a
+	 * revision, the latest revision id and the revision count of its document
+	 * are updated in the same transaction.
 	 * @param entity
 	 */
 	public void save(PersistableEntity<? extends Serializable> entity) {
+		long start = System.nanoTime();
 		Session session = sessionFactory.getCurrentSession();
 		session.saveOrUpdate(entity);
+		
+		if (entity instanceof Revision) {
+			updateLatestRevision(session, (Revision)entity);
+		} else if (entity instanceof Concept) {
+			addUncommittedEntity(conceptCache, ((Concept)entity).getUri(), (Concept)entity);
+		} else if (entity instanceof Author) {
+			addUncommittedEntity(authorCache, ((Author)entity).getName(), (Author)entity);
+		} else if (entity instanceof Category) {
+			addUncommittedEntity(categoryCache, ((Category)entity).getName(), (Category)entity);
+		}
+		statistics.recordMethod("save", start);
+	}
+	
+	/**
+	 * Updates the latest revision id and revision count stored with the
+	 * revision's document in the current transaction.
+	 */
+	private void updateLatestRevision(Session session, Revision revision) {
+		Document document = revision.getDocument();
+		document.updateLatestRevision(revision);
+		if (!session.contains(document)) {
+			// the document has been loaded by another session
+			Document persistentDocument = (Document)session.get(Document.class, document.getId());
+			if (persistentDocument != null) {
+				persistentDocument.updateLatestRevision(revision);
+			}
+		}
+	}
+	
+	/**
+	 * Persists the state of all given entities, typically all entities that
+	 * have been created or changed by one revision. If bulk writing is enabled
+	 * (see {@link Config.Key#PERSISTENCE_BULK_WRITE}), sections, their concepts
+	 * and words are written with batched JDBC statements, while all other
+	 * entities are saved through the session. Otherwise, each entity is saved
+	 * by calling {@link #save(PersistableEntity)}.
+	 * 
+	 * If deleted words are stored separately (see
+	 * {@link Config.Key#PERSISTENCE_SPLIT_DELETED_WORDS}), words that have been
+	 * deleted are moved to the table of deleted words in either case.
+	 * 
+	 * The word shifts recorded with the sections (see
+	 * {@link Section#addWordShift(int, int, int)}) are written first in either
+	 * case.
+	 * 
+	 * @param entities
+	 */
+	public void saveAll(Collection<? extends PersistableEntity<? extends Serializable>> entities) {
+		long start = System.nanoTime();
+		boolean bulkWrite = Config.getBooleanAppProperty(Config.Key.PERSISTENCE_BULK_WRITE);
+		shiftWords(entities);
+		if (!bulkWrite && !splitDeletedWords) {
+			for (PersistableEntity<? extends Serializable> entity : entities) {
+				save(entity);
+			}
+			statistics.recordMethod("saveAll", start);
+			return;
+		}
+		
+		Session session = sessionFactory.getCurrentSession();
+		
+		ArrayList<Section> newSections = new ArrayList<Section>();
+		ArrayList<Section> changedSections = new ArrayList<Section>();
+		ArrayList<SectionConcept> newSectionConcepts = new ArrayList<SectionConcept>();
+		ArrayList<Word> newWords = new ArrayList<Word>();
+		ArrayList<Word> changedWords = new ArrayList<Word>();
+		ArrayList<Word> deletedWords = new ArrayList<Word>();
+		
+		for (PersistableEntity<? extends Serializable> entity : entities) {
+			if (splitDeletedWords && entity instanceof Word && ((Word)entity).getRevisionDeleted() != null) {
+				Word word = (Word)entity;
+				if (word.getId() == null) {
+					word.setId((Long)generateId(session, Word.class, word));
+				} else if (session.contains(word)) {
+					// the row is moved by the bulk writer, the session must not update it
+					session.evict(word);
+				}
+				deletedWords.add(word);
+			} else if (!bulkWrite) {
+				save(entity);
+			} else if (entity instanceof Word) {
+				Word word = (Word)entity;
+				if (word.getId() == null) {
+					word.setId((Long)generateId(session, Word.class, word));
+					newWords.add(word);
+				} else {
+					changedWords.add(word);
+				}
+			} else if (entity instanceof Section) {
+				Section section = (Section)entity;
+				if (section.getId() == null) {
+					section.setId((Long)generateId(session, Section.class, section));
+					newSections.add(section);
+				} else {
+					changedSections.add(section);
+				}
+				for (SectionConcept sectionConcept : section.getConcepts()) {
+					if (sectionConcept.getId() == null) {
+						sectionConcept.setId(generateId(session, SectionConcept.class, sectionConcept));
+						newSectionConcepts.add(sectionConcept);
+					}
+				}
+			} else {
+				save(entity);
+			}
+		}
+		
+		// revisions, concepts etc. referenced by sections and words must exist
+		// in the database before the bulk statements are executed.
+		session.flush();
+		session.doWork(new BulkEntityWriter(newSections, changedSections, newSectionConcepts, newWords, changedWords, deletedWords, 
+				Config.getIntAppProperty(Config.Key.PERSISTENCE_BATCH_SIZE), !(getDialect() instanceof SQLiteDialect)));
+		statistics.recordMethod("saveAll", start);
+	}
+	
+	/**
+	 * Shifts the positions of the unchanged words of the given sections, see
+	 * {@link Section#addWordShift(int, int, int)}. The shifts refer to the
+	 * words as written by the previous revision, so they are executed before
+	 * any other entity of the revision is written.
+	 */
+	private void shiftWords(Collection<? extends PersistableEntity<? extends Serializable>> entities) {
+		ArrayList<Section> shiftedSections = new ArrayList<Section>();
+		for (PersistableEntity<? extends Serializable> entity : entities) {
+			if (entity instanceof Section && ((Section)entity).getWordShiftCount() > 0)
+				shiftedSections.add((Section)entity);
+		}
+		if (shiftedSections.isEmpty())
+			return;
+		
+		Session session = sessionFactory.getCurrentSession();
+		// words of earlier revisions in this transaction must have been written
+		session.flush();
+		session.doWork(new WordShiftWriter(shiftedSections, Config.getIntAppProperty(Config.Key.PERSISTENCE_BATCH_SIZE)));
+	}
+	
+	private Dialect getDialect() {
+		return ((SessionFactoryImplementor)sessionFactory).getDialect();
+	}
+	
+	/**
+	 * Generates a new identifier for the given entity, using the identifier
+	 * generator configured in the entity's mapping.
+	 */
+	private Serializable generateId(Session session, Class<?> entityClass, Object entity) {
+		IdentifierGenerator generator = ((SessionFactoryImplementor)sessionFactory).getIdentifierGenerator(entityClass.getName());
+		return generator.generate((SessionImplementor)session, entity);
 	}
 	
 	/**
@@ -162,9 +753,11 @@ public class PersistenceStoreFacade {
 	 * @return
 	 */
 	public Document getDocument(String title) {
+		long start = System.nanoTime();
 		Session session = sessionFactory.getCurrentSession();
 		Criteria criteria = session.createCriteria(Document.class).add(Restrictions.eq("title", title));
 		Document result = (Document)criteria.uniqueResult();
+		statistics.recordMethod("getDocument", start);
 		return result;
 	}
 	
@@ -174,9 +767,11 @@ public class PersistenceStoreFacade {
 	 * @return
 	 */
 	public Document getDocument(Long id) {
+		long start = System.nanoTime();
 		Session session = sessionFactory.getCurrentSession();
 		Criteria criteria = session.createCriteria(Document.class).add(Restrictions.eq("id", id));
 		Document result = (Document)criteria.uniqueResult();
+		statistics.recordMethod("getDocument", start);
 		return result;
 	}
 	
@@ -185,9 +780,11 @@ public class PersistenceStoreFacade {
 	 * @return the Revision with the specified id
 	 */
 	public Revision getRevision(Long id) {
+		long start = System.nanoTime();
 		Session session = sessionFactory.getCurrentSession();
 		Criteria criteria = session.createCriteria(Revision.class).add(Restrictions.eq("id", id));
 		Revision result = (Revision)criteria.uniqueResult();
+		statistics.recordMethod("getRevision", start);
 		return result;
 	}
 	
@@ -197,41 +794,56 @@ public class PersistenceStoreFacade {
 	 * @return
 	 */
 	public Revision getLatestPersistedRevision(Document document) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = 
-			session.createQuery("from Revision where id = (select max(id) from Revision r where r.document = :document)").
-			setEntity("document", document);
-		Revision result = (Revision)query.uniqueResult();
-		return result;
+		return getLatestPersistedRevision(document.getId());
 	}
 	
 	
 	/**
 	 * Gets the latest revision for the document with the given id in the database. Words and sections are not loaded.
+	 * The revision is looked up by the id stored with the document (see {@link Document#getLatestRevisionId()}).
 	 * @param documentId
 	 * @return
 	 */
 	public Revision getLatestPersistedRevision(Long documentId) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = 
-			session.createQuery("from Revision where id = (select max(id) from Revision r where r.document.id = :documentId)").
-			setLong("documentId", documentId);
-		Revision result = (Revision)query.uniqueResult();
+		Query query = namedQuery("Revision.latestOfDocument").setLong("documentId", documentId);
+		Revision result = (Revision)uniqueResult(query);
 		return result;
 	}
 	
+	/**
+	 * Returns the ids of all persisted revisions of the document with the
+	 * given id.
+	 * @param documentId the id of a document
+	 * @return the ids of the revisions of the document, empty if there is no
+	 *         such document.
+	 */
+	@SuppressWarnings("unchecked")
+	public SortedIntSet getRevisionIds(Long documentId) {
+		Query query = namedQuery("Revision.idsOfDocument").setLong("documentId", documentId);
+		List<Long> ids = list(query);
+		return SortedIntSet.of(ids);
+	}
+	
 	/**
 	 * Returns the number of revisions the given document has.
 	 * @param document a document
 	 * @return the number of revisions the given document has.
 	 */
 	public long getRevisionCount(Document document) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = 
-			session.createQuery("select distinct count(r.id) from Revision r, Document d where r.document = :document group by d.id").
-			setEntity("document", document);
+		return getRevisionCount(document.getId());
+	}
+	
+	/**
+	 * Returns the number of revisions the document with the given id has. The
+	 * number is stored with the document (see {@link Document#getRevisionCount()}).
+	 * @param documentId the id of a document
+	 * @return the number of revisions the document has or 0 if there is no
+	 *         such document.
+	 */
+	public long getRevisionCount(Long documentId) {
+		Query query = namedQuery("Document.revisionCount").setLong("documentId", documentId);
 		
-		Object result = query.uniqueResult();
+		Object result = uniqueResult(query);
 		
 		return result == null ? 0L : (Long)result;
 	}
@@ -243,36 +855,33 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public Revision getLatestPersistedRevisionLoadFull(Document document) {
-		Session session = sessionFactory.getCurrentSession();
-		
+		long start = System.nanoTime();
 		// get the latest revision
 		Revision revision = getLatestPersistedRevision(document);
 
 		// get all current (not deleted) sections for this document (those that exist in the latest revision)
-		// Note that sections are not directly connected to one revision. 
-		Query query = 
-			session.createQuery("select s from Section s, Revision r " + 
-					"where s.revisionDeleted is null " + 
-					"and s.revisionCreated = r " + 
-					"and r.document = :document " + 
-					"order by s.startPos").
-			setEntity("document", document);
-		List<Section> sections = query.list();
-		
-		revision.setSections(sections);
+		// with their current words in one query. Note that sections are not directly connected to one revision.
+		// The rows are ordered by section, each section comes with one row per word or one row without a word. 
+		Query query = namedQuery("Section.currentWithWordsOfDocument").setLong("documentId", document.getId());
+		List<Object[]> rows = list(query);
 		
-		// get words for each section.
-		for (Section section : sections) {
-			query =
-				session.createQuery("from Word w " + 
-						"where w.revisionDeleted is null " + 
-						"and w.section = :section " + 
-						"order by w.startPos").
-				setEntity("section", section);
-			List<Word> wordsForSection = query.list();
-			section.setWords(wordsForSection);
+		ArrayList<Section> sections = new ArrayList<Section>();
+		Section section = null;
+		List<Word> wordsForSection = null;
+		for (Object[] row : rows) {
+			if (row[0] != section) {
+				section = (Section)row[0];
+				wordsForSection = new ArrayList<Word>();
+				section.setWords(wordsForSection);
+				sections.add(section);
+			}
+			if (row[1] != null)
+				wordsForSection.add((Word)row[1]);
 		}
 		
+		revision.setSections(sections);
+		
+		statistics.recordMethod("getLatestPersistedRevisionLoadFull", start);
 		return revision;
 	}
 	
@@ -281,30 +890,72 @@ public class PersistenceStoreFacade {
 	 * @param document
 	 * @return all distinct words as a set of Strings for the given document
 	 */
+	@SuppressWarnings("unchecked")
 	public List<String> getBagOfWordsForLatestRevision(Document document) {
-		Session session = sessionFactory.getCurrentSession();
-		SQLQuery q = session.createSQLQuery("select distinct word from word w,  revision r " + 
-				"where w.id_revision_created = r.id " + 
-				"and w.id_revision_deleted is null " + 
-				"and r.id_document = :documentId");
-		
-		q.setLong("documentId", document.getId());
-		q.addScalar("word", Hibernate.STRING);
-		
-		List<String> result = q.list();
-			
+		Query query = namedQuery("Word.bagOfWordsOfDocument").setLong("documentId", document.getId());
+		List<String> result = list(query);
 		return result;
 	}
 	
+	/**
+	 * Returns the number of occurrences of the given word in the current
+	 * (latest) revision of the document with the given id.
+	 * @param documentId
+	 * @param word
+	 * @return the number of occurrences of the word in the document.
+	 */
+	public int getWordFrequency(Long documentId, String word) {
+		Query query = namedQuery("Word.frequencyInDocument").setLong("documentId", documentId).setString("word", word);
+		return (Integer)uniqueResult(query);
+	}
+	
+	/**
+	 * Returns the number of words in the current (latest) revision of the
+	 * document with the given id.
+	 * @param documentId
+	 * @return the number of words in the document.
+	 */
+	public int getWordCount(Long documentId) {
+		Query query = namedQuery("Word.countInDocument").setLong("documentId", documentId);
+		return (Integer)uniqueResult(query);
+	}
+	
+	/**
+	 * Returns the number of documents whose current revisions contain the
+	 * given word.
+	 * @param word
+	 * @return the number of documents containing the word.
+	 */
+	public int getDocumentFrequency(String word) {
+		Query query = namedQuery("Word.documentFrequency").setString("word", word);
+		return (Integer)uniqueResult(query);
+	}
+	
+	/**
+	 * Returns the number of documents.
+	 * @return the number of documents.
+	 */
+	public int getDocumentCount() {
+		return (Integer)uniqueResult(namedQuery("Document.count"));
+	}
+	
 	/**
 	 * Returns the author with the given name or null if no such author existst.
 	 * @param name
 	 * @return
 	 */
 	public Author getAuthor(String name) {
+		Author result = getCachedEntity(authorCache, name);
+		if (result != null)
+			return result;
+		
+		long start = System.nanoTime();
 		Session session = sessionFactory.getCurrentSession();
-		Criteria criteria = session.createCriteria(Author.class).add(Restrictions.eq("name", name));
-		Author result = (Author)criteria.uniqueResult();
+		Criteria criteria = session.createCriteria(Author.class).add(Restrictions.naturalId().set("name", name));
+		result = (Author)criteria.uniqueResult();
+		if (result != null)
+			authorCache.put(name, result);
+		statistics.recordMethod("getAuthor", start);
 		return result;
 	}
 	
@@ -314,9 +965,17 @@ public class PersistenceStoreFacade {
 	 * @return
 	 */
 	public Concept getConcept(String uri) {
+		Concept result = getCachedEntity(conceptCache, uri);
+		if (result != null)
+			return result;
+		
+		long start = System.nanoTime();
 		Session session = sessionFactory.getCurrentSession();
-		Criteria criteria = session.createCriteria(Concept.class).add(Restrictions.eq("uri", uri));
-		Concept result = (Concept)criteria.uniqueResult();
+		Criteria criteria = session.createCriteria(Concept.class).add(Restrictions.naturalId().set("uri", uri));
+		result = (Concept)criteria.uniqueResult();
+		if (result != null)
+			conceptCache.put(uri, result);
+		statistics.recordMethod("getConcept", start);
 		return result;
 	}
 	
@@ -327,12 +986,11 @@ public class PersistenceStoreFacade {
 	 * @return the section of the given document with the given title, or null if no such section exists.
 	 */
 	public Section getSection(Document document, String title) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("from Section s, Revision r where s.revisionCreated = r and r.document = :document and s.tite = :title").
+		Query query = namedQuery("Section.byTitle").
 			setEntity("document", document).
-			setEntity("title", title);
+			setString("title", title);
 		
-		Section result = (Section)query.uniqueResult();
+		Section result = (Section)uniqueResult(query);
 		return result;
 	}
 	
@@ -343,11 +1001,9 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<Section> getSections(Document document) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("from Section s, Revision r where s.revisionCreated = r and s.revisionDeleted = null and r.document = :document").
-		setEntity("document", document);
+		Query query = namedQuery("Section.currentOfDocument").setEntity("document", document);
 		
-		List<Section> result = (List<Section>)query.list();
+		List<Section> result = (List<Section>)list(query);
 		return result;
 	}
 	
@@ -357,11 +1013,178 @@ public class PersistenceStoreFacade {
 	 * @return the category with the given name or null if no such category exists.
 	 */
 	public Category getCategory(String name) {
+		Category result = getCachedEntity(categoryCache, name);
+		if (result != null)
+			return result;
+		
+		long start = System.nanoTime();
 		Session session = sessionFactory.getCurrentSession();
-		Criteria criteria = session.createCriteria(Category.class).add(Restrictions.eq("name", name));
-		Category result = (Category)criteria.uniqueResult();
+		Criteria criteria = session.createCriteria(Category.class).add(Restrictions.naturalId().set("name", name));
+		result = (Category)criteria.uniqueResult();
+		if (result != null)
+			categoryCache.put(name, result);
+		statistics.recordMethod("getCategory", start);
+		return result;
+	}
+	
+	/**
+	 * Returns the author with the given name. If there is no such author, a new
+	 * one is created and committed at once, see
+	 * {@link #getOrCreateShared(String, SharedEntityFactory)}.
+	 * @param name
+	 * @return the author with the given name.
+	 */
+	public Author getOrCreateSharedAuthor(String name) {
+		return getOrCreateShared(name, new SharedEntityFactory<Author>() {
+			@Override
+			Author get(String name) {
+				return getAuthor(name);
+			}
+			@Override
+			Author create(String name) {
+				return new Author(name);
+			}
+		});
+	}
+	
+	/**
+	 * Returns the category with the given name. If there is no such category,
+	 * a new one is created and committed at once, see
+	 * {@link #getOrCreateShared(String, SharedEntityFactory)}.
+	 * @param name a category name
+	 * @return the category with the given name.
+	 */
+	public Category getOrCreateSharedCategory(String name) {
+		return getOrCreateShared(name, new SharedEntityFactory<Category>() {
+			@Override
+			Category get(String name) {
+				return getCategory(name);
+			}
+			@Override
+			Category create(String name) {
+				return new Category(name);
+			}
+		});
+	}
+	
+	/**
+	 * Returns the concept with the given URI. If there is no such concept, a
+	 * new one is created and committed at once, see
+	 * {@link #getOrCreateShared(String, SharedEntityFactory)}.
+	 * @param uri
+	 * @return the concept with the given URI.
+	 */
+	public Concept getOrCreateSharedConcept(String uri) {
+		return getOrCreateShared(uri, new SharedEntityFactory<Concept>() {
+			@Override
+			Concept get(String uri) {
+				return getConcept(uri);
+			}
+			@Override
+			Concept create(String uri) {
+				return new Concept(uri);
+			}
+		});
+	}
+	
+	/**
+	 * Looks up and creates entities by their natural id.
+	 */
+	private static abstract class SharedEntityFactory<E extends PersistableEntity<Long>> {
+		abstract E get(String naturalId);
+		abstract E create(String naturalId);
+	}
+	
+	/**
+	 * Returns the entity with the given natural id, creating it if necessary.
+	 * New entities are saved and committed in a transaction of their own, one
+	 * at a time, while the current transaction is suspended. Thus, threads
+	 * writing in parallel never create the same entity twice, and the entity
+	 * is visible to all other threads at once. Each call creating an entity
+	 * uses a second database connection.
+	 * @param naturalId
+	 * @param factory
+	 * @return the existing or new entity.
+	 */
+	private <E extends PersistableEntity<Long>> E getOrCreateShared(String naturalId, SharedEntityFactory<E> factory) {
+		E result = factory.get(naturalId);
+		if (result != null)
+			return result;
+		
+		synchronized (sharedEntityLock) {
+			SuspendedTransaction transaction = suspendTransaction();
+			try {
+				beginTransaction();
+				try {
+					// another thread might have created it in the meantime
+					result = factory.get(naturalId);
+					if (result == null) {
+						result = factory.create(naturalId);
+						save(result);
+					}
+					commitChanges();
+				} catch (RuntimeException e) {
+					rollbackChanges();
+					throw e;
+				}
+			} finally {
+				resumeTransaction(transaction);
+			}
+		}
 		return result;
 	}
+	
+	/**
+	 * Looks up an entity by its natural id, first among the entities saved
+	 * during the current transaction of this thread, then in the given cache.
+	 * @return the entity or null if it is not cached.
+	 */
+	@SuppressWarnings("unchecked")
+	private <E extends PersistableEntity<Long>> E getCachedEntity(NaturalIdCache<E> cache, String naturalId) {
+		HashMap<String, PersistableEntity<Long>> uncommitted = uncommittedEntities.get().get(cache);
+		if (uncommitted != null) {
+			E result = (E)uncommitted.get(naturalId);
+			if (result != null)
+				return result;
+		}
+		return cache.get(naturalId);
+	}
+	
+	private <E extends PersistableEntity<Long>> void addUncommittedEntity(NaturalIdCache<E> cache, String naturalId, E entity) {
+		HashMap<NaturalIdCache<?>, HashMap<String, PersistableEntity<Long>>> uncommittedByCache = uncommittedEntities.get();
+		HashMap<String, PersistableEntity<Long>> uncommitted = uncommittedByCache.get(cache);
+		if (uncommitted == null) {
+			uncommitted = new HashMap<String, PersistableEntity<Long>>();
+			uncommittedByCache.put(cache, uncommitted);
+		}
+		uncommitted.put(naturalId, entity);
+	}
+	
+	/**
+	 * Adds the entities saved during the transaction that has just been
+	 * committed to the shared caches.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void publishUncommittedEntities() {
+		HashMap<NaturalIdCache<?>, HashMap<String, PersistableEntity<Long>>> uncommittedByCache = uncommittedEntities.get();
+		if (uncommittedByCache.isEmpty())
+			return;
+		for (Map.Entry<NaturalIdCache<?>, HashMap<String, PersistableEntity<Long>>> entry : uncommittedByCache.entrySet()) {
+			NaturalIdCache cache = entry.getKey();
+			for (Map.Entry<String, PersistableEntity<Long>> entity : entry.getValue().entrySet()) {
+				cache.put(entity.getKey(), entity.getValue());
+			}
+		}
+		uncommittedByCache.clear();
+	}
+	
+	/**
+	 * Returns a summary of the concept, author and category cache statistics.
+	 * @return a summary of the cache statistics.
+	 */
+	public String getCacheStatistics() {
+		return conceptCache + "; " + authorCache + "; " + categoryCache;
+	}
 
 	/**
 	 * Retrieves the concepts that are most similar to the given concept. The
@@ -378,12 +1201,11 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<ConceptSimilarity> getBestConceptSimilarities(Concept concept, int limit) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("from ConceptSimilarity cs where cs.concept1 = :concept or cs.concept2 = :concept order by similarity desc").
+		Query query = namedQuery("ConceptSimilarity.best").
 		setEntity("concept", concept).
 		setMaxResults(limit);
 		
-		List<ConceptSimilarity> result = (List<ConceptSimilarity>)query.list();
+		List<ConceptSimilarity> result = (List<ConceptSimilarity>)list(query);
 		return result;
 	}
 
@@ -393,9 +1215,8 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<ConceptSimilarity> getAllConceptSimilarities() {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("from ConceptSimilarity");
-		List<ConceptSimilarity> result = (List<ConceptSimilarity>)query.list();
+		Query query = namedQuery("ConceptSimilarity.all");
+		List<ConceptSimilarity> result = (List<ConceptSimilarity>)list(query);
 		return result;
 	}
 
@@ -411,14 +1232,9 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<Concept> getMostSimilarConcepts(Concept concept) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery(
-				"from ConceptSimilarity cs " +
-				"where (cs.concept1 = :concept or cs.concept2 = :concept) " +
-				"and similarity = (select max(similarity) from ConceptSimilarity where concept1 = :concept or concept2 = :concept)").
-		setEntity("concept", concept);
+		Query query = namedQuery("ConceptSimilarity.mostSimilar").setEntity("concept", concept);
 		
-		List<ConceptSimilarity> queryResult = (List<ConceptSimilarity>)query.list();
+		List<ConceptSimilarity> queryResult = (List<ConceptSimilarity>)list(query);
 		
 		ArrayList<Concept> result = new ArrayList<Concept>();
 		for (ConceptSimilarity cs : queryResult) {
@@ -436,14 +1252,10 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<Pair<Concept, Double>> getMostSimilarConcepts(Concept concept, double minSimilarity) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery(
-				"from ConceptSimilarity cs " +
-				"where (cs.concept1 = :concept or cs.concept2 = :concept) " +
-				"and similarity > :minSimilarity").
+		Query query = namedQuery("ConceptSimilarity.aboveThreshold").
 		setEntity("concept", concept).setDouble("minSimilarity", minSimilarity);
 		
-		List<ConceptSimilarity> queryResult = (List<ConceptSimilarity>)query.list();
+		List<ConceptSimilarity> queryResult = (List<ConceptSimilarity>)list(query);
 		
 		ArrayList<Pair<Concept, Double>> result = new ArrayList<Pair<Concept, Double>>();
 		for (ConceptSimilarity cs : queryResult) {
@@ -461,11 +1273,10 @@ public class PersistenceStoreFacade {
 	 * @return the concept similarity value for the given concepts.
 	 */
 	public Double getConceptSimilarity(Concept concept1, Concept concept2) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("select cs.similarity from ConceptSimilarity cs where cs.concept1 = :concept1 and cs.concept2 = :concept2 or cs.concept1 = :concept2 and cs.concept2 = :concept1").
+		Query query = namedQuery("ConceptSimilarity.similarity").
 		setEntity("concept1", concept1).
 		setEntity("concept2", concept2);
-		return (Double)query.uniqueResult();
+		return (Double)uniqueResult(query);
 	}
 	
 	/**
@@ -481,13 +1292,10 @@ public class PersistenceStoreFacade {
 	 *         URIs.
 	 */
 	public Double getConceptSimilarity(String conceptURI1, String conceptURI2) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("select cs.similarity from ConceptSimilarity cs " +
-				"where cs.concept1.uri = :conceptURI1 and cs.concept2.uri = :conceptURI2 " +
-				"or cs.concept1.uri = :conceptURI2 and cs.concept2.uri = :conceptURI1").
+		Query query = namedQuery("ConceptSimilarity.similarityByUri").
 		setString("conceptURI1", conceptURI1).
 		setString("conceptURI2", conceptURI2);
-		return (Double)query.uniqueResult();
+		return (Double)uniqueResult(query);
 	}
 	
 	/**
@@ -506,26 +1314,29 @@ public class PersistenceStoreFacade {
 	 * @param author
 	 * @return
 	 */
+	@SuppressWarnings("unchecked")
 	public List<Object[]> getContributionForConcept(long conceptId, long authorId) {
-		Session session = sessionFactory.getCurrentSession();
-		SQLQuery query = session.createSQLQuery("select  d.id as documentId, rc.count as rcCount, rd.count as rdCount, rd.id_author as deletor " + 
-				"from word w " + 
-				"join  revision rc " + 
-				"on w.id_revision_created = rc.id " + 
-				"and rc.id_author = :authorId " + 
-				"join document d " + 
-				"on rc.id_document = d.id  " + 
-				"left outer join revision rd " + 
-				"on w.id_revision_deleted = rd.id " + 
-				"where w.id_concept = :conceptId");
+		return list(createContributionForConceptQuery(conceptId, authorId));
+	}
+	
+	/**
+	 * Streams the result of {@link #getContributionForConcept(long, long)} row
+	 * by row to the given handler.
+	 * 
+	 * @param concept
+	 * @param author
+	 * @param handler
+	 * @return the number of rows.
+	 */
+	public int scrollContributionForConcept(Concept concept, Author author, RowHandler handler) {
+		return scroll(createContributionForConceptQuery(concept.getId(), author.getId()), handler);
+	}
+	
+	private Query createContributionForConceptQuery(long conceptId, long authorId) {
+		Query query = namedHistoryQuery("Contribution.forConcept");
 		query.setLong("authorId", authorId);
 		query.setLong("conceptId", conceptId);
-		query.addScalar("documentId", Hibernate.LONG);
-		query.addScalar("rcCount", Hibernate.LONG);
-		query.addScalar("rdCount", Hibernate.LONG);
-		query.addScalar("deletor", Hibernate.LONG);
-		
-		return query.list();
+		return query;
 	}
 	
 	/**
@@ -536,15 +1347,9 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<Concept> getContributedTopics(Author author) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("select distinct c from Concept c, Word w, Revision rc " + 
-				"where w.concept = c " +
-				"and w.revisionCreated = rc " + 
-				"and rc.author = :author " 
-				);
-		
-		query.setEntity("author", author);
-		return query.list();
+		Query query = namedHistoryQuery("Concept.contributedByAuthor");
+		query.setLong("authorId", author.getId());
+		return list(query);
 	}
 
 	/**
@@ -555,16 +1360,9 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<Concept> getIndirectContributedTopics(Author author) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("select distinct c " + 
-				"from Concept c, Word w, Revision rc, Section s, SectionConcept sc " + 
-				"where rc.author = :author " + 
-				"and w.revisionCreated = rc " + 
-				"and sc.section = w.section " + 
-				"and sc.concept = c ");
-		
-		query.setEntity("author", author);
-		return query.list();
+		Query query = namedHistoryQuery("Concept.indirectlyContributedByAuthor");
+		query.setLong("authorId", author.getId());
+		return list(query);
 	}
 	
 	/**
@@ -576,15 +1374,9 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<Author> getAuthorsWhoContributedToTopic(Concept topic) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("select distinct a from Author a, Word w, Revision rc " + 
-				"where w.concept = :topic " +
-				"and w.revisionCreated = rc " + 
-				"and rc.author = a " 
-				);
-		
-		query.setEntity("topic", topic);
-		return query.list();
+		Query query = namedHistoryQuery("Author.contributorsToConcept");
+		query.setLong("topicId", topic.getId());
+		return list(query);
 	}
 	
 	/**
@@ -594,10 +1386,9 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<AuthorContribution> getCachedAuthorContributions(Author author) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("from AuthorContribution ac where ac.author = :author"); 
+		Query query = namedQuery("AuthorContribution.byAuthor"); 
 		query.setEntity("author", author);
-		return query.list();
+		return list(query);
 	}
 	
 	/**
@@ -607,10 +1398,9 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<AuthorContribution> getCachedAuthorContributions(Concept topic) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("from AuthorContribution ac where ac.concept = :topic"); 
+		Query query = namedQuery("AuthorContribution.byConcept"); 
 		query.setEntity("topic", topic);
-		return query.list();
+		return list(query);
 	}
 	
 	/**
@@ -622,17 +1412,9 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<Author> getAuthorsWhoIndirectlyContributedToTopic(Concept topic) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("select distinct a " + 
-				"from Author a, Word w, Revision rc, Section s, SectionConcept sc " + 
-				"where sc.concept = :topic " + 
-				"and w.concept is not null " + 
-				"and w.revisionCreated = rc " + 
-				"and sc.section = w.section " + 
-				"and rc.author = a");
-		
-		query.setEntity("topic", topic);
-		return query.list();
+		Query query = namedHistoryQuery("Author.indirectContributorsToConcept");
+		query.setLong("topicId", topic.getId());
+		return list(query);
 	}
 
 	/**
@@ -659,37 +1441,28 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<Object[]> getContributionsToSectionsWithConceptForAuthor(Concept concept, Author author) {
-		Session session = sessionFactory.getCurrentSession();
-		
-		SQLQuery query = session.createSQLQuery("select d.id as documentId, s.id as sectionId, s.level as sectionLevel, revCreated.count as revisionCreated, revDeleted.count as revisionDeleted, a.id as deletor, sc.similarity as similarity " + 
-				"from word w " + 
-				
-				"join revision revCreated " + 
-				"	on w.id_revision_created = revCreated.id " + 
-				"	and revCreated.id_author = :authorId " + 
-				"left outer join revision revDeleted " + 
-				"	on w.id_revision_deleted = revDeleted.id " +
-				"left outer join author a " + 
-				"	on revDeleted.id_author = a.id " + 
-				"join section s " + 
-				"	on w.id_section = s.id " + 
-				"join section_has_concept sc " + 
-				"	on sc.id_section = s.id " + 
-				"	and sc.id_concept = :conceptId " + 
-				"join document d " + 
-				"	on d.id = revCreated.id_document " +
-				"where w.id_concept is null " +
-				"group by word, sectionId, revisionCreated, revisionDeleted " +
-				"order by documentId, sectionId, revisionCreated, revisionDeleted");
-		
-		query.addScalar("documentId", Hibernate.LONG).addScalar("sectionId", Hibernate.LONG).addScalar("sectionLevel", Hibernate.INTEGER).addScalar(
-				"revisionCreated", Hibernate.LONG).addScalar("revisionDeleted", Hibernate.LONG).addScalar("deletor", Hibernate.LONG).addScalar("similarity",
-				Hibernate.DOUBLE);
-		
+		return (List<Object[]>)list(createContributionsToSectionsQuery(concept, author));
+	}
+	
+	/**
+	 * Streams the result of
+	 * {@link #getContributionsToSectionsWithConceptForAuthor(Concept, Author)}
+	 * row by row to the given handler.
+	 * 
+	 * @param concept
+	 * @param author
+	 * @param handler
+	 * @return the number of rows.
+	 */
+	public int scrollContributionsToSectionsWithConceptForAuthor(Concept concept, Author author, RowHandler handler) {
+		return scroll(createContributionsToSectionsQuery(concept, author), handler);
+	}
+	
+	private Query createContributionsToSectionsQuery(Concept concept, Author author) {
+		Query query = namedHistoryQuery("Contribution.toSections");
 		query.setLong("conceptId", concept.getId());
 		query.setLong("authorId", author.getId());
-		
-		return (List<Object[]>)query.list();
+		return query;
 	}
 
 	/**
@@ -703,13 +1476,50 @@ public class PersistenceStoreFacade {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<Object[]> getAllNonDeletedWords() {
-		Session session = sessionFactory.getCurrentSession();
-		SQLQuery query = session.createSQLQuery("select count(*) as wordcount, word from word " + 
-				"where id_revision_deleted is null " + 
-				"group by word");
-		query.addScalar("wordcount", Hibernate.INTEGER).addScalar("word", Hibernate.STRING);
-		
-		return (List<Object[]>)query.list();
+		return (List<Object[]>)list(createAllNonDeletedWordsQuery());
+	}
+	
+	/**
+	 * Streams the result of {@link #getAllNonDeletedWords()} row by row to the
+	 * given handler.
+	 * 
+	 * @param handler
+	 * @return the number of rows.
+	 */
+	public int scrollAllNonDeletedWords(RowHandler handler) {
+		return scroll(createAllNonDeletedWordsQuery(), handler);
+	}
+	
+	private Query createAllNonDeletedWordsQuery() {
+		return namedQuery("Word.currentWordCounts");
+	}
+	
+	/**
+	 * Executes the given query with a forward-only cursor and passes each row
+	 * to the given handler. At most {@link Config.Key#PERSISTENCE_FETCH_SIZE}
+	 * rows are fetched from the database at once.
+	 * 
+	 * @param query
+	 * @param handler
+	 * @return the number of rows.
+	 */
+	private int scroll(Query query, RowHandler handler) {
+		query.setFetchSize(Config.getIntAppProperty(Config.Key.PERSISTENCE_FETCH_SIZE));
+		query.setReadOnly(true);
+		long start = System.nanoTime();
+		ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+		int count = 0;
+		try {
+			while (results.next()) {
+				handler.handleRow(results.get());
+				count++;
+			}
+		} finally {
+			results.close();
+			// includes the time spent by the handler
+			recordExecution(query, start);
+		}
+		return count;
 	}
 	
 	/**
@@ -728,9 +1538,10 @@ public class PersistenceStoreFacade {
 	 * Deletes all entries from the concept similarity cache.
 	 */
 	public void clearConceptSimilarityCache() {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("delete ConceptSimilarity");
+		Query query = namedQuery("ConceptSimilarity.deleteAll");
+		long start = System.nanoTime();
 		int count = query.executeUpdate();
+		recordExecution(query, start);
 		log.info("Deleted " + count + " entries from the concept similarity cache.");
 	}
 	
@@ -751,11 +1562,10 @@ public class PersistenceStoreFacade {
 	}
 	
 	public AuthorCredibility getAuthorCredibility(Author author, Concept concept) {
-		Session session = sessionFactory.getCurrentSession();
-		Query query = session.createQuery("from AuthorCredibility ac where ac.author = :author and ac.concept = :concept");
+		Query query = namedQuery("AuthorCredibility.byAuthorAndConcept");
 		query.setEntity("author", author);
 		query.setEntity("concept", concept);
-		return (AuthorCredibility)query.uniqueResult();
+		return (AuthorCredibility)uniqueResult(query);
 	}
 	
 	/**
@@ -810,11 +1620,75 @@ public class PersistenceStoreFacade {
 	
 	
 	/**
-	 * Close the hibernate session, releasing the database conncection.
-	 * @see java.lang.Object#finalize()
+	 * Returns the queue writing the entities of analyzed revisions in the
+	 * background, or null if write-behind is disabled (see
+	 * {@link Config.Key#PERSISTENCE_WRITE_BEHIND}).
+	 * @return the write-behind queue or null.
+	 */
+	public synchronized WriteBehindQueue getWriteBehindQueue() {
+		if (writeBehindQueue == null && Config.getBooleanAppProperty(Config.Key.PERSISTENCE_WRITE_BEHIND)) {
+			writeBehindQueue = new WriteBehindQueue(this, 
+					Config.getIntAppProperty(Config.Key.PERSISTENCE_WRITE_BEHIND_THREADS), 
+					Config.getIntAppProperty(Config.Key.PERSISTENCE_WRITE_BEHIND_QUEUE_SIZE));
+		}
+		return writeBehindQueue;
+	}
+	
+	/**
+	 * Returns the resolver for concepts and documents shared by all components
+	 * analyzing revisions. The resolver is created and preloaded on the first
+	 * call.
+	 * @return the entity resolver.
+	 */
+	public synchronized EntityResolver getEntityResolver() {
+		if (entityResolver == null) {
+			entityResolver = new EntityResolver(this, 
+					Config.getIntAppProperty(Config.Key.PERSISTENCE_RESOLVER_CONCEPTS), 
+					Config.getIntAppProperty(Config.Key.PERSISTENCE_RESOLVER_DOCUMENTS));
+		}
+		return entityResolver;
+	}
+	
+	/**
+	 * Executes the given named query in a session of its own, independent of
+	 * the current transaction. The resulting entities are detached.
+	 * @param queryName the name of the query.
+	 * @param maxResults the maximum number of results wanted; one more result
+	 *        is returned if there are more results.
+	 * @return at most maxResults + 1 results.
+	 */
+	@SuppressWarnings("rawtypes")
+	List preload(String queryName, int maxResults) {
+		Session session = sessionFactory.openSession();
+		try {
+			Query query = session.getNamedQuery(queryName).setMaxResults(maxResults + 1).setReadOnly(true);
+			return list(query);
+		} finally {
+			session.close();
+		}
+	}
+	
+	/**
+	 * Closes the session factory, releasing all database connections. The
+	 * facade cannot be used afterwards. Entities still waiting in the
+	 * write-behind queue are written before.
 	 */
-	protected void finalize() throws Throwable {
-		sessionFactory.getCurrentSession().close();
+	public static synchronized void close() {
+		if (instance != null) {
+			synchronized (instance) {
+				if (instance.writeBehindQueue != null) {
+					instance.writeBehindQueue.close();
+				}
+			}
+			instance.statistics.stop();
+			log.info(instance.getCacheStatistics());
+			if (instance.entityResolver != null) {
+				log.info(instance.entityResolver);
+			}
+			log.info(instance.statistics.getSummary());
+			instance.sessionFactory.close();
+			instance = null;
+		}
 	}
 	
 }
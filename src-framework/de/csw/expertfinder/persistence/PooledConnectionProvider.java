@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.Environment;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.connection.ConnectionProviderFactory;
+
+import de.csw.expertfinder.config.Config;
+
+/**
+ * A bounded JDBC connection pool for hibernate. At most
+ * {@link Config.Key#PERSISTENCE_POOL_MAX_SIZE} connections are open at the same
+ * time, threads requesting a connection while all connections are in use wait
+ * for at most {@link Config.Key#PERSISTENCE_POOL_ACQUIRE_TIMEOUT} milliseconds.
+ * Idle connections are closed after
+ * {@link Config.Key#PERSISTENCE_POOL_IDLE_TIMEOUT} milliseconds.
+ * 
+ * Prepared statements are cached by the JDBC driver (for MySQL, the
+ * corresponding Connector/J properties are set unless they are specified in
+ * the hibernate configuration). For MySQL, cursor based fetching is enabled,
+ * such that large results can be streamed.
+ * 
+ * @author ralph
+ */
+public class PooledConnectionProvider implements ConnectionProvider {
+	
+	private static final Logger log = Logger.getLogger(PooledConnectionProvider.class);
+	
+	/**
+	 * An idle connection along with the time it has been returned to the pool.
+	 */
+	private static class IdleConnection {
+		private final Connection connection;
+		private final long since;
+		
+		private IdleConnection(Connection connection) {
+			this.connection = connection;
+			this.since = System.currentTimeMillis();
+		}
+	}
+	
+	private final LinkedList<IdleConnection> idleConnections = new LinkedList<IdleConnection>();
+	
+	private Semaphore permits;
+	
+	private String url;
+	private Properties connectionProperties;
+	private Integer isolation;
+	private boolean autocommit;
+	
+	private int maxSize;
+	private long acquireTimeout;
+	private long idleTimeout;
+	
+	private volatile boolean closed;
+	
+	/**
+	 * @see org.hibernate.connection.ConnectionProvider#configure(java.util.Properties)
+	 */
+	public void configure(Properties props) throws HibernateException {
+		String driverClass = props.getProperty(Environment.DRIVER);
+		url = props.getProperty(Environment.URL);
+		if (url == null) {
+			throw new HibernateException("No JDBC URL specified by property " + Environment.URL);
+		}
+		
+		if (driverClass != null) {
+			try {
+				Class.forName(driverClass);
+			} catch (ClassNotFoundException e) {
+				throw new HibernateException("JDBC driver class not found: " + driverClass, e);
+			}
+		}
+		
+		connectionProperties = ConnectionProviderFactory.getConnectionProperties(props);
+		
+		int statementCacheSize = Config.getIntAppProperty(Config.Key.PERSISTENCE_POOL_STATEMENT_CACHE_SIZE);
+		if (url.startsWith("jdbc:mysql:") && statementCacheSize > 0) {
+			setDefault(connectionProperties, "cachePrepStmts", "true");
+			setDefault(connectionProperties, "useServerPrepStmts", "true");
+			setDefault(connectionProperties, "prepStmtCacheSize", String.valueOf(statementCacheSize));
+			setDefault(connectionProperties, "prepStmtCacheSqlLimit", "2048");
+		}
+		
+		if (url.startsWith("jdbc:mysql:")) {
+			// without cursor fetching, Connector/J reads the complete result set
+			// into memory and ignores the fetch size of streamed queries.
+			setDefault(connectionProperties, "useCursorFetch", "true");
+		}
+		
+		String isolationString = props.getProperty(Environment.ISOLATION);
+		isolation = isolationString == null ? null : Integer.valueOf(isolationString);
+		autocommit = Boolean.valueOf(props.getProperty(Environment.AUTOCOMMIT));
+		
+		maxSize = Math.max(1, Config.getIntAppProperty(Config.Key.PERSISTENCE_POOL_MAX_SIZE));
+		int minSize = Math.min(maxSize, Config.getIntAppProperty(Config.Key.PERSISTENCE_POOL_MIN_SIZE));
+		acquireTimeout = Config.getIntAppProperty(Config.Key.PERSISTENCE_POOL_ACQUIRE_TIMEOUT);
+		idleTimeout = Config.getIntAppProperty(Config.Key.PERSISTENCE_POOL_IDLE_TIMEOUT);
+		
+		permits = new Semaphore(maxSize, true);
+		
+		log.info("Connection pool for " + url + ": " + minSize + "-" + maxSize + " connections, acquire timeout " + 
+				acquireTimeout + " ms, idle timeout " + idleTimeout + " ms, statement cache size " + statementCacheSize);
+		
+		// open the minimum number of connections in advance
+		try {
+			for (int i = 0; i < minSize; i++) {
+				Connection connection = openConnection();
+				synchronized (idleConnections) {
+					idleConnections.add(new IdleConnection(connection));
+				}
+			}
+		} catch (SQLException e) {
+			log.warn("Could not open initial connections: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * @see org.hibernate.connection.ConnectionProvider#getConnection()
+	 */
+	public Connection getConnection() throws SQLException {
+		if (closed) {
+			throw new SQLException("The connection pool has been closed.");
+		}
+		try {
+			if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+				throw new SQLException("Timeout: no database connection available after " + acquireTimeout + " ms (" + maxSize + " connections in use).");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection.");
+		}
+		
+		try {
+			long now = System.currentTimeMillis();
+			while (true) {
+				IdleConnection idle;
+				synchronized (idleConnections) {
+					// most recently used first, such that surplus connections time out
+					idle = idleConnections.pollLast();
+				}
+				if (idle == null) {
+					return openConnection();
+				}
+				if (now - idle.since > idleTimeout || idle.connection.isClosed()) {
+					closeQuietly(idle.connection);
+					continue;
+				}
+				return idle.connection;
+			}
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * @see org.hibernate.connection.ConnectionProvider#closeConnection(java.sql.Connection)
+	 */
+	public void closeConnection(Connection connection) throws SQLException {
+		try {
+			if (closed || connection.isClosed()) {
+				closeQuietly(connection);
+				return;
+			}
+			if (connection.getAutoCommit() != autocommit) {
+				connection.setAutoCommit(autocommit);
+			}
+			synchronized (idleConnections) {
+				idleConnections.addLast(new IdleConnection(connection));
+			}
+		} catch (SQLException e) {
+			// broken connection, do not return it to the pool
+			closeQuietly(connection);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * @see org.hibernate.connection.ConnectionProvider#close()
+	 */
+	public void close() throws HibernateException {
+		closed = true;
+		synchronized (idleConnections) {
+			for (IdleConnection idle : idleConnections) {
+				closeQuietly(idle.connection);
+			}
+			idleConnections.clear();
+		}
+		log.info("Connection pool for " + url + " closed.");
+	}
+
+	/**
+	 * @see org.hibernate.connection.ConnectionProvider#supportsAggressiveRelease()
+	 */
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+	
+	/**
+	 * Returns the number of connections that are currently in use.
+	 * @return the number of connections that are currently in use.
+	 */
+	public int getActiveConnectionCount() {
+		return maxSize - permits.availablePermits();
+	}
+	
+	/**
+	 * Returns the number of connections that are currently idle.
+	 * @return the number of connections that are currently idle.
+	 */
+	public int getIdleConnectionCount() {
+		synchronized (idleConnections) {
+			return idleConnections.size();
+		}
+	}
+	
+	private Connection openConnection() throws SQLException {
+		Connection connection = DriverManager.getConnection(url, connectionProperties);
+		if (isolation != null) {
+			connection.setTransactionIsolation(isolation);
+		}
+		if (connection.getAutoCommit() != autocommit) {
+			connection.setAutoCommit(autocommit);
+		}
+		return connection;
+	}
+	
+	private static void setDefault(Properties properties, String key, String value) {
+		if (properties.getProperty(key) == null) {
+			properties.setProperty(key, value);
+		}
+	}
+	
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			log.debug("Could not close connection: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Counts the executions of queries (or other operations) and their execution
+ * times by name.
+ * All methods are thread-safe.
+ * 
+ * @author ralph
+ */
+public class QueryStatistics {
+	
+	/**
+	 * The statistics of one query.
+	 */
+	public static class Entry {
+		private final String queryName;
+		private long executionCount;
+		private long totalNanos;
+		private long maxNanos;
+		
+		private Entry(String queryName) {
+			this.queryName = queryName;
+		}
+		
+		private Entry(Entry entry) {
+			this.queryName = entry.queryName;
+			this.executionCount = entry.executionCount;
+			this.totalNanos = entry.totalNanos;
+			this.maxNanos = entry.maxNanos;
+		}
+		
+		public String getQueryName() {
+			return queryName;
+		}
+		
+		public long getExecutionCount() {
+			return executionCount;
+		}
+		
+		/** @return the sum of all execution times in milliseconds. */
+		public double getTotalMillis() {
+			return totalNanos / 1000000d;
+		}
+		
+		/** @return the average execution time in milliseconds. */
+		public double getAverageMillis() {
+			return executionCount == 0 ? 0d : getTotalMillis() / executionCount;
+		}
+		
+		/** @return the longest execution time in milliseconds. */
+		public double getMaxMillis() {
+			return maxNanos / 1000000d;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%s: %d executions, %.1f ms total, %.2f ms average, %.1f ms max", 
+					queryName, executionCount, getTotalMillis(), getAverageMillis(), getMaxMillis());
+		}
+	}
+	
+	private final HashMap<String, Entry> entries = new HashMap<String, Entry>();
+	
+	/**
+	 * Records one execution of the query with the given name.
+	 * @param queryName
+	 * @param nanos the execution time in nanoseconds.
+	 */
+	public synchronized void record(String queryName, long nanos) {
+		Entry entry = entries.get(queryName);
+		if (entry == null) {
+			entry = new Entry(queryName);
+			entries.put(queryName, entry);
+		}
+		entry.executionCount++;
+		entry.totalNanos += nanos;
+		if (nanos > entry.maxNanos)
+			entry.maxNanos = nanos;
+	}
+	
+	/**
+	 * Returns a copy of the statistics of all queries that have been executed,
+	 * sorted by their total execution time (longest first).
+	 * @return the statistics of all executed queries.
+	 */
+	public synchronized List<Entry> getEntries() {
+		ArrayList<Entry> result = new ArrayList<Entry>(entries.size());
+		for (Entry entry : entries.values()) {
+			result.add(new Entry(entry));
+		}
+		Collections.sort(result, new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				return e1.totalNanos < e2.totalNanos ? 1 : e1.totalNanos == e2.totalNanos ? 0 : -1;
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Discards all statistics.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("Query statistics:");
+		for (Entry entry : getEntries()) {
+			result.append("\n  ").append(entry);
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.sql.Types;
+
+import org.hibernate.Hibernate;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.dialect.function.StandardSQLFunction;
+import org.hibernate.dialect.function.VarArgsSQLFunction;
+
+/**
+ * A hibernate dialect for SQLite, used by the embedded storage backend (see
+ * {@link de.csw.expertfinder.config.Config.Key#PERSISTENCE_STORAGE}).
+ * 
+ * SQLite does not support <code>select ... for update</code>; a write
+ * transaction locks the entire database file instead. Identity columns are
+ * <code>integer primary key autoincrement</code> columns.
+ * 
+ * @author ralph
+ */
+public class SQLiteDialect extends Dialect {
+	
+	public SQLiteDialect() {
+		registerColumnType(Types.BIT, "integer");
+		registerColumnType(Types.BOOLEAN, "integer");
+		registerColumnType(Types.TINYINT, "tinyint");
+		registerColumnType(Types.SMALLINT, "smallint");
+		registerColumnType(Types.INTEGER, "integer");
+		registerColumnType(Types.BIGINT, "bigint");
+		registerColumnType(Types.FLOAT, "float");
+		registerColumnType(Types.REAL, "real");
+		registerColumnType(Types.DOUBLE, "double");
+		registerColumnType(Types.NUMERIC, "numeric");
+		registerColumnType(Types.DECIMAL, "decimal");
+		registerColumnType(Types.CHAR, "char");
+		registerColumnType(Types.VARCHAR, "varchar");
+		registerColumnType(Types.LONGVARCHAR, "longvarchar");
+		registerColumnType(Types.DATE, "date");
+		registerColumnType(Types.TIME, "time");
+		registerColumnType(Types.TIMESTAMP, "timestamp");
+		registerColumnType(Types.BINARY, "blob");
+		registerColumnType(Types.VARBINARY, "blob");
+		registerColumnType(Types.LONGVARBINARY, "blob");
+		registerColumnType(Types.BLOB, "blob");
+		registerColumnType(Types.CLOB, "clob");
+		
+		registerFunction("concat", new VarArgsSQLFunction(Hibernate.STRING, "", "||", ""));
+		registerFunction("mod", new SQLFunctionTemplate(Hibernate.INTEGER, "?1 % ?2"));
+		registerFunction("substr", new StandardSQLFunction("substr", Hibernate.STRING));
+		registerFunction("substring", new StandardSQLFunction("substr", Hibernate.STRING));
+		registerFunction("length", new StandardSQLFunction("length", Hibernate.INTEGER));
+		registerFunction("lower", new StandardSQLFunction("lower"));
+		registerFunction("upper", new StandardSQLFunction("upper"));
+		registerFunction("abs", new StandardSQLFunction("abs"));
+		registerFunction("coalesce", new StandardSQLFunction("coalesce"));
+	}
+	
+	@Override
+	public boolean supportsIdentityColumns() {
+		return true;
+	}
+	
+	@Override
+	public boolean hasDataTypeInIdentityColumn() {
+		// the type of an autoincrement column must be "integer primary key"
+		return false;
+	}
+	
+	@Override
+	public String getIdentityColumnString() {
+		return "integer primary key autoincrement";
+	}
+	
+	@Override
+	public String getIdentitySelectString() {
+		return "select last_insert_rowid()";
+	}
+	
+	@Override
+	public boolean supportsLimit() {
+		return true;
+	}
+	
+	@Override
+	protected String getLimitString(String query, boolean hasOffset) {
+		return query + (hasOffset ? " limit ? offset ?" : " limit ?");
+	}
+	
+	@Override
+	public boolean bindLimitParametersInReverseOrder() {
+		return true;
+	}
+	
+	@Override
+	public String getForUpdateString() {
+		return "";
+	}
+	
+	@Override
+	public boolean supportsOuterJoinForUpdate() {
+		return false;
+	}
+	
+	@Override
+	public boolean supportsTemporaryTables() {
+		return true;
+	}
+	
+	@Override
+	public String getCreateTemporaryTableString() {
+		return "create temporary table if not exists";
+	}
+	
+	@Override
+	public boolean dropTemporaryTableAfterUse() {
+		return false;
+	}
+	
+	@Override
+	public boolean supportsCurrentTimestampSelection() {
+		return true;
+	}
+	
+	@Override
+	public boolean isCurrentTimestampSelectStringCallable() {
+		return false;
+	}
+	
+	@Override
+	public String getCurrentTimestampSelectString() {
+		return "select current_timestamp";
+	}
+	
+	@Override
+	public boolean hasAlterTable() {
+		// SQLite can only add columns and rename tables
+		return false;
+	}
+	
+	@Override
+	public boolean dropConstraints() {
+		return false;
+	}
+	
+	@Override
+	public String getAddColumnString() {
+		return "add column";
+	}
+	
+	@Override
+	public boolean supportsIfExistsBeforeTableName() {
+		return true;
+	}
+	
+	@Override
+	public boolean supportsCascadeDelete() {
+		return false;
+	}
+	
+	@Override
+	public boolean supportsUnionAll() {
+		return true;
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.hibernate.jdbc.Work;
+
+/**
+ * Creates the database schema from an SQL script on the classpath if the
+ * database does not contain the table {@value #CHECK_TABLE} yet. Used to
+ * initialize the database file of the embedded storage backend.
+ * 
+ * Statements in the script are separated by a semicolon at the end of a line,
+ * lines starting with <code>--</code> are comments.
+ * 
+ * @author ralph
+ */
+class SchemaBootstrap implements Work {
+	
+	private static final Logger log = Logger.getLogger(SchemaBootstrap.class);
+	
+	private static final String CHECK_TABLE = "document";
+	
+	private final String scriptResource;
+	
+	/**
+	 * Creates a new SchemaBootstrap.
+	 * @param scriptResource the classpath resource name of the SQL script.
+	 */
+	SchemaBootstrap(String scriptResource) {
+		this.scriptResource = scriptResource;
+	}
+
+	/**
+	 * @see org.hibernate.jdbc.Work#execute(java.sql.Connection)
+	 */
+	public void execute(Connection connection) throws SQLException {
+		ResultSet rs = connection.getMetaData().getTables(null, null, CHECK_TABLE, null);
+		try {
+			if (rs.next()) {
+				return;
+			}
+		} finally {
+			rs.close();
+		}
+		
+		List<String> statements = readStatements();
+		log.info("Creating database schema from " + scriptResource + " (" + statements.size() + " statements).");
+		
+		Statement statement = connection.createStatement();
+		try {
+			for (String sql : statements) {
+				statement.executeUpdate(sql);
+			}
+		} finally {
+			statement.close();
+		}
+	}
+	
+	private List<String> readStatements() throws SQLException {
+		InputStream in = SchemaBootstrap.class.getClassLoader().getResourceAsStream(scriptResource);
+		if (in == null) {
+			throw new SQLException("Schema script " + scriptResource + " not found on the classpath.");
+		}
+		
+		ArrayList<String> statements = new ArrayList<String>();
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+			StringBuilder current = new StringBuilder();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String trimmed = line.trim();
+				if (trimmed.length() == 0 || trimmed.startsWith("--")) {
+					continue;
+				}
+				current.append(line).append('\n');
+				if (trimmed.endsWith(";")) {
+					current.setLength(current.lastIndexOf(";"));
+					statements.add(current.toString());
+					current.setLength(0);
+				}
+			}
+			if (current.toString().trim().length() > 0) {
+				statements.add(current.toString());
+			}
+		} catch (IOException e) {
+			throw new SQLException("Could not read schema script " + scriptResource + ": " + e.getMessage());
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+		return statements;
+	}
+}
@@ -0,0 +1,450 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.hibernate.jdbc.Work;
+
+import de.csw.expertfinder.application.ApplicationData;
+
+/**
+ * Keeps the database schema up to date with the columns and indexes the
+ * application relies on. Each {@link Migration} has a version number, the
+ * statements it executes (e.g. to add and fill columns) and the indexes it
+ * creates. The version of the latest applied migration is stored in the
+ * application data table (see {@link ApplicationData#SCHEMA_VERSION}).
+ * 
+ * When executed, pending migrations are applied if automatic migration is
+ * enabled. Afterwards, the indexes of all migrations are verified against the
+ * database meta data, and indexes that are missing are reported. An index
+ * counts as present if any index of the table starts with the same columns in
+ * the same order.
+ * 
+ * @author ralph
+ */
+public class SchemaMigrator implements Work {
+	
+	private static final Logger log = Logger.getLogger(SchemaMigrator.class);
+	
+	private static final String[] NO_STATEMENTS = new String[0];
+	
+	/**
+	 * All migrations, in ascending order of their versions.
+	 */
+	private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+		new Migration(1, "composite indexes for the contribution and revision queries", NO_STATEMENTS,
+				// words of a concept by the revision that created them (credibility, contributed topics)
+				new IndexDefinition("word", "word_concept_created", "id_concept", "id_revision_created"),
+				// current words of a section (latest revision, section contributions)
+				new IndexDefinition("word", "word_section_deleted", "id_section", "id_revision_deleted"),
+				// current words of a revision (bag of words)
+				new IndexDefinition("word", "word_created_deleted", "id_revision_created", "id_revision_deleted"),
+				// revisions of a document
+				new IndexDefinition("revision", "revision_document_id", "id_document", "id"),
+				// revisions of an author
+				new IndexDefinition("revision", "revision_author_id", "id_author", "id"),
+				// current sections of a revision
+				new IndexDefinition("section", "section_created_deleted", "id_revision_created", "id_revision_deleted"),
+				// sections mapped to a concept
+				new IndexDefinition("section_has_concept", "section_has_concept_concept_section", "id_concept", "id_section")),
+		new Migration(2, "latest revision and revision count of documents", new String[] {
+				"alter table document add column id_latest_revision integer null",
+				"alter table document add column revision_count integer not null default 0",
+				"update document set " + 
+				"id_latest_revision = (select max(r.id) from revision r where r.id_document = document.id), " + 
+				"revision_count = (select count(*) from revision r where r.id_document = document.id)"
+		}),
+		new Migration(3, "separate table for deleted words", new String[] {
+				"create table word_deleted (" + 
+				"id integer not null primary key, word varchar(255) not null, wordStem varchar(255) null, " + 
+				"startPos integer not null, endPos integer not null, id_revision_created integer null, " + 
+				"id_revision_deleted integer null, id_concept integer null, id_section integer null, isNoun tinyint null)",
+				"create view word_all as " + 
+				"select " + BulkEntityWriter.WORD_COLUMNS + " from word union all select " + BulkEntityWriter.WORD_COLUMNS + " from word_deleted"
+		},
+				// deleted words of a concept by the revision that created them
+				new IndexDefinition("word_deleted", "word_deleted_concept_created", "id_concept", "id_revision_created"),
+				// deleted words of a section
+				new IndexDefinition("word_deleted", "word_deleted_section", "id_section"),
+				// words by the revisions that created and deleted them
+				new IndexDefinition("word_deleted", "word_deleted_created", "id_revision_created"),
+				new IndexDefinition("word_deleted", "word_deleted_deleted", "id_revision_deleted"))
+	));
+	
+	private final boolean autoMigrate;
+	
+	private int schemaVersion;
+	private final List<IndexDefinition> missingIndexes = new ArrayList<IndexDefinition>();
+	
+	/**
+	 * Creates a new SchemaMigrator.
+	 * @param autoMigrate if true, pending migrations are applied, otherwise
+	 *        the schema is only verified.
+	 */
+	public SchemaMigrator(boolean autoMigrate) {
+		this.autoMigrate = autoMigrate;
+	}
+	
+	/**
+	 * @return the version of the latest migration known to this class.
+	 */
+	public static int getLatestVersion() {
+		return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+	}
+	
+	/**
+	 * @return the schema version of the database after this work has been executed.
+	 */
+	public int getSchemaVersion() {
+		return schemaVersion;
+	}
+	
+	/**
+	 * @return the indexes that were missing after this work has been executed.
+	 */
+	public List<IndexDefinition> getMissingIndexes() {
+		return Collections.unmodifiableList(missingIndexes);
+	}
+
+	/**
+	 * @see org.hibernate.jdbc.Work#execute(java.sql.Connection)
+	 */
+	public void execute(Connection connection) throws SQLException {
+		schemaVersion = readSchemaVersion(connection);
+		
+		int latestVersion = getLatestVersion();
+		if (schemaVersion < latestVersion) {
+			if (autoMigrate) {
+				for (Migration migration : MIGRATIONS) {
+					if (migration.version > schemaVersion) {
+						migrate(connection, migration);
+					}
+				}
+			} else {
+				log.warn("Database schema version is " + schemaVersion + ", latest version is " + latestVersion + 
+						". Set persistence.schema.automigrate to true to migrate the schema at startup " + 
+						"or run the corresponding scripts in installer/db.");
+			}
+		}
+		
+		verify(connection);
+	}
+	
+	/**
+	 * Applies the given migration and records its version.
+	 * @param connection
+	 * @param migration
+	 * @throws SQLException
+	 */
+	private void migrate(Connection connection, Migration migration) throws SQLException {
+		log.info("Migrating database schema to version " + migration.version + " (" + migration.description + ").");
+		
+		Statement statement = connection.createStatement();
+		try {
+			for (String sql : migration.statements) {
+				long start = System.currentTimeMillis();
+				int count = statement.executeUpdate(sql);
+				log.info("Executed \"" + sql + "\" (" + count + " rows) in " + (System.currentTimeMillis() - start) + " ms.");
+			}
+			for (IndexDefinition index : migration.indexes) {
+				if (findIndex(connection, index) != null) {
+					continue;
+				}
+				long start = System.currentTimeMillis();
+				statement.executeUpdate(index.getCreateStatement());
+				log.info("Created index " + index + " in " + (System.currentTimeMillis() - start) + " ms.");
+			}
+		} finally {
+			statement.close();
+		}
+		
+		writeSchemaVersion(connection, migration.version);
+		schemaVersion = migration.version;
+	}
+	
+	/**
+	 * Checks that the indexes of all migrations exist and reports those that
+	 * are missing.
+	 * @param connection
+	 * @throws SQLException
+	 */
+	private void verify(Connection connection) throws SQLException {
+		missingIndexes.clear();
+		for (Migration migration : MIGRATIONS) {
+			for (IndexDefinition index : migration.indexes) {
+				String existing = findIndex(connection, index);
+				if (existing == null) {
+					missingIndexes.add(index);
+					log.warn("Table " + index.table + " is missing an index on " + index.getColumnList() + 
+							" (see installer/db/add_composite_indexes.sql).");
+				} else if (log.isDebugEnabled()) {
+					log.debug("Index " + index + " is covered by " + index.table + "." + existing + ".");
+				}
+			}
+		}
+		if (missingIndexes.isEmpty()) {
+			log.info("Database schema version " + schemaVersion + " verified, all indexes present.");
+		}
+	}
+	
+	/**
+	 * Looks for an index that starts with the columns of the given index definition.
+	 * @param connection
+	 * @param index
+	 * @return the name of the existing index or null if there is no such index.
+	 * @throws SQLException
+	 */
+	private String findIndex(Connection connection, IndexDefinition index) throws SQLException {
+		Map<String, List<String>> indexColumns = connection.getMetaData().getURL().startsWith("jdbc:sqlite:") ? 
+				readSQLiteIndexes(connection, index.table) : readIndexes(connection, index.table);
+		
+		for (Map.Entry<String, List<String>> entry : indexColumns.entrySet()) {
+			if (index.isCoveredBy(entry.getValue())) {
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads the indexes of the given table from the JDBC meta data.
+	 * @return the columns of each index (by index name), in order.
+	 */
+	private Map<String, List<String>> readIndexes(Connection connection, String table) throws SQLException {
+		// index name -> (ordinal position -> column name)
+		Map<String, TreeMap<Integer, String>> indexColumns = new HashMap<String, TreeMap<Integer, String>>();
+		ResultSet rs = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, false, true);
+		try {
+			while (rs.next()) {
+				String indexName = rs.getString("INDEX_NAME");
+				String columnName = rs.getString("COLUMN_NAME");
+				if (indexName == null || columnName == null) {
+					// table statistics
+					continue;
+				}
+				TreeMap<Integer, String> columns = indexColumns.get(indexName);
+				if (columns == null) {
+					columns = new TreeMap<Integer, String>();
+					indexColumns.put(indexName, columns);
+				}
+				columns.put((int)rs.getShort("ORDINAL_POSITION"), columnName);
+			}
+		} finally {
+			rs.close();
+		}
+		
+		Map<String, List<String>> result = new HashMap<String, List<String>>();
+		for (Map.Entry<String, TreeMap<Integer, String>> entry : indexColumns.entrySet()) {
+			result.put(entry.getKey(), new ArrayList<String>(entry.getValue().values()));
+		}
+		return result;
+	}
+	
+	/**
+	 * Reads the indexes of the given table with SQLite's pragmas (the SQLite
+	 * JDBC driver does not implement {@link DatabaseMetaData#getIndexInfo}).
+	 * @return the columns of each index (by index name), in order.
+	 */
+	private Map<String, List<String>> readSQLiteIndexes(Connection connection, String table) throws SQLException {
+		Map<String, List<String>> result = new HashMap<String, List<String>>();
+		Statement statement = connection.createStatement();
+		try {
+			ArrayList<String> indexNames = new ArrayList<String>();
+			ResultSet rs = statement.executeQuery("pragma index_list(" + table + ")");
+			try {
+				while (rs.next()) {
+					indexNames.add(rs.getString("name"));
+				}
+			} finally {
+				rs.close();
+			}
+			
+			for (String indexName : indexNames) {
+				ArrayList<String> columns = new ArrayList<String>();
+				rs = statement.executeQuery("pragma index_info(" + indexName + ")");
+				try {
+					while (rs.next()) {
+						// rows are ordered by the position of the column in the index
+						columns.add(rs.getString("name"));
+					}
+				} finally {
+					rs.close();
+				}
+				result.put(indexName, columns);
+			}
+		} finally {
+			statement.close();
+		}
+		return result;
+	}
+	
+	private int readSchemaVersion(Connection connection) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement("select `value` from application_data where `key` = ?");
+		try {
+			statement.setString(1, ApplicationData.SCHEMA_VERSION);
+			ResultSet rs = statement.executeQuery();
+			try {
+				if (!rs.next()) {
+					return 0;
+				}
+				try {
+					return Integer.parseInt(rs.getString(1));
+				} catch (NumberFormatException e) {
+					log.warn("Illegal schema version " + rs.getString(1) + ", assuming 0.");
+					return 0;
+				}
+			} finally {
+				rs.close();
+			}
+		} finally {
+			statement.close();
+		}
+	}
+	
+	private void writeSchemaVersion(Connection connection, int version) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement("update application_data set `value` = ? where `key` = ?");
+		try {
+			statement.setString(1, String.valueOf(version));
+			statement.setString(2, ApplicationData.SCHEMA_VERSION);
+			if (statement.executeUpdate() > 0) {
+				return;
+			}
+		} finally {
+			statement.close();
+		}
+		
+		statement = connection.prepareStatement("insert into application_data (`key`, `value`) values (?, ?)");
+		try {
+			statement.setString(1, ApplicationData.SCHEMA_VERSION);
+			statement.setString(2, String.valueOf(version));
+			statement.executeUpdate();
+		} finally {
+			statement.close();
+		}
+	}
+	
+	/**
+	 * A versioned set of changes to the database schema.
+	 */
+	private static class Migration {
+		
+		private final int version;
+		private final String description;
+		private final String[] statements;
+		private final IndexDefinition[] indexes;
+		
+		Migration(int version, String description, String[] statements, IndexDefinition... indexes) {
+			this.version = version;
+			this.description = description;
+			this.statements = statements;
+			this.indexes = indexes;
+		}
+	}
+	
+	/**
+	 * An index on one or more columns of a table.
+	 */
+	public static class IndexDefinition {
+		
+		private final String table;
+		private final String name;
+		private final String[] columns;
+		
+		IndexDefinition(String table, String name, String... columns) {
+			this.table = table;
+			this.name = name;
+			this.columns = columns;
+		}
+		
+		/**
+		 * @return the name of the indexed table.
+		 */
+		public String getTable() {
+			return table;
+		}
+		
+		/**
+		 * @return the name of the index.
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return the indexed columns, separated by commas.
+		 */
+		public String getColumnList() {
+			StringBuilder sb = new StringBuilder("(");
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+				}
+				sb.append(columns[i]);
+			}
+			return sb.append(')').toString();
+		}
+		
+		String getCreateStatement() {
+			return "create index " + name + " on " + table + " " + getColumnList();
+		}
+		
+		/**
+		 * @param indexColumns the columns of an existing index, in order.
+		 * @return true if the given index can be used instead of this one.
+		 */
+		boolean isCoveredBy(List<String> indexColumns) {
+			if (indexColumns.size() < columns.length) {
+				return false;
+			}
+			for (int i = 0; i < columns.length; i++) {
+				if (!columns[i].equalsIgnoreCase(indexColumns.get(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		@Override
+		public String toString() {
+			return table + "." + name + " " + getColumnList();
+		}
+	}
+
+}
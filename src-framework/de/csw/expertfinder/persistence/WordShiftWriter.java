@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.hibernate.jdbc.Work;
+
+import de.csw.expertfinder.document.Section;
+
+/**
+ * Shifts the positions of the unchanged words of sections, see
+ * {@link Section#addWordShift(int, int, int)}.
+ * 
+ * The ranges of a section refer to the positions of the previous revision.
+ * Since a shifted range may overlap another range that has not been shifted
+ * yet, the words of each range are first parked at negative positions
+ * (-1 - new position), which are not contained by any range. Then the
+ * positions of all parked words of the section are made positive again.
+ * 
+ * The shifts must be written before any other word of the revision, such
+ * that the ranges contain the words of the previous revision only.
+ * 
+ * @author ralph
+ */
+class WordShiftWriter implements Work {
+	
+	private static final Logger log = Logger.getLogger(WordShiftWriter.class);
+	
+	private static final String WORD_PARK = "update word set startPos = ? - startPos, endPos = ? - endPos " +
+			"where id_section = ? and id_revision_deleted is null and startPos >= ? and startPos <= ?";
+	private static final String WORD_UNPARK = "update word set startPos = -1 - startPos, endPos = -1 - endPos " +
+			"where id_section = ? and id_revision_deleted is null and startPos < 0";
+	
+	private final List<Section> sections;
+	private final int batchSize;
+	
+	/**
+	 * Creates a new WordShiftWriter.
+	 * @param sections the sections with word shifts.
+	 * @param batchSize the maximum number of statements per batch.
+	 */
+	WordShiftWriter(List<Section> sections, int batchSize) {
+		this.sections = sections;
+		this.batchSize = Math.max(1, batchSize);
+	}
+	
+	/**
+	 * @see org.hibernate.jdbc.Work#execute(java.sql.Connection)
+	 */
+	public void execute(Connection connection) throws SQLException {
+		long start = System.currentTimeMillis();
+		int shifts = 0;
+		int words = 0;
+		
+		PreparedStatement stmt = connection.prepareStatement(WORD_PARK);
+		try {
+			for (Section section : sections) {
+				int[] wordShifts = section.getWordShifts();
+				int count = section.getWordShiftCount();
+				for (int i = 0; i < 3 * count; i += 3) {
+					int parked = -1 - wordShifts[i + 2];
+					stmt.setInt(1, parked);
+					stmt.setInt(2, parked);
+					stmt.setLong(3, section.getId());
+					stmt.setInt(4, wordShifts[i]);
+					stmt.setInt(5, wordShifts[i + 1]);
+					stmt.addBatch();
+					if (++shifts % batchSize == 0)
+						words += sum(stmt.executeBatch());
+				}
+			}
+			words += sum(stmt.executeBatch());
+		} finally {
+			stmt.close();
+		}
+		
+		stmt = connection.prepareStatement(WORD_UNPARK);
+		try {
+			int count = 0;
+			for (Section section : sections) {
+				stmt.setLong(1, section.getId());
+				stmt.addBatch();
+				if (++count % batchSize == 0)
+					stmt.executeBatch();
+			}
+			stmt.executeBatch();
+		} finally {
+			stmt.close();
+		}
+		
+		for (Section section : sections) {
+			section.clearWordShifts();
+		}
+		
+		if (log.isDebugEnabled()) {
+			log.debug("Shifted " + words + " words in " + shifts + " ranges of " + sections.size() + " sections in " + 
+					(System.currentTimeMillis() - start) + " ms.");
+		}
+	}
+	
+	private static int sum(int[] updateCounts) {
+		int result = 0;
+		for (int updateCount : updateCounts) {
+			if (updateCount > 0)
+				result += updateCount;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.persistence;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.log4j.Logger;
+
+import de.csw.expertfinder.document.PersistableEntity;
+
+/**
+ * Writes the entities of analyzed revisions to the database in background
+ * threads (write-behind), so that the analysis of the next revisions does not
+ * wait for the database.
+ * 
+ * Each batch of entities (typically all entities created or changed by one
+ * revision) is saved with {@link PersistenceStoreFacade#saveAll(Collection)}
+ * and committed in a transaction of its own. Batches are distributed among the
+ * writer threads by their document id, thus the batches of one document are
+ * always written by the same thread in the order they have been submitted.
+ * Each thread has a bounded queue; if it is full, {@link #submit(long, Collection)}
+ * blocks until the oldest batch has been written (back-pressure).
+ * 
+ * If a batch cannot be written, all batches submitted after it are discarded
+ * and every subsequent call of {@link #submit(long, Collection)},
+ * {@link #awaitDocument(long)} or {@link #flush()} throws a
+ * {@link WriteBehindException} with the original error as its cause.
+ * 
+ * The queue is shared by all components writing revisions, see
+ * {@link PersistenceStoreFacade#getWriteBehindQueue()}.
+ * 
+ * The entities of a batch must not be modified after they have been submitted
+ * until the batch has been written. Callers that change entities of earlier
+ * revisions (e.g. to mark words as deleted) have to call
+ * {@link #awaitDocument(long)} first.
+ * 
+ * @author ralph
+ */
+public class WriteBehindQueue {
+	
+	private static final Logger log = Logger.getLogger(WriteBehindQueue.class);
+	
+	/** Tells a writer thread to stop after all batches queued before it */
+	private static final Batch STOP = new Batch(-1, null);
+	
+	private final PersistenceStoreFacade persistenceStore;
+	private final Writer[] writers;
+	
+	/** number of submitted batches that have not been written yet by document id */
+	private final HashMap<Long, Integer> pendingByDocument = new HashMap<Long, Integer>();
+	private int pending;
+	private long written;
+	
+	private RuntimeException failure;
+	private boolean closed;
+	
+	/**
+	 * Creates a new queue and starts its writer threads.
+	 * @param persistenceStore the facade used by the writer threads.
+	 * @param threadCount the number of writer threads.
+	 * @param capacity the maximum number of batches waiting for each writer thread.
+	 */
+	WriteBehindQueue(PersistenceStoreFacade persistenceStore, int threadCount, int capacity) {
+		this.persistenceStore = persistenceStore;
+		writers = new Writer[Math.max(1, threadCount)];
+		for (int i = 0; i < writers.length; i++) {
+			writers[i] = new Writer("write-behind-" + i, new ArrayBlockingQueue<Batch>(Math.max(1, capacity)));
+			writers[i].start();
+		}
+	}
+	
+	/**
+	 * Hands the given entities to the writer thread of the given document.
+	 * Blocks if too many batches are waiting for this thread.
+	 * @param documentId the id of the document the entities belong to.
+	 * @param entities the entities to save.
+	 * @throws InterruptedException if the calling thread has been interrupted while waiting.
+	 * @throws WriteBehindException if an earlier batch could not be written or the queue has been closed.
+	 */
+	public void submit(long documentId, Collection<? extends PersistableEntity<? extends Serializable>> entities) throws InterruptedException {
+		synchronized (this) {
+			checkFailure();
+			if (closed)
+				throw new WriteBehindException("The write-behind queue has been closed.");
+			Integer count = pendingByDocument.get(documentId);
+			pendingByDocument.put(documentId, count == null ? 1 : count + 1);
+			pending++;
+		}
+		try {
+			writers[(int)(Math.abs(documentId % writers.length))].queue.put(new Batch(documentId, entities));
+		} catch (InterruptedException e) {
+			finished(documentId);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Waits until all batches of the given document have been written.
+	 * @param documentId
+	 * @throws InterruptedException if the calling thread has been interrupted while waiting.
+	 * @throws WriteBehindException if a batch could not be written.
+	 */
+	public synchronized void awaitDocument(long documentId) throws InterruptedException {
+		while (failure == null && pendingByDocument.containsKey(documentId)) {
+			wait();
+		}
+		checkFailure();
+	}
+	
+	/**
+	 * Waits until all submitted batches have been written.
+	 * @throws InterruptedException if the calling thread has been interrupted while waiting.
+	 * @throws WriteBehindException if a batch could not be written.
+	 */
+	public synchronized void flush() throws InterruptedException {
+		while (pending > 0) {
+			wait();
+		}
+		checkFailure();
+	}
+	
+	/**
+	 * Writes all submitted batches and stops the writer threads. Errors are
+	 * only logged.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		try {
+			for (Writer writer : writers) {
+				writer.queue.put(STOP);
+			}
+			for (Writer writer : writers) {
+				writer.join();
+			}
+		} catch (InterruptedException e) {
+			log.warn("Interrupted while waiting for the write-behind threads, " + pending + " batches have not been written.");
+			Thread.currentThread().interrupt();
+			return;
+		}
+		synchronized (this) {
+			if (failure != null) {
+				log.error("Write-behind queue closed after an error, " + written + " batches have been written.", failure);
+			} else {
+				log.info("Write-behind queue closed, " + written + " batches have been written.");
+			}
+		}
+	}
+	
+	private void checkFailure() {
+		if (failure != null)
+			throw new WriteBehindException("Writing a batch of entities has failed.", failure);
+	}
+	
+	private synchronized void finished(long documentId) {
+		Integer count = pendingByDocument.get(documentId);
+		if (count == null || count <= 1) {
+			pendingByDocument.remove(documentId);
+		} else {
+			pendingByDocument.put(documentId, count - 1);
+		}
+		pending--;
+		notifyAll();
+	}
+	
+	private synchronized boolean hasFailed() {
+		return failure != null;
+	}
+	
+	private synchronized void failed(RuntimeException e) {
+		if (failure == null)
+			failure = e;
+		notifyAll();
+	}
+	
+	private synchronized void written() {
+		written++;
+	}
+	
+	/**
+	 * The entities of one batch.
+	 */
+	private static class Batch {
+		private final long documentId;
+		private final Collection<? extends PersistableEntity<? extends Serializable>> entities;
+		
+		private Batch(long documentId, Collection<? extends PersistableEntity<? extends Serializable>> entities) {
+			this.documentId = documentId;
+			this.entities = entities;
+		}
+	}
+	
+	/**
+	 * A thread writing the batches from its queue, each in a transaction of its own.
+	 */
+	private class Writer extends Thread {
+		private final BlockingQueue<Batch> queue;
+		
+		private Writer(String name, BlockingQueue<Batch> queue) {
+			super(name);
+			this.queue = queue;
+			// pending batches are written by close(), the threads must not keep the VM alive
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			while (true) {
+				Batch batch;
+				try {
+					batch = queue.take();
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (batch == STOP)
+					return;
+				
+				// batches submitted after a failed one are discarded, they
+				// might depend on the entities that could not be written.
+				if (!hasFailed()) {
+					try {
+						persistenceStore.beginTransaction();
+						persistenceStore.saveAll(batch.entities);
+						persistenceStore.commitChanges();
+						written();
+					} catch (RuntimeException e) {
+						log.error("Could not write the entities of document " + batch.documentId + ".", e);
+						try {
+							persistenceStore.rollbackChanges();
+						} catch (RuntimeException e2) {
+							log.error("Rollback failed.", e2);
+						}
+						failed(e);
+					}
+				}
+				finished(batch.documentId);
+			}
+		}
+	}
+}
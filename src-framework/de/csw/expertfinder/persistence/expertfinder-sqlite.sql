@@ -0,0 +1,167 @@
+-- Schema of the embedded (SQLite) storage backend. Executed by SchemaBootstrap when the
+-- database file does not contain the document table yet. Equivalent to
+-- installer/db/Expertfinder Create.sql, without foreign key constraints.
+-- Statements are separated by semicolons at the end of a line.
+
+CREATE TABLE document (
+  id INTEGER NOT NULL PRIMARY KEY ,
+  title VARCHAR(255) NOT NULL ,
+  redirects_to INTEGER NULL ,
+  id_latest_revision INTEGER NULL ,
+  revision_count INTEGER NOT NULL DEFAULT 0 );
+CREATE UNIQUE INDEX document_title ON document (title);
+CREATE INDEX fk_document_document1 ON document (redirects_to);
+
+CREATE TABLE author (
+  id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT ,
+  name VARCHAR(255) NOT NULL ,
+  location VARCHAR(255) NULL ,
+  isBot TINYINT NULL ,
+  isAnoymous TINYINT NULL ,
+  affiliation VARCHAR(767) NULL ,
+  realName VARCHAR(255) NULL ,
+  position VARCHAR(255) NULL );
+CREATE UNIQUE INDEX author_name ON author (name);
+
+CREATE TABLE revision (
+  id INTEGER NOT NULL PRIMARY KEY ,
+  id_document INTEGER NOT NULL ,
+  id_author INTEGER NOT NULL ,
+  timestamp DATETIME NOT NULL ,
+  count INTEGER NOT NULL );
+CREATE INDEX revision_document_id ON revision (id_document, id);
+CREATE INDEX revision_author_id ON revision (id_author, id);
+
+CREATE TABLE section (
+  id INTEGER NOT NULL PRIMARY KEY ,
+  title VARCHAR(1024) NOT NULL ,
+  level INTEGER NOT NULL ,
+  startPos INTEGER NOT NULL ,
+  endPos INTEGER NOT NULL ,
+  id_parent_section INTEGER NULL ,
+  id_revision_created INTEGER NULL ,
+  id_revision_deleted INTEGER NULL );
+CREATE INDEX section_title ON section (title);
+CREATE INDEX fk_section_section1 ON section (id_parent_section);
+CREATE INDEX fk_section_revision2 ON section (id_revision_deleted);
+CREATE INDEX section_created_deleted ON section (id_revision_created, id_revision_deleted);
+
+CREATE TABLE concept (
+  id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT ,
+  uri VARCHAR(255) NOT NULL );
+CREATE UNIQUE INDEX concept_uri ON concept (uri);
+
+CREATE TABLE word (
+  id INTEGER NOT NULL PRIMARY KEY ,
+  word VARCHAR(255) NOT NULL ,
+  wordStem VARCHAR(255) NULL ,
+  startPos INTEGER NOT NULL ,
+  endPos INTEGER NOT NULL ,
+  id_revision_created INTEGER NULL ,
+  id_revision_deleted INTEGER NULL ,
+  id_concept INTEGER NULL ,
+  id_section INTEGER NULL ,
+  isNoun TINYINT NULL );
+CREATE INDEX fk_word_revision2 ON word (id_revision_deleted);
+CREATE INDEX word_word ON word (word);
+CREATE INDEX word_wordstem ON word (wordStem);
+CREATE INDEX word_concept_created ON word (id_concept, id_revision_created);
+CREATE INDEX word_section_deleted ON word (id_section, id_revision_deleted);
+CREATE INDEX word_created_deleted ON word (id_revision_created, id_revision_deleted);
+
+CREATE TABLE word_deleted (
+  id INTEGER NOT NULL PRIMARY KEY ,
+  word VARCHAR(255) NOT NULL ,
+  wordStem VARCHAR(255) NULL ,
+  startPos INTEGER NOT NULL ,
+  endPos INTEGER NOT NULL ,
+  id_revision_created INTEGER NULL ,
+  id_revision_deleted INTEGER NULL ,
+  id_concept INTEGER NULL ,
+  id_section INTEGER NULL ,
+  isNoun TINYINT NULL );
+CREATE INDEX word_deleted_concept_created ON word_deleted (id_concept, id_revision_created);
+CREATE INDEX word_deleted_section ON word_deleted (id_section);
+CREATE INDEX word_deleted_created ON word_deleted (id_revision_created);
+CREATE INDEX word_deleted_deleted ON word_deleted (id_revision_deleted);
+
+CREATE VIEW word_all AS
+  SELECT id, word, wordStem, startPos, endPos, id_revision_created, id_revision_deleted, id_concept, id_section, isNoun FROM word
+  UNION ALL
+  SELECT id, word, wordStem, startPos, endPos, id_revision_created, id_revision_deleted, id_concept, id_section, isNoun FROM word_deleted;
+
+CREATE TABLE concept_similarity (
+  id_concept_1 INTEGER NOT NULL ,
+  id_concept_2 INTEGER NOT NULL ,
+  similarity DOUBLE NOT NULL ,
+  PRIMARY KEY (id_concept_1, id_concept_2) );
+CREATE INDEX fk_concept_similarity_concept1 ON concept_similarity (id_concept_2);
+
+CREATE TABLE section_has_concept (
+  id INTEGER NOT NULL PRIMARY KEY ,
+  id_section INTEGER NULL ,
+  id_concept INTEGER NULL ,
+  similarity DOUBLE NULL );
+CREATE INDEX fk_section_has_concept_section1 ON section_has_concept (id_section);
+CREATE INDEX section_has_concept_concept_section ON section_has_concept (id_concept, id_section);
+
+CREATE TABLE document_has_concept (
+  id_document INTEGER NOT NULL ,
+  id_concept INTEGER NOT NULL ,
+  PRIMARY KEY (id_document, id_concept) );
+CREATE INDEX fk_document_has_concept_concept1 ON document_has_concept (id_concept);
+
+CREATE TABLE link (
+  id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT ,
+  id_source_section INTEGER NULL ,
+  id_target_section INTEGER NULL ,
+  startPos INTEGER NOT NULL ,
+  endPos INTEGER NOT NULL ,
+  id_revision_created INTEGER NULL ,
+  id_revision_deleted INTEGER NULL ,
+  text VARCHAR(255) NULL );
+CREATE INDEX fk_link_section1 ON link (id_source_section);
+CREATE INDEX fk_link_section2 ON link (id_target_section);
+CREATE INDEX fk_link_revision1 ON link (id_revision_created);
+CREATE INDEX fk_link_revision2 ON link (id_revision_deleted);
+
+CREATE TABLE category (
+  id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT ,
+  name VARCHAR(255) NOT NULL );
+CREATE UNIQUE INDEX category_name ON category (name);
+
+CREATE TABLE document_has_category (
+  id_document INTEGER NOT NULL ,
+  id_category INTEGER NOT NULL ,
+  id_revision_created INTEGER NULL ,
+  id_revision_deleted INTEGER NULL ,
+  processed TINYINT NULL ,
+  PRIMARY KEY (id_document, id_category) );
+CREATE INDEX fk_document_has_category_category1 ON document_has_category (id_category);
+CREATE INDEX fk_document_has_category_revision1 ON document_has_category (id_revision_created);
+CREATE INDEX fk_document_has_category_revision2 ON document_has_category (id_revision_deleted);
+
+CREATE TABLE application_data (
+  "key" VARCHAR(128) NOT NULL PRIMARY KEY ,
+  "value" VARCHAR(255) NULL );
+
+CREATE TABLE author_has_credibility (
+  id_author INTEGER NOT NULL ,
+  id_concept INTEGER NOT NULL ,
+  credibility DOUBLE NULL ,
+  expertise DOUBLE NULL ,
+  PRIMARY KEY (id_author, id_concept) );
+CREATE INDEX fk_author_has_concept_concept1 ON author_has_credibility (id_concept);
+CREATE INDEX idx_expertise ON author_has_credibility (credibility DESC);
+
+CREATE TABLE author_contributions (
+  id_author INTEGER NOT NULL ,
+  id_concept INTEGER NOT NULL ,
+  PRIMARY KEY (id_author, id_concept) );
+CREATE INDEX fk_author_has_concept_concept2 ON author_contributions (id_concept);
+
+CREATE TABLE id_sequence (
+  sequence_name VARCHAR(255) NOT NULL PRIMARY KEY ,
+  next_val BIGINT NOT NULL );
+
+INSERT INTO application_data ("key", "value") VALUES ('SCHEMA_VERSION', '3');
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An immutable set of int values, kept as a sorted array. Needs 4 bytes per
+ * value and looks values up by binary search.
+ * 
+ * @author ralph
+ */
+public class SortedIntSet {
+	
+	/** the empty set */
+	public static final SortedIntSet EMPTY = new SortedIntSet(new int[0]);
+	
+	private final int[] values;
+	
+	private SortedIntSet(int[] values) {
+		this.values = values;
+	}
+	
+	/**
+	 * Creates a set of the given values. The array is not modified.
+	 * @param values the values, in any order, possibly with duplicates.
+	 * @return the set of the given values.
+	 */
+	public static SortedIntSet of(int[] values) {
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int size = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (size == 0 || sorted[size - 1] != sorted[i])
+				sorted[size++] = sorted[i];
+		}
+		return new SortedIntSet(size == sorted.length ? sorted : Arrays.copyOf(sorted, size));
+	}
+	
+	/**
+	 * Creates a set of the given values.
+	 * @param values the values, in any order, possibly with duplicates.
+	 * @return the set of the given values.
+	 */
+	public static SortedIntSet of(Collection<? extends Number> values) {
+		int[] array = new int[values.size()];
+		int i = 0;
+		for (Number value : values) {
+			array[i++] = value.intValue();
+		}
+		return of(array);
+	}
+	
+	/**
+	 * @param value
+	 * @return true if the set contains the given value.
+	 */
+	public boolean contains(int value) {
+		return Arrays.binarySearch(values, value) >= 0;
+	}
+	
+	/**
+	 * @return the number of values in the set.
+	 */
+	public int size() {
+		return values.length;
+	}
+	
+	/**
+	 * @return true if the set contains no values.
+	 */
+	public boolean isEmpty() {
+		return values.length == 0;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return Arrays.toString(values);
+	}
+}
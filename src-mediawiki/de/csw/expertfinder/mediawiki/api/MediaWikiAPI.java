@@ -74,6 +74,7 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import de.csw.expertfinder.config.Config;
+import de.csw.expertfinder.util.SortedIntSet;
 
 
 /**
@@ -371,7 +372,7 @@ public class MediaWikiAPI {
 	 * @return iterator iterating over all versions of the given article
 	 */
 	public MediaWikiArticleIterator getInfoForAllVersionsOfArticle(final int articleId, int startRevId) {
-		return getAllVersionsOfArticleInternal(articleId, startRevId, false);
+		return getAllVersionsOfArticleInternal(articleId, startRevId, false, SortedIntSet.EMPTY);
 	}
 
 	/**
@@ -387,12 +388,32 @@ public class MediaWikiAPI {
 	 * @return iterator iterating over all versions of the given article
 	 */
 	public MediaWikiArticleIterator getAllVersionsOfArticle(final int articleId, int startRevId) {
-		return getAllVersionsOfArticleInternal(articleId, startRevId, true);
+		return getAllVersionsOfArticleInternal(articleId, startRevId, true, SortedIntSet.EMPTY);
 	}
 
-	private MediaWikiArticleIterator getAllVersionsOfArticleInternal(final int articleId, int startRevId, boolean fetchContent) {
+	/**
+	 * Returns an iterator iterating over the versions of the article specified
+	 * by the given id that have not been processed yet, in ascending
+	 * chronological order.
+	 * 
+	 * Versions whose ids are in the given set are skipped, except if they are
+	 * followed by a version that is not in the set. These versions are
+	 * returned, since they are the base the following version is compared with.
+	 * 
+	 * Returns article revisions including their content.
+	 * 
+	 * @param articleId
+	 * @param startRevId
+	 * @param knownRevIds the ids of the revisions that have been processed already
+	 * @return iterator iterating over the versions of the given article
+	 */
+	public MediaWikiArticleIterator getAllVersionsOfArticle(final int articleId, int startRevId, SortedIntSet knownRevIds) {
+		return getAllVersionsOfArticleInternal(articleId, startRevId, true, knownRevIds);
+	}
+
+	private MediaWikiArticleIterator getAllVersionsOfArticleInternal(final int articleId, int startRevId, boolean fetchContent, SortedIntSet knownRevIds) {
 
-		final ArrayList<Integer> revIds = new ArrayList<Integer>();
+		ArrayList<Integer> revIds = new ArrayList<Integer>();
 
 		Iterator<Element> revisions = getInfoForAllRevisions(articleId, startRevId, fetchContent);
 		Element currentRevision = null;
@@ -420,6 +441,18 @@ public class MediaWikiAPI {
 			revIds.add(Integer.parseInt(revId));
 		}
 
+		if (!knownRevIds.isEmpty()) {
+			// keep the known revisions that precede an unknown one
+			ArrayList<Integer> unknownRevIds = new ArrayList<Integer>();
+			for (int i = 0; i < revIds.size(); i++) {
+				if (!knownRevIds.contains(revIds.get(i)) || i + 1 < revIds.size() && !knownRevIds.contains(revIds.get(i + 1)))
+					unknownRevIds.add(revIds.get(i));
+			}
+			if (log.isDebugEnabled())
+				log.debug("Skipping " + (revIds.size() - unknownRevIds.size()) + " known revisions of article " + articleId);
+			revIds = unknownRevIds;
+		}
+		
 		final Iterator<Integer> revIdIterator = revIds.iterator();
 		final int revisionCount = revIds.size();
 
@@ -39,13 +39,13 @@ import org.apache.uima.util.Progress;
 import org.apache.uima.util.ProgressImpl;
 
 import de.csw.expertfinder.document.Document;
-import de.csw.expertfinder.document.Revision;
 import de.csw.expertfinder.mediawiki.api.MediaWikiAPI;
 import de.csw.expertfinder.mediawiki.api.MediaWikiAPIException;
 import de.csw.expertfinder.mediawiki.api.MediaWikiArticleIterator;
 import de.csw.expertfinder.mediawiki.api.MediaWikiArticleVersion;
 import de.csw.expertfinder.mediawiki.uima.types.ArticleRevisionInfo;
 import de.csw.expertfinder.persistence.PersistenceStoreFacade;
+import de.csw.expertfinder.util.SortedIntSet;
 
 /**
  * This class implements a UIMA CollectionReader which reads collections of
@@ -112,28 +112,41 @@ public class MediaWikiArticleCollectionReader extends CollectionReader_ImplBase
 			Document document = persistentStore.getDocument((long)articleId);
 			
 			long lastPersistedRevisionId;
+			SortedIntSet knownRevisionIds;
 			
 			if (document == null) {
 				// this is the first time we see this article. Create a new Document in the persistent store.
 				lastPersistedRevisionId = 0;
+				knownRevisionIds = SortedIntSet.EMPTY;
 				document = new Document((long)articleId, articleName);
 				persistentStore.save(document);
+				persistentStore.getEntityResolver().documentCreated(articleId);
 			} else {
 				// we have seen this article before. We only need to start with the last revision.
-				Revision lastPersistedRevision = PersistenceStoreFacade.get().getLatestPersistedRevision((long)articleId);
-				lastPersistedRevisionId = lastPersistedRevision == null ? 0 : lastPersistedRevision.getId();
+				// The latest revision id is committed along with the revisions, it is the
+				// checkpoint of this article even if several revisions are committed at once
+				// (see Config.Key.PERSISTENCE_COMMIT_REVISIONS).
+				Long latestRevisionId = document.getLatestRevisionId();
+				lastPersistedRevisionId = latestRevisionId == null ? 0 : latestRevisionId;
+				log.info("Resuming article " + articleId + " at revision " + lastPersistedRevisionId);
+				// Revisions that have been persisted already (e.g. by an overlapping
+				// crawl) are not turned into CASes, except for the one preceding the
+				// first new revision, which the consumer needs for diffing.
+				knownRevisionIds = persistentStore.getRevisionIds((long)articleId);
 			}
 			
 			
-			versions = mediaWiki.getAllVersionsOfArticle(articleId, (int)lastPersistedRevisionId);
+			versions = mediaWiki.getAllVersionsOfArticle(articleId, (int)lastPersistedRevisionId, knownRevisionIds);
 			progress = new ProgressImpl(0, versions.size(), Progress.ENTITIES);
 			progressArray = new Progress[] { progress };
 			
 			persistentStore.commitChanges();
+			persistentStore.getEntityResolver().committed();
 			
 			log.info("Processing wiki article '" + articleName + "'...");
 		} catch (MediaWikiAPIException e) {
 			persistentStore.rollbackChanges();
+			persistentStore.getEntityResolver().rolledBack();
 			log.error("Error querying MediaWiki using the MediaWiki API", e);
 			throw new ResourceInitializationException(e);
 		}
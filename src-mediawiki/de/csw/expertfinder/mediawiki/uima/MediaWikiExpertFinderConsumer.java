@@ -25,6 +25,7 @@
  ******************************************************************************/
 package de.csw.expertfinder.mediawiki.uima;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -41,22 +42,26 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.apache.log4j.Logger;
 import org.apache.uima.cas.CAS;
-import org.apache.uima.cas.FSIterator;
 import org.apache.uima.cas.Type;
-import org.apache.uima.cas.text.AnnotationIndex;
 import org.apache.uima.collection.CasConsumer_ImplBase;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.StringArray;
 import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceProcessException;
+import org.apache.uima.util.ProcessTrace;
 
 import com.hp.hpl.jena.ontology.OntClass;
 
 import de.csw.expertfinder.application.RevisionStore;
+import de.csw.expertfinder.config.Config;
 import de.csw.expertfinder.diff.PositionInsensitiveDiff;
+import de.csw.expertfinder.diff.WordShifts;
 import de.csw.expertfinder.document.Author;
 import de.csw.expertfinder.document.Category;
 import de.csw.expertfinder.document.Concept;
@@ -65,18 +70,15 @@ import de.csw.expertfinder.document.DocumentCategory;
 import de.csw.expertfinder.document.PersistableEntity;
 import de.csw.expertfinder.document.Revision;
 import de.csw.expertfinder.mediawiki.uima.types.ArticleRevisionInfo;
-import de.csw.expertfinder.mediawiki.uima.types.markup.ExternalLink;
-import de.csw.expertfinder.mediawiki.uima.types.markup.InfoboxFact;
-import de.csw.expertfinder.mediawiki.uima.types.markup.InternalLink;
-import de.csw.expertfinder.mediawiki.uima.types.markup.MathFormula;
-import de.csw.expertfinder.mediawiki.uima.types.markup.Paragraph;
-import de.csw.expertfinder.mediawiki.uima.types.markup.Reference;
 import de.csw.expertfinder.mediawiki.uima.types.markup.Section;
-import de.csw.expertfinder.mediawiki.uima.types.markup.Tag;
+import de.csw.expertfinder.ontology.LabelMatcher;
 import de.csw.expertfinder.ontology.OntologyIndex;
+import de.csw.expertfinder.persistence.EntityResolver;
 import de.csw.expertfinder.persistence.PersistenceStoreFacade;
+import de.csw.expertfinder.persistence.PersistenceStoreFacade.SuspendedTransaction;
+import de.csw.expertfinder.persistence.WriteBehindException;
+import de.csw.expertfinder.persistence.WriteBehindQueue;
 import de.csw.expertfinder.uima.types.Noun;
-import de.csw.expertfinder.uima.types.OntologyConcept;
 import de.csw.expertfinder.uima.types.Sentence;
 import de.csw.expertfinder.uima.types.Word;
 
@@ -105,11 +107,64 @@ public class MediaWikiExpertFinderConsumer extends CasConsumer_ImplBase {
 			milestones[level] = (float) (0.5/(Math.pow(2, level)));
 		}
 	}
-
-
+	
+	/** the maximum number of revisions committed in one transaction */
+	private int commitRevisions;
+	
+	/** the maximum time in milliseconds a transaction is kept open, 0 if unlimited */
+	private long commitInterval;
+	
+	/** the number of threads processing revisions, see {@link Config.Key#CONSUMER_THREADS} */
+	private int threads;
+	
+	/** the maximum number of revisions waiting for each worker */
+	private int queueSize;
+	
+	/** processes all revisions if there is only one thread */
+	private Partition partition;
+	
+	/** the workers processing the revisions if there are several threads, started with the first revision */
+	private Worker[] workers;
+	
+	/** the first exception thrown by a worker that has not been passed to the CPE yet */
+	private ResourceProcessException workerFailure;
+	
+	/** the concepts found in section titles, shared by all workers */
+	private SectionTitleConceptCache sectionTitleConcepts;
+	
+	/** marks the end of the revisions for a worker */
+	private static final AnnotatedRevision END = new AnnotatedRevision();
 	
 	/**
-	 * 
+	 * Reads the number of revisions to commit together (see
+	 * {@link Config.Key#PERSISTENCE_COMMIT_REVISIONS}). Several revisions are
+	 * never committed together if the write-behind queue is used. Reads the
+	 * number of threads processing revisions (see
+	 * {@link Config.Key#CONSUMER_THREADS}).
+	 * @see org.apache.uima.collection.CasConsumer_ImplBase#initialize()
+	 */
+	@Override
+	public void initialize() throws ResourceInitializationException {
+		super.initialize();
+		commitRevisions = Math.max(1, Config.getIntAppProperty(Config.Key.PERSISTENCE_COMMIT_REVISIONS));
+		commitInterval = Config.getIntAppProperty(Config.Key.PERSISTENCE_COMMIT_INTERVAL);
+		if (commitRevisions > 1 && Config.getBooleanAppProperty(Config.Key.PERSISTENCE_WRITE_BEHIND)) {
+			log.warn(Config.Key.PERSISTENCE_COMMIT_REVISIONS + " is ignored, every revision is written in a transaction of its own by the write-behind queue.");
+			commitRevisions = 1;
+		}
+		threads = Math.max(1, Config.getIntAppProperty(Config.Key.CONSUMER_THREADS));
+		if (threads > 1 && PersistenceStoreFacade.STORAGE_SQLITE.equalsIgnoreCase(Config.getAppProperty(Config.Key.PERSISTENCE_STORAGE))) {
+			log.warn(Config.Key.CONSUMER_THREADS + " is ignored, an SQLite database is written by one thread at a time.");
+			threads = 1;
+		}
+		queueSize = Math.max(1, Config.getIntAppProperty(Config.Key.CONSUMER_QUEUE_SIZE));
+		partition = new Partition();
+		sectionTitleConcepts = new SectionTitleConceptCache(Config.getIntAppProperty(Config.Key.SECTION_TITLE_CACHE_SIZE));
+	}
+	
+	/**
+	 * Reads the revision from the CAS and processes it, either at once or, if
+	 * there are several workers, by the worker its article is hashed to.
 	 * @see org.apache.uima.collection.base_cpm.CasObjectProcessor#processCas(org.apache.uima.cas.CAS),
 	 *      {@link MediaWikiExpertFinderConsumer}
 	 */
@@ -127,272 +182,180 @@ public class MediaWikiExpertFinderConsumer extends CasConsumer_ImplBase {
 			throw new ResourceProcessException(e);
 		}
 		
-		// get the persistence store facade.
-		PersistenceStoreFacade persistenceStore = PersistenceStoreFacade.get();
+		AnnotatedRevision revision = read(jCas);
 		
-		HashMap<String, Concept> sharedConcepts = new HashMap<String, Concept>();
-			
+		if (threads == 1) {
+			partition.process(revision);
+			return;
+		}
+		
+		throwWorkerFailure();
+		if (workers == null)
+			startWorkers();
 		try {
-			
-			persistenceStore.beginTransaction();
-
-
-			// get all annotation types 
-			// note: although these are the same for all cases (since we
-			// do not deal with different subjects), they can only be
-			// retrieved through the cas object itself. Unfortunately,
-			// this has to be repeated for each cas.
-			
-			Type articleRevisionInfoType = jCas.getCasType(ArticleRevisionInfo.type);
-			Type paragraphType = jCas.getCasType(Paragraph.type);
-			Type sectionType = jCas.getCasType(Section.type);
-			Type sentenceType = jCas.getCasType(Sentence.type);
-			Type wordType = jCas.getCasType(Word.type);
-			Type nounType = jCas.getCasType(Noun.type);
-			Type ontologyConceptType = jCas.getCasType(OntologyConcept.type);
-			Type internalLinkType = jCas.getCasType(InternalLink.type);
-			Type externalLinkType = jCas.getCasType(ExternalLink.type);
-			Type referenceType = jCas.getCasType(Reference.type);
-			
-	//		Type commentType = jCas.getCasType(Comment.type);
-	//		Feature commentTypeFeature_text = commentType.getFeatureByBaseName("text");
-			
-			Type mathFormulaType = jCas.getCasType(MathFormula.type);
-			Type infoboxFactType = jCas.getCasType(InfoboxFact.type);
-			Type tagType = jCas.getCasType(Tag.type);
-			
+			// all revisions of an article are processed by the same worker, in their order
+			workers[(revision.articleId & Integer.MAX_VALUE) % threads].queue.put(revision);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ResourceProcessException(e);
+		}
+	}
 	
-			AnnotationIndex index = jCas.getAnnotationIndex();
-			FSIterator iter = index.iterator();
-			
-			
-			Revision thisRevision = null;
-			de.csw.expertfinder.document.Section currentSection = null;
-	//		de.csw.expertfinder.document.Paragraph currentParagraph = null;
-			de.csw.expertfinder.document.Sentence currentSentence = null;
-			de.csw.expertfinder.document.Word currentWord = null;
-			
-			int articleId = -1;
-			Document document = null;
-			
-			HashMap<Section, de.csw.expertfinder.document.Section> sections = new HashMap<Section, de.csw.expertfinder.document.Section>();
-			
-			boolean needsSave = true;
-			
-			// stores sections that could not be matched to concepts, so that we can later add concepts from the parent section with a
-			// similarity weighting.
-			int deepestSectionLevel = 0; 
-			
-			ArrayList<PersistableEntity<? extends Serializable>> objectsToSave = new ArrayList<PersistableEntity<? extends Serializable>>();
-			
+	/**
+	 * Reads the annotations of one revision of an article from the given CAS
+	 * and builds the document structure of the revision out of them. The
+	 * database is not accessed.
+	 * @param jCas
+	 * @return the revision's annotations and its document structure.
+	 */
+	private AnnotatedRevision read(JCas jCas) {
+		AnnotatedRevision revision = new AnnotatedRevision();
+		
+		// get all annotation types 
+		// note: although these are the same for all cases (since we
+		// do not deal with different subjects), they can only be
+		// retrieved through the cas object itself. Unfortunately,
+		// this has to be repeated for each cas.
+		
+		Type articleRevisionInfoType = jCas.getCasType(ArticleRevisionInfo.type);
+		Type sectionType = jCas.getCasType(Section.type);
+		Type sentenceType = jCas.getCasType(Sentence.type);
+		Type wordType = jCas.getCasType(Word.type);
+		Type nounType = jCas.getCasType(Noun.type);
+		
+		// Only the annotation types handled below are read (from their own
+		// indexes), paragraphs, links, references and other markup are skipped
+		// altogether. Annotations with the same span come in the order of the
+		// types given here (e.g. a sentence before its only word).
+		Iterator<Annotation> iter = new MergedAnnotationIterator(jCas, 
+				ArticleRevisionInfo.type, Section.type, Sentence.type, Word.type);
+		
+		
+		de.csw.expertfinder.document.Section currentSection = null;
+//		de.csw.expertfinder.document.Paragraph currentParagraph = null;
+		de.csw.expertfinder.document.Sentence currentSentence = null;
+		de.csw.expertfinder.document.Word currentWord = null;
+		
+		HashMap<Section, de.csw.expertfinder.document.Section> sections = new HashMap<Section, de.csw.expertfinder.document.Section>();
+		
+		// stores sections that could not be matched to concepts, so that we can later add concepts from the parent section with a
+		// similarity weighting.
+		int deepestSectionLevel = 0; 
+		
 //			int sectionCount = 0;
-						
-			while(iter.hasNext()) {
-				// But the good news is: The annotations come in ordered by their
-				// positions. If there are smaller intervals contained by a larger
-				// one (e.g. words inside a sentence), the larger one comes first.
-				// So we don't need a structure like an interval tree or such to
-				// figure out which interval is contained by which.
-				// Nevertheless, this is not true for the whole revision and the first section.
-				// This is why we have to keep hold of the first section.
-				Annotation annot = (Annotation)iter.next();
-				Type type = annot.getType();
+					
+		while(iter.hasNext()) {
+			// But the good news is: The annotations come in ordered by their
+			// positions. If there are smaller intervals contained by a larger
+			// one (e.g. words inside a sentence), the larger one comes first.
+			// So we don't need a structure like an interval tree or such to
+			// figure out which interval is contained by which.
+			// Nevertheless, this is not true for the whole revision and the first section.
+			// This is why we have to keep hold of the first section.
+			Annotation annot = iter.next();
+			Type type = annot.getType();
+			
+			// UIMA type denominators are not constants, so we cannot do switch but have to use if...else.
+			if (type == articleRevisionInfoType) {
+				ArticleRevisionInfo revInfo = (ArticleRevisionInfo)annot;
+				// this is a document wide annotation
+				if (log.isDebugEnabled()) {
+					log.debug("Article: " + revInfo.getArticleId());
+					log.debug("Revision: " + revInfo.getRevisionId());
+					log.debug("Author: " + revInfo.getAuthorName());
+				}
 				
-				// UIMA type denominators are not constants, so we cannot do switch but have to use if...else.
-				if (type == articleRevisionInfoType) {
-					ArticleRevisionInfo revInfo = (ArticleRevisionInfo)annot;
-					// this is a document wide annotation
-					if (log.isDebugEnabled()) {
-						log.debug("Article: " + revInfo.getArticleId());
-						log.debug("Revision: " + revInfo.getRevisionId());
-						log.debug("Author: " + revInfo.getAuthorName());
-					}
-	
-					articleId = revInfo.getArticleId();
-					String authorName = revInfo.getAuthorName();
-	
-					Author author = persistenceStore.getAuthor(authorName);
-					if (author == null) {
-						author = new Author(authorName);
-						if (needsSave) objectsToSave.add(author);
-					}
+				revision.articleId = revInfo.getArticleId();
+				revision.revisionId = revInfo.getRevisionId();
+				revision.authorName = revInfo.getAuthorName();
+				revision.title = revInfo.getTitle();
+				revision.timestamp = revInfo.getTimestamp();
+				StringArray categoryNameArray = revInfo.getCategories();
+				if (categoryNameArray != null)
+					revision.categoryNames = categoryNameArray.toArray();
+				
+			} else {
+				// all other annotations comprise a part of the document
+				int begin = annot.getBegin();
+				int end = annot.getEnd();
+				
+//				We don't look at paragraphs, we look at sections instead.
+//				if (type == paragraphType) {
+//					Paragraph paragraph = (Paragraph)annot;
+//					log.debug("Paragraph: " + begin + "-" + end);
+//					if (currentSection != null && currentParagraph != null)
+//						currentSection.addParagraph(currentParagraph);
+//					currentParagraph = new de.csw.expertfinder.document.Paragraph();
+//				} else
+				if (type == sectionType) {
+//						sectionCount ++;
+					Section section = (Section)annot;
+					String sectionTitle = section.getTitle();
 					
-					document = persistenceStore.getDocument((long)articleId);
-					long revisionCount;
-					if (document == null) {
-						document = new Document((long)articleId, revInfo.getTitle());
-						revisionCount = 0;
-					} else {
-						revisionCount = persistenceStore.getRevisionCount(document);
-					}
+					if (log.isDebugEnabled())
+						log.debug("Section: " + sectionTitle + " (" + begin + "-" + end + ")");
 					
-					int revisionId = revInfo.getRevisionId();
+					int level = section.getLevel();
 					
-					thisRevision = persistenceStore.getRevision((long)revisionId);
-					if (thisRevision == null) {
-						// create new Revision
-						thisRevision = new Revision((long)revisionId, document, author, new Date(revInfo.getTimestamp()));
-						
-						thisRevision.setCount(revisionCount + 1);
-						
-						// add or delete MediaWiki categories
-						StringArray categoryNameArray = revInfo.getCategories();
-						
-						if (categoryNameArray != null) {
-							int length = categoryNameArray.size();
-							Set<DocumentCategory> previouslyAddedCategories = document.getCategories();
-							HashMap<String, DocumentCategory> previouslyAddedCategoriesByNames = new HashMap<String, DocumentCategory>();
-							HashSet<String> alreadyHandledCategories = new HashSet<String>(); // sometimes, category links are duplicated in the same revision. We only handle each one once.
-							for (DocumentCategory documentCategory : previouslyAddedCategories) {
-								previouslyAddedCategoriesByNames.put(documentCategory.getCategory().getName().toLowerCase(), documentCategory);
-							}
-							for (int i = 0; i < length; i++) {
-								String categoryName = categoryNameArray.get(i).toLowerCase();
-								if (alreadyHandledCategories.contains(categoryName))
-									continue;
-								
-								alreadyHandledCategories.add(categoryName);
-								DocumentCategory documentCategory = previouslyAddedCategoriesByNames.get(categoryName);
-								
-								// remove item so that we can later find out which categories have been
-								// removed in this revision
-								previouslyAddedCategoriesByNames.remove(categoryName);
-								
-								if (documentCategory == null) {
-									// this category has not been added to the document yet
-									// look if it is already known in the system
-									Category category = persistenceStore.getCategory(categoryName);
-									if (category == null) {
-										// the category is unknown in the system
-										category = new Category(categoryName);
-										objectsToSave.add(category);
-									}
-									documentCategory = new DocumentCategory(document, category);
-									documentCategory.setRevisionCreated(thisRevision);
-									objectsToSave.add(documentCategory);
-									document.addCategory(documentCategory);
-								} else {
-									// it is possible that this category has been added to this
-									// document but has been deleted after. Thus we have to
-									// "reactivate" it.
-									if (documentCategory.getRevisionDeleted() != null) {
-										documentCategory.setRevisionDeleted(null);
-										objectsToSave.add(documentCategory);
-									}
-								}
-							}
-							
-							// those categories that are left have been removed in this revision.
-							Collection<DocumentCategory> removedCategories = previouslyAddedCategoriesByNames.values();
-							for (DocumentCategory removedCategory : removedCategories) {
-								if (removedCategory.getRevisionDeleted() == null) {
-									removedCategory.setRevisionDeleted(thisRevision);
-								}
-							}
-						}
-					} else {
-						// we have already seen this revision.
-						needsSave = false;
-					}
-					
-				} else {
-					// all other annotations comprise a part of the document
-					int begin = annot.getBegin();
-					int end = annot.getEnd();
+					if (level > deepestSectionLevel)
+						deepestSectionLevel = level;
 					
-	//				We don't look at paragraphs, we look at sections instead.
-	//				if (type == paragraphType) {
-	//					Paragraph paragraph = (Paragraph)annot;
-	//					log.debug("Paragraph: " + begin + "-" + end);
-	//					if (currentSection != null && currentParagraph != null)
-	//						currentSection.addParagraph(currentParagraph);
-	//					currentParagraph = new de.csw.expertfinder.document.Paragraph();
-	//				} else
-					if (type == sectionType) {
-//						sectionCount ++;
-						Section section = (Section)annot;
-						String sectionTitle = section.getTitle();
-						
-						if (log.isDebugEnabled())
-							log.debug("Section: " + sectionTitle + " (" + begin + "-" + end + ")");
-						
-						int level = section.getLevel();
-						
-						if (level > deepestSectionLevel)
-							deepestSectionLevel = level;
-						
-						currentSection = new de.csw.expertfinder.document.Section(section.getTitle(), level, section.getBegin(), section.getEnd());
+					currentSection = new de.csw.expertfinder.document.Section(section.getTitle(), level, section.getBegin(), section.getEnd());
 //						if (thisRevision != null)
 //							thisRevision.addSection(currentSection);
-						sections.put(section, currentSection);
-						de.csw.expertfinder.document.Section parentSection = sections.get(section.getParent());
-						if (parentSection != null)
-							currentSection.setParentSection(parentSection);
-					} else if (type == nounType) {
-						Noun noun = (Noun)annot;
-						if (log.isDebugEnabled())
-							log.debug("noun: " + begin + "-" + end + ": " + noun.getWordStem());
-						if (currentSentence != null) {
-							de.csw.expertfinder.document.Noun nounEntity = new de.csw.expertfinder.document.Noun(noun.getLemma(), noun.getWordStem(), begin, end);
-							currentSentence.addWord(nounEntity);
-							nounEntity.setSection(currentSection);
-							
-							// check for associated concepts
-							StringArray conceptAnnotations = noun.getConceptURIs();
-							if (conceptAnnotations != null) {
-								int size = conceptAnnotations.size();
-								for (int i=0; i<size; i++) {
-									String conceptUri = conceptAnnotations.get(i);
-									Concept concept = persistenceStore.getConcept(conceptUri);
-									if (concept == null) {
-										concept = new Concept(conceptUri);
-										if (needsSave) persistenceStore.save(concept);
-									}
-								}
+					sections.put(section, currentSection);
+					de.csw.expertfinder.document.Section parentSection = sections.get(section.getParent());
+					if (parentSection != null)
+						currentSection.setParentSection(parentSection);
+				} else if (type == nounType) {
+					Noun noun = (Noun)annot;
+					if (log.isDebugEnabled())
+						log.debug("noun: " + begin + "-" + end + ": " + noun.getWordStem());
+					if (currentSentence != null) {
+						de.csw.expertfinder.document.Noun nounEntity = new de.csw.expertfinder.document.Noun(noun.getLemma(), noun.getWordStem(), begin, end);
+						currentSentence.addWord(nounEntity);
+						nounEntity.setSection(currentSection);
+						
+						// check for associated concepts
+						StringArray conceptAnnotations = noun.getConceptURIs();
+						if (conceptAnnotations != null) {
+							int size = conceptAnnotations.size();
+							for (int i=0; i<size; i++) {
+								String conceptUri = conceptAnnotations.get(i);
+								revision.conceptUris.add(conceptUri);
 							}
 						}
-					} else if (type == wordType) {
-						Word word = (Word)annot;
-						if (log.isDebugEnabled())
-							log.debug("word: " + begin + "-" + end + ": " + word.getWordStem());
-						if (currentSentence != null) {
-							de.csw.expertfinder.document.Word wordEntity = new de.csw.expertfinder.document.Word(word.getLemma(), word.getWordStem(), begin, end);
-							currentSentence.addWord(wordEntity);
-							wordEntity.setSection(currentSection);
-						}
-					} else if (type == sentenceType) {
-						Sentence sentence = (Sentence)annot;
-						if (log.isDebugEnabled())
-							log.debug("sentence: " + begin + "-" + end);
-						
-						// we don't use paragraphs (yet), we add the sentence to the section directly
-						if (currentSection != null && currentSentence != null && !currentSentence.getWords().isEmpty())
-							currentSection.addSentence(currentSentence);
-						de.csw.expertfinder.document.Sentence newSentence = new de.csw.expertfinder.document.Sentence();
-						newSentence.setContextBefore(currentSentence);
-						currentSentence = newSentence;
-	//				} else if (type == ontologyConceptType) {
-	//					OntologyConcept concept = (OntologyConcept)annot;
-	//					if (log.isDebugEnabled())
-	//						log.debug("concept: " + begin + "-" + end + ": ");
-	//					int len = concept.getConceptURIs().size();
-	//					for (int i=0; i<len; i++) {
-	//						log.debug("  " + concept.getConceptURIs(i));
-	//					}
-					} else if (type == internalLinkType) {
-						// TODO if time, implement link diff
-						InternalLink link = (InternalLink)annot;
-						if (log.isDebugEnabled())
-							log.debug("link: " + begin + "-" + end + " - " + link.getCoveredText());
-					} else if (type == externalLinkType) {
-						ExternalLink linkAnnotation = (ExternalLink)annot;
-						if (log.isDebugEnabled())
-							log.debug("link: " + begin + "-" + end + " - " + linkAnnotation.getCoveredText());
-					} else if (type == referenceType) {
-						Reference reference = (Reference)annot;
-						if (log.isDebugEnabled())
-							log.debug("reference: " + begin + "-" + end);
 					}
+				} else if (type == wordType) {
+					Word word = (Word)annot;
+					if (log.isDebugEnabled())
+						log.debug("word: " + begin + "-" + end + ": " + word.getWordStem());
+					if (currentSentence != null) {
+						de.csw.expertfinder.document.Word wordEntity = new de.csw.expertfinder.document.Word(word.getLemma(), word.getWordStem(), begin, end);
+						currentSentence.addWord(wordEntity);
+						wordEntity.setSection(currentSection);
+					}
+				} else if (type == sentenceType) {
+					Sentence sentence = (Sentence)annot;
+					if (log.isDebugEnabled())
+						log.debug("sentence: " + begin + "-" + end);
+					
+					// we don't use paragraphs (yet), we add the sentence to the section directly
+					if (currentSection != null && currentSentence != null && !currentSentence.getWords().isEmpty())
+						currentSection.addSentence(currentSentence);
+					de.csw.expertfinder.document.Sentence newSentence = new de.csw.expertfinder.document.Sentence();
+					newSentence.setContextBefore(currentSentence);
+					currentSentence = newSentence;
+//				} else if (type == ontologyConceptType) {
+//					OntologyConcept concept = (OntologyConcept)annot;
+//					if (log.isDebugEnabled())
+//						log.debug("concept: " + begin + "-" + end + ": ");
+//					int len = concept.getConceptURIs().size();
+//					for (int i=0; i<len; i++) {
+//						log.debug("  " + concept.getConceptURIs(i));
+//					}
+				}
+				// TODO if time, implement link diff (links are not iterated yet, see above)
 //					else if (type == mathFormulaType) {
 //						MathFormula formula = (MathFormula)annot;
 //						log.debug("formula: " + begin + "-" + end);
@@ -403,194 +366,635 @@ public class MediaWikiExpertFinderConsumer extends CasConsumer_ImplBase {
 //						Tag tag = (Tag)annot;
 //						log.debug("tag: " + begin + "-" + end + ": " + tag.getText());
 //					}
-				}
 			}
+		}
+		
+		revision.sections = new ArrayList<de.csw.expertfinder.document.Section>(sections.values());
+		return revision;
+	}
+	
+	/**
+	 * Processes the revisions of a subset of the articles in one thread at a
+	 * time, in their order. The revisions processed since the last commit are
+	 * kept in an open transaction, which is suspended between the revisions.
+	 */
+	private class Partition {
+		
+		/** the transaction containing the revisions processed but not committed yet */
+		private SuspendedTransaction openTransaction;
+		private int openTransactionRevisions;
+		private long openTransactionStart;
+		
+		/** the articles with revisions in the current transaction */
+		private final HashSet<Integer> openTransactionArticles = new HashSet<Integer>();
+		
+		/** articles whose remaining revisions are skipped because uncommitted revisions have been lost */
+		private final HashSet<Integer> failedArticles = new HashSet<Integer>();
+		
+		/**
+		 * Builds the application specific document structure for the given
+		 * revision and persists it if necessary.
+		 * @param annotated the revision read from the CAS.
+		 * @throws ResourceProcessException
+		 */
+		void process(AnnotatedRevision annotated) throws ResourceProcessException {
 			
-			if (log.isDebugEnabled())
-				log.debug("End of loop. Revision: " + thisRevision.getId());
+			// get the persistence store facade.
+			PersistenceStoreFacade persistenceStore = PersistenceStoreFacade.get();
+			WriteBehindQueue writeBehindQueue = persistenceStore.getWriteBehindQueue();
 			
-			// add sections to revision
-			Collection<de.csw.expertfinder.document.Section> sectionCollection = sections.values();
+			// resolves concepts, articles and revisions across all revisions analyzed
+			EntityResolver resolver = persistenceStore.getEntityResolver();
 			
-			for (de.csw.expertfinder.document.Section section : sectionCollection) {
-				thisRevision.addSection(section);
+			int articleId = annotated.articleId;
+			if (failedArticles.contains(articleId)) {
+				log.warn("Skipping revision " + annotated.revisionId + " of article " + articleId + " after a failed transaction.");
+				return;
 			}
 			
-			// save this revision
-			if (needsSave) objectsToSave.add(thisRevision);
+			try {
+				
+				if (openTransaction != null) {
+					// continue with the revisions that have not been committed yet
+					persistenceStore.resumeTransaction(openTransaction);
+					openTransaction = null;
+				} else {
+					persistenceStore.beginTransaction();
+					openTransactionStart = System.currentTimeMillis();
+				}
+				
+				Revision thisRevision = null;
+				Document document = null;
+				
+				boolean needsSave = true;
+				
+				ArrayList<PersistableEntity<? extends Serializable>> objectsToSave = new ArrayList<PersistableEntity<? extends Serializable>>();
+				
+				openTransactionArticles.add(articleId);
+				
+				// The previous revision of this article might still be waiting
+				// to be written. Its entities are changed below and the revision
+				// count is read from the database.
+				if (writeBehindQueue != null)
+					writeBehindQueue.awaitDocument(articleId);
+				
+				String authorName = annotated.authorName;
+
+				// Authors and categories are shared by the articles of all
+				// workers, each of them is created by one worker only
+				Author author = threads > 1 ? persistenceStore.getOrCreateSharedAuthor(authorName) : persistenceStore.getAuthor(authorName);
+				if (author == null) {
+					author = new Author(authorName);
+					if (needsSave) objectsToSave.add(author);
+				}
+				
+				document = resolver.getDocument(articleId);
+				long revisionCount;
+				if (document == null) {
+					document = new Document((long)articleId, annotated.title);
+					revisionCount = 0;
+				} else {
+					revisionCount = document.getRevisionCount();
+				}
+				
+				int revisionId = annotated.revisionId;
+				
+				if (!resolver.isNewRevision(articleId, revisionId))
+					thisRevision = persistenceStore.getRevision((long)revisionId);
+				if (thisRevision == null) {
+					// create new Revision
+					thisRevision = new Revision((long)revisionId, document, author, new Date(annotated.timestamp));
+					
+					thisRevision.setCount(revisionCount + 1);
+					resolver.revisionStored(articleId, revisionId);
+					
+					// add or delete MediaWiki categories
+					String[] categoryNameArray = annotated.categoryNames;
+					
+					if (categoryNameArray != null) {
+						int length = categoryNameArray.length;
+						Set<DocumentCategory> previouslyAddedCategories = document.getCategories();
+						HashMap<String, DocumentCategory> previouslyAddedCategoriesByNames = new HashMap<String, DocumentCategory>();
+						HashSet<String> alreadyHandledCategories = new HashSet<String>(); // sometimes, category links are duplicated in the same revision. We only handle each one once.
+						for (DocumentCategory documentCategory : previouslyAddedCategories) {
+							previouslyAddedCategoriesByNames.put(documentCategory.getCategory().getName().toLowerCase(), documentCategory);
+						}
+						for (int i = 0; i < length; i++) {
+							String categoryName = categoryNameArray[i].toLowerCase();
+							if (alreadyHandledCategories.contains(categoryName))
+								continue;
+							
+							alreadyHandledCategories.add(categoryName);
+							DocumentCategory documentCategory = previouslyAddedCategoriesByNames.get(categoryName);
+							
+							// remove item so that we can later find out which categories have been
+							// removed in this revision
+							previouslyAddedCategoriesByNames.remove(categoryName);
+							
+							if (documentCategory == null) {
+								// this category has not been added to the document yet
+								// look if it is already known in the system
+								Category category = threads > 1 ? persistenceStore.getOrCreateSharedCategory(categoryName) : persistenceStore.getCategory(categoryName);
+								if (category == null) {
+									// the category is unknown in the system
+									category = new Category(categoryName);
+									objectsToSave.add(category);
+								}
+								documentCategory = new DocumentCategory(document, category);
+								documentCategory.setRevisionCreated(thisRevision);
+								objectsToSave.add(documentCategory);
+								document.addCategory(documentCategory);
+							} else {
+								// it is possible that this category has been added to this
+								// document but has been deleted after. Thus we have to
+								// "reactivate" it.
+								if (documentCategory.getRevisionDeleted() != null) {
+									documentCategory.setRevisionDeleted(null);
+									objectsToSave.add(documentCategory);
+								}
+							}
+						}
+						
+						// those categories that are left have been removed in this revision.
+						Collection<DocumentCategory> removedCategories = previouslyAddedCategoriesByNames.values();
+						for (DocumentCategory removedCategory : removedCategories) {
+							if (removedCategory.getRevisionDeleted() == null) {
+								removedCategory.setRevisionDeleted(thisRevision);
+								objectsToSave.add(removedCategory);
+							}
+						}
+					}
+				} else {
+					// we have already seen this revision.
+					needsSave = false;
+				}
+				
+				// make sure the concepts of all nouns exist
+				if (needsSave) {
+					for (String conceptUri : annotated.conceptUris) {
+						getOrCreateConcept(resolver, conceptUri);
+					}
+				}
+				
+				if (log.isDebugEnabled())
+					log.debug("End of loop. Revision: " + thisRevision.getId());
 			
-			// Get the previous revision for comparison
-			RevisionStore revisionStore = RevisionStore.get(articleId);
-			Revision previousRevision = revisionStore.getLastRevision();
+				// add sections to revision
+				for (de.csw.expertfinder.document.Section section : annotated.sections) {
+					thisRevision.addSection(section);
+				}
+			
+				// save this revision
+				if (needsSave) objectsToSave.add(thisRevision);
+			
+				// Get the previous revision for comparison
+				RevisionStore revisionStore = RevisionStore.get(articleId);
+				Revision previousRevision = revisionStore.getLastRevision();
 
-			List<de.csw.expertfinder.document.Word> addedWords;
+				List<de.csw.expertfinder.document.Word> addedWords;
 			
-			if (previousRevision != null) {
+				if (previousRevision != null) {
 				
-				// handle sections
-				HashMap<String, de.csw.expertfinder.document.Section> newSections = makeSectionByTitleMap(thisRevision.getSections()); 
-				HashMap<String, de.csw.expertfinder.document.Section> oldSections = makeSectionByTitleMap(previousRevision.getSections()); 
+					// handle sections
+					HashMap<String, de.csw.expertfinder.document.Section> newSections = makeSectionByTitleMap(thisRevision.getSections()); 
+					HashMap<String, de.csw.expertfinder.document.Section> oldSections = makeSectionByTitleMap(previousRevision.getSections()); 
 
-				// unchanged sections = intersection(oldSections, newSections)  
-				// deleted sections = oldSections \ newSections  
-				// added sections = newSections \ oldSections
+					// unchanged sections = intersection(oldSections, newSections)  
+					// deleted sections = oldSections \ newSections  
+					// added sections = newSections \ oldSections
 				
-				// we could use the removeAll and retainAll operations of Set to calculate the intersection and differences,
-				// but these modify the sets and we would have to create them again. Thus, it is more efficient to do at least
-				// two operations at one time.
+					// we could use the removeAll and retainAll operations of Set to calculate the intersection and differences,
+					// but these modify the sets and we would have to create them again. Thus, it is more efficient to do at least
+					// two operations at one time.
 								
-				// we have to insert new sections in the order of their parent-child hierarchy (parents before children)
-				// because otherwise we could get constraint violations in the persistence layer.
-				TreeSet<Entry<String, de.csw.expertfinder.document.Section>> sortedOldEntrySet = new TreeSet<Entry<String,de.csw.expertfinder.document.Section>>(sectionsEntryByLevelComparator);
-				sortedOldEntrySet.addAll(oldSections.entrySet());
+					// we have to insert new sections in the order of their parent-child hierarchy (parents before children)
+					// because otherwise we could get constraint violations in the persistence layer.
+					TreeSet<Entry<String, de.csw.expertfinder.document.Section>> sortedOldEntrySet = new TreeSet<Entry<String,de.csw.expertfinder.document.Section>>(sectionsEntryByLevelComparator);
+					sortedOldEntrySet.addAll(oldSections.entrySet());
 
-//				HashMap<de.csw.expertfinder.document.Section, de.csw.expertfinder.document.Section> oldToNew = new HashMap<de.csw.expertfinder.document.Section, de.csw.expertfinder.document.Section>();
+	//				HashMap<de.csw.expertfinder.document.Section, de.csw.expertfinder.document.Section> oldToNew = new HashMap<de.csw.expertfinder.document.Section, de.csw.expertfinder.document.Section>();
 				
-				for (Entry<String, de.csw.expertfinder.document.Section> oldEntry : sortedOldEntrySet) {
-					de.csw.expertfinder.document.Section oldSection = oldEntry.getValue();
-					de.csw.expertfinder.document.Section newSection = newSections.get(oldEntry.getKey());
-					if (newSection == null) {
-						// this section has been deleted in this revision
-						// we don't delete it from the database but mark it as deleted
-						oldSection.setRevisionDeleted(thisRevision);
-						// since we have to update this object, we need to set the correct
-						// parent section
-//						de.csw.expertfinder.document.Section parentSection = oldSection.getParentSection();
-//						if (parentSection == null)
-//							oldSection.setParentSection(null);
-//						else
-//							oldSection.setParentSection(oldToNew.get(parentSection));
+					for (Entry<String, de.csw.expertfinder.document.Section> oldEntry : sortedOldEntrySet) {
+						de.csw.expertfinder.document.Section oldSection = oldEntry.getValue();
+						de.csw.expertfinder.document.Section newSection = newSections.get(oldEntry.getKey());
+						if (newSection == null) {
+							// this section has been deleted in this revision
+							// we don't delete it from the database but mark it as deleted
+							oldSection.setRevisionDeleted(thisRevision);
+							// since we have to update this object, we need to set the correct
+							// parent section
+	//						de.csw.expertfinder.document.Section parentSection = oldSection.getParentSection();
+	//						if (parentSection == null)
+	//							oldSection.setParentSection(null);
+	//						else
+	//							oldSection.setParentSection(oldToNew.get(parentSection));
 
-						if (needsSave) objectsToSave.add(oldSection);
-					} else {
-						// the old section still exists in the new revision, but probably
-						// its position within the text has changed. Thus we overwrite the
-						// existing section with the new one
-						newSection.setId(oldSection.getId());
-						newSection.setRevisionCreated(oldSection.getRevisionCreated());
-						newSection.setConcepts(oldSection.getConcepts());
-//						oldToNew.put(oldSection, newSection);
-						if (needsSave) objectsToSave.add(newSection);
+							if (needsSave) objectsToSave.add(oldSection);
+						} else {
+							// the old section still exists in the new revision, but probably
+							// its position within the text has changed. Thus we overwrite the
+							// existing section with the new one
+							newSection.setId(oldSection.getId());
+							newSection.setRevisionCreated(oldSection.getRevisionCreated());
+							newSection.setConcepts(oldSection.getConcepts());
+	//						oldToNew.put(oldSection, newSection);
+							if (needsSave) objectsToSave.add(newSection);
+						}
 					}
-				}
 				
 				
-				// the other way round to determine sections that have been added in this revision
-				TreeSet<Entry<String, de.csw.expertfinder.document.Section>> sortedNewEntrySet = new TreeSet<Entry<String,de.csw.expertfinder.document.Section>>(sectionsEntryByLevelComparator);
-				sortedNewEntrySet.addAll(newSections.entrySet());
+					// the other way round to determine sections that have been added in this revision
+					TreeSet<Entry<String, de.csw.expertfinder.document.Section>> sortedNewEntrySet = new TreeSet<Entry<String,de.csw.expertfinder.document.Section>>(sectionsEntryByLevelComparator);
+					sortedNewEntrySet.addAll(newSections.entrySet());
 
-				for (Entry<String, de.csw.expertfinder.document.Section> newEntry : sortedNewEntrySet) {
-					de.csw.expertfinder.document.Section newSection = newEntry.getValue();
-					de.csw.expertfinder.document.Section oldSection = oldSections.get(newEntry.getKey());
-					if (oldSection == null) {
-						// this section has been added in this revision
-						newSection.setRevisionCreated(thisRevision);
+					for (Entry<String, de.csw.expertfinder.document.Section> newEntry : sortedNewEntrySet) {
+						de.csw.expertfinder.document.Section newSection = newEntry.getValue();
+						de.csw.expertfinder.document.Section oldSection = oldSections.get(newEntry.getKey());
+						if (oldSection == null) {
+							// this section has been added in this revision
+							newSection.setRevisionCreated(thisRevision);
 						
-						// extract concepts
-						extractConcepts(newSection, sharedConcepts);
+							// extract concepts
+							extractConcepts(newSection, resolver);
 
-						if (needsSave) objectsToSave.add(newSection);
+							if (needsSave) objectsToSave.add(newSection);
+						}
 					}
-				}
 				
-				PositionInsensitiveDiff diff = new PositionInsensitiveDiff(previousRevision, thisRevision);
+					PositionInsensitiveDiff diff = new PositionInsensitiveDiff(previousRevision, thisRevision);
 	
-				List<de.csw.expertfinder.document.Word> deletedWords = diff.getDeletedWords();
-				Collections.sort(deletedWords, de.csw.expertfinder.document.Word.POSITION);
-				if (log.isDebugEnabled()) {
-					log.debug("\nDeleted words:");
-					for (de.csw.expertfinder.document.Word word : deletedWords) {
-						log.debug(word.getWord() + ": " + word.getStartPos() + "-" + word.getEndPos());
+					List<de.csw.expertfinder.document.Word> deletedWords = diff.getDeletedWords();
+					Collections.sort(deletedWords, de.csw.expertfinder.document.Word.POSITION);
+					if (log.isDebugEnabled()) {
+						log.debug("\nDeleted words:");
+						for (de.csw.expertfinder.document.Word word : deletedWords) {
+							log.debug(word.getWord() + ": " + word.getStartPos() + "-" + word.getEndPos());
+						}
 					}
-				}
 				
-				// update positions in unchanged words
+					// update positions in unchanged words
 				
-				Set<Entry<de.csw.expertfinder.document.Word, de.csw.expertfinder.document.Word>> unchangedWords = diff.getUnchangedWords().entrySet();
-				for (Entry<de.csw.expertfinder.document.Word, de.csw.expertfinder.document.Word> entry : unchangedWords) {
-					de.csw.expertfinder.document.Word oldWord = entry.getKey();
-					de.csw.expertfinder.document.Word newWord = entry.getValue();
-					newWord.setId(oldWord.getId());
-					newWord.setRevisionCreated(oldWord.getRevisionCreated());
-					newWord.setConcept(oldWord.getConcept());
-					if (needsSave) objectsToSave.add(newWord);
-//					if (newWord instanceof de.csw.expertfinder.document.Noun) {
-//						de.csw.expertfinder.document.Noun mergedWord = (de.csw.expertfinder.document.Noun)persistenceStore.merge(newWord);
-//						log.info(mergedWord);
-//					} else {
-//						de.csw.expertfinder.document.Word mergedWord = (de.csw.expertfinder.document.Word)persistenceStore.merge(newWord);
-//						log.info(mergedWord);
-//					}
-				}
+					Map<de.csw.expertfinder.document.Word, de.csw.expertfinder.document.Word> unchangedWordMap = diff.getUnchangedWords();
+					Set<Entry<de.csw.expertfinder.document.Word, de.csw.expertfinder.document.Word>> unchangedWords = unchangedWordMap.entrySet();
+					for (Entry<de.csw.expertfinder.document.Word, de.csw.expertfinder.document.Word> entry : unchangedWords) {
+						de.csw.expertfinder.document.Word oldWord = entry.getKey();
+						de.csw.expertfinder.document.Word newWord = entry.getValue();
+						newWord.setId(oldWord.getId());
+						newWord.setRevisionCreated(oldWord.getRevisionCreated());
+						newWord.setConcept(oldWord.getConcept());
+	//					if (newWord instanceof de.csw.expertfinder.document.Noun) {
+	//						de.csw.expertfinder.document.Noun mergedWord = (de.csw.expertfinder.document.Noun)persistenceStore.merge(newWord);
+	//						log.info(mergedWord);
+	//					} else {
+	//						de.csw.expertfinder.document.Word mergedWord = (de.csw.expertfinder.document.Word)persistenceStore.merge(newWord);
+	//						log.info(mergedWord);
+	//					}
+					}
+					
+					// words that have not moved are not written at all, words that have
+					// only moved within their section are shifted together with their section
+					if (needsSave) objectsToSave.addAll(WordShifts.track(previousRevision.getWords(), unchangedWordMap));
 				
-				// mark deleted words as deleted
-				for (de.csw.expertfinder.document.Word deletedWord : deletedWords) {
-					deletedWord.setRevisionDeleted(thisRevision);
-					if (needsSave) objectsToSave.add(deletedWord);
-				}
+					// mark deleted words as deleted
+					for (de.csw.expertfinder.document.Word deletedWord : deletedWords) {
+						deletedWord.setRevisionDeleted(thisRevision);
+						if (needsSave) objectsToSave.add(deletedWord);
+					}
 				
-				addedWords = diff.getAddedWords();
-//				Collections.sort(addedWords, de.csw.expertfinder.document.Word.POSITION);
-				if (log.isDebugEnabled()) {
-					log.debug("\nAdded words:");
-					for (de.csw.expertfinder.document.Word word : addedWords) {
-						log.debug(word.getWord() + ": " + word.getStartPos() + "-" + word.getEndPos());
+					addedWords = diff.getAddedWords();
+	//				Collections.sort(addedWords, de.csw.expertfinder.document.Word.POSITION);
+					if (log.isDebugEnabled()) {
+						log.debug("\nAdded words:");
+						for (de.csw.expertfinder.document.Word word : addedWords) {
+							log.debug(word.getWord() + ": " + word.getStartPos() + "-" + word.getEndPos());
+						}
 					}
-				}
 	
-			} else {
-				// This is the very first revision
+				} else {
+					// This is the very first revision
 				
-				// all sections are new
-				List<de.csw.expertfinder.document.Section> newSections = thisRevision.getSections();
-				TreeSet<de.csw.expertfinder.document.Section> newSectionsSorted = new TreeSet<de.csw.expertfinder.document.Section>(sectionsByLevelComparator);
-				newSectionsSorted.addAll(newSections);
-				for (de.csw.expertfinder.document.Section section : newSectionsSorted) {
-					section.setRevisionCreated(thisRevision);
+					// all sections are new
+					List<de.csw.expertfinder.document.Section> newSections = thisRevision.getSections();
+					TreeSet<de.csw.expertfinder.document.Section> newSectionsSorted = new TreeSet<de.csw.expertfinder.document.Section>(sectionsByLevelComparator);
+					newSectionsSorted.addAll(newSections);
+					for (de.csw.expertfinder.document.Section section : newSectionsSorted) {
+						section.setRevisionCreated(thisRevision);
 					
-					// extract concepts
-					extractConcepts(section, sharedConcepts);
+						// extract concepts
+						extractConcepts(section, resolver);
 
-					if (needsSave) objectsToSave.add(section);
-				}
+						if (needsSave) objectsToSave.add(section);
+					}
 				
-				// all words are new
-				addedWords = thisRevision.getWords();
-			}
+					// all words are new
+					addedWords = thisRevision.getWords();
+				}
 			
-			// find concepts in added words and add them
-			extractConcepts(addedWords, sharedConcepts);
+				// find concepts in added words and add them
+				extractConcepts(addedWords, resolver);
 						
-			// save added words
-			for (de.csw.expertfinder.document.Word word : addedWords) {
-				word.setRevisionCreated(thisRevision);
-				if (needsSave) objectsToSave.add(word);
-			}
+				// save added words
+				for (de.csw.expertfinder.document.Word word : addedWords) {
+					word.setRevisionCreated(thisRevision);
+					if (needsSave) objectsToSave.add(word);
+				}
 			
-			if (needsSave) {
-				for (PersistableEntity<? extends Serializable> objectToSave : objectsToSave) {
-					persistenceStore.save(objectToSave);
+				if (writeBehindQueue == null) {
+					if (needsSave) {
+						persistenceStore.saveAll(objectsToSave);
+					}
+					openTransactionRevisions++;
+					if (openTransactionRevisions >= commitRevisions || 
+							commitInterval > 0 && System.currentTimeMillis() - openTransactionStart >= commitInterval) {
+						persistenceStore.commitChanges();
+						committed(persistenceStore);
+					} else {
+						openTransaction = persistenceStore.suspendTransaction();
+					}
+				} else {
+					writeBehind(writeBehindQueue, articleId, needsSave ? objectsToSave : Collections.<PersistableEntity<? extends Serializable>>emptyList());
+					committed(persistenceStore);
 				}
-			}
-
-			persistenceStore.commitChanges();
 
-			revisionStore.setLastRevision(thisRevision);
+				revisionStore.setLastRevision(thisRevision);
 			
-			// free unneeded references to avoid clogging up memory
-			if (previousRevision != null)
-				previousRevision.setSections(null);
+				// free unneeded references to avoid clogging up memory
+				if (previousRevision != null)
+					previousRevision.setSections(null);
 
-		} catch (Exception e) {
-			e.printStackTrace();
+			} catch (WriteBehindException e) {
+				// an earlier revision could not be written, all following revisions would be incomplete.
+				rollback(persistenceStore);
+				throw new ResourceProcessException(e);
+			} catch (InterruptedException e) {
+				rollback(persistenceStore);
+				Thread.currentThread().interrupt();
+				throw new ResourceProcessException(e);
+			} catch (Exception e) {
+				e.printStackTrace();
+				rollback(persistenceStore);
+				log.error(e);
+	//		} finally {
+	//			persistenceStore.beginTransaction();
+	//			persistenceStore.clearCache();
+	//			persistenceStore.commitChanges();
+			}
+
+		}
+		
+		/**
+		 * Must be called after the current transaction, containing all revisions
+		 * processed since the last commit, has been committed.
+		 */
+		void committed(PersistenceStoreFacade persistenceStore) {
+			persistenceStore.getEntityResolver().committed();
+			openTransactionRevisions = 0;
+			openTransactionArticles.clear();
+		}
+	
+		/**
+		 * Rolls back the current transaction. If it contained revisions processed
+		 * before the current one, these are lost. Their articles are skipped for
+		 * the rest of this run, such that the next run resumes after the last
+		 * committed revision without a gap in the revision history.
+		 */
+		void rollback(PersistenceStoreFacade persistenceStore) {
 			persistenceStore.rollbackChanges();
-			log.error(e);
-//		} finally {
-//			persistenceStore.beginTransaction();
-//			persistenceStore.clearCache();
-//			persistenceStore.commitChanges();
+			persistenceStore.getEntityResolver().rolledBack();
+			if (openTransactionRevisions > 0) {
+				log.error(openTransactionRevisions + " uncommitted revisions of the articles " + openTransactionArticles + " have been rolled back. " +
+						"These articles are skipped until the next run.");
+				failedArticles.addAll(openTransactionArticles);
+				// the last revisions of these articles have been changed by the transaction
+				for (Integer articleId : openTransactionArticles) {
+					RevisionStore.remove(articleId);
+				}
+			}
+			openTransactionRevisions = 0;
+			openTransactionArticles.clear();
 		}
-
+		
+		/**
+		 * Commits the revisions that have not been committed yet.
+		 * @throws ResourceProcessException
+		 */
+		void complete() throws ResourceProcessException {
+			if (openTransaction == null)
+				return;
+			// this method may be called by another thread than process
+			PersistenceStoreFacade persistenceStore = PersistenceStoreFacade.get();
+			persistenceStore.resumeTransaction(openTransaction);
+			openTransaction = null;
+			try {
+				persistenceStore.commitChanges();
+				committed(persistenceStore);
+			} catch (RuntimeException e) {
+				rollback(persistenceStore);
+				throw new ResourceProcessException(e);
+			}
+		}
+		
+		/**
+		 * Rolls back the revisions that have not been committed yet.
+		 */
+		void abort() {
+			if (openTransaction == null)
+				return;
+			PersistenceStoreFacade persistenceStore = PersistenceStoreFacade.get();
+			persistenceStore.resumeTransaction(openTransaction);
+			openTransaction = null;
+			rollback(persistenceStore);
+		}
+	}
+	
+	/**
+	 * Commits the current transaction with the new authors and categories only,
+	 * so that they can be found by the following revisions at once, and hands
+	 * all other entities of the revision to the write-behind queue. Concepts
+	 * have already been saved in the current transaction.
+	 * 
+	 * The session is cleared before, the entities are written by another
+	 * session. Thus all changes must be contained in the given entities.
+	 * 
+	 * @param writeBehindQueue
+	 * @param articleId
+	 * @param objectsToSave
+	 * @throws InterruptedException if interrupted while waiting for the queue.
+	 */
+	private void writeBehind(WriteBehindQueue writeBehindQueue, int articleId, List<PersistableEntity<? extends Serializable>> objectsToSave) throws InterruptedException {
+		PersistenceStoreFacade persistenceStore = PersistenceStoreFacade.get();
+		ArrayList<PersistableEntity<? extends Serializable>> revisionEntities = new ArrayList<PersistableEntity<? extends Serializable>>();
+		
+		persistenceStore.clearCache();
+		for (PersistableEntity<? extends Serializable> entity : objectsToSave) {
+			if (entity instanceof Author || entity instanceof Category) {
+				persistenceStore.save(entity);
+			} else {
+				revisionEntities.add(entity);
+			}
+		}
+		persistenceStore.commitChanges();
+		
+		if (!revisionEntities.isEmpty())
+			writeBehindQueue.submit(articleId, revisionEntities);
+	}
+	
+	/**
+	 * Commits the revisions that have not been committed yet and waits until
+	 * all revisions handed to the write-behind queue have been written. If
+	 * there are several workers, waits until they have processed all
+	 * revisions and committed them, and stops them.
+	 * @see org.apache.uima.collection.CasConsumer_ImplBase#collectionProcessComplete(org.apache.uima.util.ProcessTrace)
+	 */
+	@Override
+	public void collectionProcessComplete(ProcessTrace trace) throws ResourceProcessException, IOException {
+		super.collectionProcessComplete(trace);
+		if (workers != null) {
+			stopWorkers();
+		} else {
+			partition.complete();
+		}
+		WriteBehindQueue writeBehindQueue = PersistenceStoreFacade.get().getWriteBehindQueue();
+		if (writeBehindQueue != null) {
+			try {
+				writeBehindQueue.flush();
+			} catch (WriteBehindException e) {
+				throw new ResourceProcessException(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ResourceProcessException(e);
+			}
+		}
+		throwWorkerFailure();
+	}
+	
+	/**
+	 * Stops the workers without waiting for the revisions still queued.
+	 * @see org.apache.uima.resource.Resource_ImplBase#destroy()
+	 */
+	@Override
+	public void destroy() {
+		if (workers != null) {
+			for (Worker worker : workers) {
+				worker.interrupt();
+			}
+			workers = null;
+		}
+		super.destroy();
+	}
+	
+	private void startWorkers() {
+		workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(i);
+			workers[i].start();
+		}
+		log.info("Started " + threads + " workers processing the revisions.");
+	}
+	
+	/**
+	 * Waits until all workers have processed their queued revisions and
+	 * committed them, and stops the workers.
+	 * @throws ResourceProcessException if interrupted while waiting.
+	 */
+	private void stopWorkers() throws ResourceProcessException {
+		try {
+			for (Worker worker : workers) {
+				worker.queue.put(END);
+			}
+			for (Worker worker : workers) {
+				worker.join();
+			}
+		} catch (InterruptedException e) {
+			for (Worker worker : workers) {
+				worker.interrupt();
+			}
+			Thread.currentThread().interrupt();
+			throw new ResourceProcessException(e);
+		} finally {
+			workers = null;
+		}
+	}
+	
+	private synchronized void workerFailed(ResourceProcessException e) {
+		log.error("Processing a revision failed.", e);
+		if (workerFailure == null)
+			workerFailure = e;
+	}
+	
+	/**
+	 * Passes the first failure of a worker to the caller.
+	 * @throws ResourceProcessException
+	 */
+	private synchronized void throwWorkerFailure() throws ResourceProcessException {
+		ResourceProcessException failure = workerFailure;
+		if (failure != null) {
+			workerFailure = null;
+			throw failure;
+		}
+	}
+	
+	/**
+	 * A thread processing the revisions of the articles hashed to it in the
+	 * order they have been read. Each worker uses its own hibernate session,
+	 * bound to its thread.
+	 */
+	private class Worker extends Thread {
+		
+		private final BlockingQueue<AnnotatedRevision> queue = new ArrayBlockingQueue<AnnotatedRevision>(queueSize);
+		private final Partition partition = new Partition();
+		
+		Worker(int number) {
+			super("ExpertFinderConsumer-" + number);
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			try {
+				for (AnnotatedRevision revision = queue.take(); revision != END; revision = queue.take()) {
+					try {
+						partition.process(revision);
+					} catch (ResourceProcessException e) {
+						workerFailed(e);
+					} catch (RuntimeException e) {
+						// keep on taking revisions, the CPE would wait for this queue forever
+						workerFailed(new ResourceProcessException(e));
+					}
+				}
+				partition.complete();
+			} catch (InterruptedException e) {
+				log.warn(getName() + " has been interrupted, " + queue.size() + " queued revisions are not processed.");
+				partition.abort();
+			} catch (ResourceProcessException e) {
+				workerFailed(e);
+			}
+		}
+	}
+	
+	/**
+	 * The annotations of one revision read from the CAS and the document
+	 * structure built out of them.
+	 */
+	private static class AnnotatedRevision {
+		int articleId = -1;
+		int revisionId;
+		String authorName;
+		String title;
+		long timestamp;
+		String[] categoryNames;
+		List<de.csw.expertfinder.document.Section> sections;
+		/** the concepts of all nouns */
+		List<String> conceptUris = new ArrayList<String>();
+	}
+	
+	/**
+	 * Returns the concept with the given URI, creating it if necessary. If
+	 * there are several workers, new concepts are committed at once, see
+	 * {@link EntityResolver#getOrCreateSharedConcept(String)}.
+	 */
+	private Concept getOrCreateConcept(EntityResolver resolver, String uri) {
+		return threads > 1 ? resolver.getOrCreateSharedConcept(uri) : resolver.getOrCreateConcept(uri);
 	}
 	
 	/**
@@ -694,46 +1098,66 @@ public class MediaWikiExpertFinderConsumer extends CasConsumer_ImplBase {
 	 * sections are subsequently tried until a concept can be matched or the top section is reached. Concepts from parent sections are weighted
 	 * less than concepts from the original section (using a milestone similarity measure). 
 	 * @param section
-	 * @param sharedConcepts
+	 * @param resolver
 	 */
-	private void extractConcepts(de.csw.expertfinder.document.Section section, HashMap<String, Concept> sharedConcepts) {
-		PersistenceStoreFacade persistenceStore = PersistenceStoreFacade.get();
-		List<OntClass> sectionConcepts = extractConcepts(section.getTitle());
-		int level = section.getLevel();
-		double sim = 1d;
-		de.csw.expertfinder.document.Section tmpSection = section;
-		
-		// if no concept could be found, try to get concepts from the parent section
-		while (sectionConcepts.isEmpty()) {
-			tmpSection = tmpSection.getParentSection();
-			if (tmpSection == null)
-				break;
-			sectionConcepts = extractConcepts(tmpSection.getTitle());
+	private void extractConcepts(de.csw.expertfinder.document.Section section, EntityResolver resolver) {
+		int generation = OntologyIndex.get().getGeneration();
+		String key = SectionTitleConceptCache.getKey(section);
+		SectionTitleConceptCache.Match match = sectionTitleConcepts.get(key, generation);
+		if (match == null) {
+			match = matchSectionTitles(section);
+			sectionTitleConcepts.put(key, generation, match);
 		}
 		
-		if (tmpSection == null)
+		if (match.ancestor < 0)
 			// no concept for any parent section
 			return;
 		
+		de.csw.expertfinder.document.Section tmpSection = section;
+		for (int i = 0; i < match.ancestor; i++) {
+			tmpSection = tmpSection.getParentSection();
+		}
+		
+		int level = section.getLevel();
+		double sim = 1d;
 		int otherLevel = tmpSection.getLevel();
 		if (otherLevel != level) {
 			sim = 1 - milestones[otherLevel] + milestones[level];
 		}
 			
-		for (OntClass ontClass : sectionConcepts) {
-			String conceptURI = ontClass.getURI();
-			Concept concept = persistenceStore.getConcept(conceptURI);
-			if (concept == null) {
-				concept = sharedConcepts.get(conceptURI);
-				if (concept == null) {
-					concept = new Concept(conceptURI);
-					sharedConcepts.put(conceptURI, concept);
-					persistenceStore.save(concept);
-				}
-			}
+		for (String conceptUri : match.conceptUris) {
+			Concept concept = getOrCreateConcept(resolver, conceptUri);
 			section.addConcept(concept, sim);
 		}
 	}
+	
+	/**
+	 * Matches the title of the given section against the ontology. If no
+	 * concept can be found, the titles of its parent sections are tried until
+	 * concepts are found or the top section is reached.
+	 * @param section
+	 * @return the concepts found and the section they have been found in.
+	 */
+	private SectionTitleConceptCache.Match matchSectionTitles(de.csw.expertfinder.document.Section section) {
+		List<OntClass> sectionConcepts = extractConcepts(section.getTitle());
+		int ancestor = 0;
+		de.csw.expertfinder.document.Section tmpSection = section;
+		
+		// if no concept could be found, try to get concepts from the parent section
+		while (sectionConcepts.isEmpty()) {
+			tmpSection = tmpSection.getParentSection();
+			if (tmpSection == null)
+				return SectionTitleConceptCache.Match.NONE;
+			sectionConcepts = extractConcepts(tmpSection.getTitle());
+			ancestor++;
+		}
+		
+		String[] conceptUris = new String[sectionConcepts.size()];
+		for (int i = 0; i < conceptUris.length; i++) {
+			conceptUris[i] = sectionConcepts.get(i).getURI();
+		}
+		return new SectionTitleConceptCache.Match(conceptUris, ancestor);
+	}
 
 	/**
 	 * Tries to find matching concepts for each of the words in the given word
@@ -741,43 +1165,48 @@ public class MediaWikiExpertFinderConsumer extends CasConsumer_ImplBase {
 	 * 
 	 * @param words
 	 *            list of words
-	 * @param sharedConcepts
-	 *            the list of concept enties shared throughout the lifecycle of
-	 *            this annotation process, such that not persisted concepts are
+	 * @param resolver
+	 *            the entity resolver, such that not persisted concepts are
 	 *            only created once, even if found several times.
 	 */
-	private void extractConcepts(List<de.csw.expertfinder.document.Word> words, HashMap<String, Concept> sharedConcepts) {
-		OntologyIndex oi = OntologyIndex.get();
-		int maxTermSize = oi.getMaximumCompoundTermSize();
+	private void extractConcepts(List<de.csw.expertfinder.document.Word> words, EntityResolver resolver) {
+		LabelMatcher matcher = OntologyIndex.get().getLabelMatcher();
+		int maxTermSize = matcher.getMaximumLength();
 		
-		List<OntClass> result = new ArrayList<OntClass>();
-		
-		LinkedList<de.csw.expertfinder.document.Word> queue = new LinkedList<de.csw.expertfinder.document.Word>();
+		// ring buffers of the words starting at the current position and their token ids
+		de.csw.expertfinder.document.Word[] queue = new de.csw.expertfinder.document.Word[maxTermSize];
+		int[] tokens = new int[maxTermSize];
+		int head = 0;
+		int count = 0;
 		
 		Iterator<de.csw.expertfinder.document.Word> wordIter = words.iterator();
-		// prefill queue
-		for(int i=0; i<maxTermSize && wordIter.hasNext(); i++) {
-			queue.add(wordIter.next());
-		}
-		
-		while (wordIter.hasNext()) {
-			de.csw.expertfinder.document.Word word = wordIter.next();
-			
-			// entail word in queue
-			queue.add(word);
-			// and remove head
-			queue.remove();
+		while (count > 0 || wordIter.hasNext()) {
+			// fill the queue
+			while (count < maxTermSize && wordIter.hasNext()) {
+				de.csw.expertfinder.document.Word word = wordIter.next();
+				int tail = (head + count) % maxTermSize;
+				queue[tail] = word;
+				tokens[tail] = matcher.getTokenId(word.getWordStem());
+				count++;
+			}
 			
-			checkAndAddResult(oi, queue, sharedConcepts);
+			int match = matcher.match(tokens, head, count);
+			if (match != LabelMatcher.NO_MATCH) {
+				// Add concept, if it already exists, if not create it first.
+				Concept concept = getOrCreateConcept(resolver, matcher.getOntClass(match).getURI());
+				
+				// add concept to all words that it spans
+				int length = matcher.getLength(match);
+				for (int i = 0; i < length; i++) {
+					queue[(head + i) % maxTermSize].setConcept(concept);
+				}
+			}
 			
+			// remove head
+			queue[head] = null;
+			head = (head + 1) % maxTermSize;
+			count--;
 		}
-
-		// handle the rest of the queue
-		while(queue.size() > 1) {
-			queue.remove();
-			checkAndAddResult(oi, queue, sharedConcepts);
-		}
-		
 	}
 
 	/**
@@ -842,58 +1271,4 @@ public class MediaWikiExpertFinderConsumer extends CasConsumer_ImplBase {
 			result.add(ontClass);
 		}
 	}
-
-	/**
-	 * Gets matching OntClasses from the {@link OntologyIndex} for the word
-	 * sequence in the given queue and adds them to the result list.
-	 * 
-	 * @param oi
-	 *            the OntologyIndex
-	 * @param queue
-	 *            a queue containing a sequence of words
-	 * @param sharedConcepts
-	 *            a map of concepts that were newly created during the current
-	 *            call of the annotation consuming method.
-	 */
-	private void checkAndAddResult(OntologyIndex oi, LinkedList<de.csw.expertfinder.document.Word> queue, HashMap<String, Concept> sharedConcepts) {
-		ArrayList<String> wordsAsStrings = new ArrayList<String>(queue.size());
-		for (de.csw.expertfinder.document.Word word : queue) {
-			wordsAsStrings.add(word.getWordStem());
-		}
-		Map<OntClass, Integer> matchingOntClasses = oi.getClassesMatchingTerms(wordsAsStrings);
-		
-		if (matchingOntClasses.isEmpty())
-			return;
-		
-		// Get best match (there may be more than one)
-		Set<OntClass> keySet = matchingOntClasses.keySet();
-		OntClass bestOntClass = null;
-		int longestLength = -1;
-		for (OntClass ontClass : keySet) {
-			int length = matchingOntClasses.get(ontClass);
-			if (length > longestLength) {
-				bestOntClass = ontClass;
-				longestLength = length;
-			}
-		}
-		
-		// Add concept, if it already exists, if not create it first.
-		String conceptURI = bestOntClass.getURI();
-		PersistenceStoreFacade persistenceStore = PersistenceStoreFacade.get();
-		Concept concept = persistenceStore.getConcept(conceptURI);
-		if (concept == null) {
-			concept = sharedConcepts.get(conceptURI);
-			if (concept == null) {
-				concept = new Concept(conceptURI);
-				sharedConcepts.put(conceptURI, concept);
-				persistenceStore.save(concept);
-			}
-		}
-		
-		// add concept to all words that it spans
-		for(int i=0; i<=longestLength; i++) {
-			queue.get(i).setConcept(concept);
-		}
-
-	}
 }
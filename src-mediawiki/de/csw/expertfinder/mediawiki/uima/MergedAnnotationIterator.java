@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.mediawiki.uima;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+
+/**
+ * Iterates over the annotations of a few types (including their subtypes) in
+ * one pass, without visiting annotations of any other type. The annotations
+ * are read from the type-specific annotation indexes and merged by position:
+ * by begin (ascending), then by end (descending), such that enclosing
+ * annotations come before the annotations they contain. Annotations of
+ * different types with the same span come in the order in which their types
+ * have been given.
+ * 
+ * @author ralph
+ */
+public class MergedAnnotationIterator implements Iterator<Annotation> {
+	
+	private final FSIterator[] iterators;
+	
+	/** the next annotation of each type, null if there are no more annotations of that type */
+	private final Annotation[] heads;
+	
+	/**
+	 * Creates a new iterator.
+	 * @param jCas the CAS.
+	 * @param types the JCas type ids (e.g. <code>Sentence.type</code>) of the
+	 *        annotations to iterate over, outermost type first.
+	 */
+	public MergedAnnotationIterator(JCas jCas, int... types) {
+		iterators = new FSIterator[types.length];
+		heads = new Annotation[types.length];
+		for (int i = 0; i < types.length; i++) {
+			iterators[i] = jCas.getAnnotationIndex(types[i]).iterator();
+			advance(i);
+		}
+	}
+	
+	private void advance(int i) {
+		heads[i] = iterators[i].hasNext() ? (Annotation)iterators[i].next() : null;
+	}
+	
+	public boolean hasNext() {
+		for (Annotation head : heads) {
+			if (head != null)
+				return true;
+		}
+		return false;
+	}
+	
+	public Annotation next() {
+		// only a handful of types, a linear scan is cheaper than a heap
+		int next = -1;
+		for (int i = 0; i < heads.length; i++) {
+			Annotation head = heads[i];
+			if (head == null)
+				continue;
+			if (next == -1) {
+				next = i;
+				continue;
+			}
+			Annotation best = heads[next];
+			if (head.getBegin() < best.getBegin() || head.getBegin() == best.getBegin() && head.getEnd() > best.getEnd()) {
+				next = i;
+			}
+		}
+		if (next == -1)
+			throw new NoSuchElementException();
+		
+		Annotation result = heads[next];
+		advance(next);
+		return result;
+	}
+	
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.mediawiki.uima;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.csw.expertfinder.document.Section;
+import de.csw.expertfinder.ontology.OntologyIndex;
+
+/**
+ * Caches the concepts found in the titles of sections, see
+ * {@link MediaWikiExpertFinderConsumer}. The same titles ("Installation",
+ * "Usage", ...) appear in most revisions of an article and in many articles.
+ * 
+ * A section without concepts in its title gets the concepts of its nearest
+ * ancestor with concepts in its title. Thus, the key of a section is made of
+ * its title and the titles of all its ancestors, and the value is the concepts
+ * found and the ancestor they have been found in.
+ * 
+ * The least recently used entries are evicted if the cache is full. All
+ * entries are discarded when the ontology index changes (see
+ * {@link OntologyIndex#getGeneration()}). The cache can be used by several
+ * threads.
+ * 
+ * @author ralph
+ */
+class SectionTitleConceptCache {
+	
+	/** the concepts found for a section */
+	static final class Match {
+		
+		/** no concepts in the titles of the section and its ancestors */
+		static final Match NONE = new Match(new String[0], -1);
+		
+		/** the URIs of the concepts */
+		final String[] conceptUris;
+		
+		/** the number of levels above the section of the section the concepts have been found in, 0 for the section itself */
+		final int ancestor;
+		
+		Match(String[] conceptUris, int ancestor) {
+			this.conceptUris = conceptUris;
+			this.ancestor = ancestor;
+		}
+	}
+	
+	private final int maxSize;
+	
+	private final LinkedHashMap<String, Match> matches;
+	
+	/** the generation of the ontology index the cached matches have been found in */
+	private int generation = -1;
+	
+	/**
+	 * Creates an empty cache.
+	 * @param maxSize the maximum number of sections (title paths) to keep.
+	 */
+	SectionTitleConceptCache(int maxSize) {
+		this.maxSize = maxSize;
+		matches = new LinkedHashMap<String, Match>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Match> eldest) {
+				return size() > SectionTitleConceptCache.this.maxSize;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the key of the given section, made of the titles of the section
+	 * and its ancestors. Whitespace in titles is normalized, since words are
+	 * separated at whitespace anyway.
+	 * @param section
+	 * @return the key of the section.
+	 */
+	static String getKey(Section section) {
+		StringBuilder key = new StringBuilder();
+		for (Section s = section; s != null; s = s.getParentSection()) {
+			if (s != section)
+				key.append('\n');
+			appendNormalized(key, s.getTitle());
+		}
+		return key.toString();
+	}
+	
+	private static void appendNormalized(StringBuilder key, String title) {
+		boolean space = false;
+		int length = key.length();
+		for (int i = 0; i < title.length(); i++) {
+			char c = title.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = true;
+			} else {
+				if (space && key.length() > length)
+					key.append(' ');
+				space = false;
+				key.append(c);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the cached match of the section with the given key.
+	 * @param key see {@link #getKey(Section)}.
+	 * @param generation the current generation of the ontology index.
+	 * @return the match or null if it is not cached.
+	 */
+	synchronized Match get(String key, int generation) {
+		if (generation != this.generation) {
+			matches.clear();
+			this.generation = generation;
+			return null;
+		}
+		return matches.get(key);
+	}
+	
+	/**
+	 * Caches the match of the section with the given key.
+	 * @param key see {@link #getKey(Section)}.
+	 * @param generation the generation of the ontology index the match has been found in.
+	 * @param match
+	 */
+	synchronized void put(String key, int generation, Match match) {
+		if (generation == this.generation && maxSize > 0)
+			matches.put(key, match);
+	}
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.test.diff;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import de.csw.expertfinder.diff.DiffingSentences;
+import de.csw.expertfinder.diff.sentencealignment.BestMatchingSentence;
+import de.csw.expertfinder.diff.sentencealignment.BestMatchingSentences;
+import de.csw.expertfinder.diff.sentencealignment.SentenceAlignmentAlgorithm;
+import de.csw.expertfinder.diff.sentencealignment.invertedindex.InvertedIndexSentenceAligner;
+import de.csw.expertfinder.diff.sentencealignment.jaccard.JaccardSentenceAligner;
+import de.csw.expertfinder.diff.sentencealignment.minhash.MinHashSentenceAligner;
+import de.csw.expertfinder.diff.sentencealignment.nounandanchor.NounAndAnchorSentenceAligner;
+import de.csw.expertfinder.document.Sentence;
+import de.csw.expertfinder.document.Word;
+import de.csw.expertfinder.test.util.StopWatch;
+
+/**
+ * Tests the sentence aligners against the aligners comparing all pairs of
+ * sentences, on a rewrite of the test article (src-test/Wiki.txt). Run
+ * {@link #main(String[])} for a comparison of the alignment times.
+ * 
+ * @author ralph
+ */
+public class TestSentenceAlignment {
+	
+	/** the distance below which two sentences are considered the same, see PositionInsensitiveDiff */
+	private static final double DISTANCE_THRESHOLD = 0.5d;
+	
+	private DiffingSentences diffingSentences;
+	
+	@BeforeClass
+	public void setUp() throws Exception {
+		diffingSentences = rewrite(readSentences(), new Random(4711));
+	}
+	
+	@Test
+	public void testInvertedIndex() {
+		NounAndAnchorSentenceAligner nounAndAnchor = new NounAndAnchorSentenceAligner();
+		assertSameAlignment(nounAndAnchor, new InvertedIndexSentenceAligner(nounAndAnchor));
+		JaccardSentenceAligner jaccard = new JaccardSentenceAligner();
+		assertSameAlignment(jaccard, new InvertedIndexSentenceAligner(jaccard));
+	}
+	
+	/**
+	 * Checks that most sentences aligned by {@link JaccardSentenceAligner}
+	 * are aligned the same way by the {@link MinHashSentenceAligner}, with the
+	 * default signature size and bands.
+	 */
+	@Test
+	public void testMinHashRecall() {
+		List<String> expectedPairs = getAlignedPairs(new JaccardSentenceAligner().getBestMatchingSentences(diffingSentences), null);
+		MinHashSentenceAligner minHash = new MinHashSentenceAligner(64, 32, false);
+		HashSet<String> actualPairs = new HashSet<String>(getAlignedPairs(minHash.getBestMatchingSentences(diffingSentences), null));
+		
+		int found = 0;
+		for (String pair : expectedPairs) {
+			if (actualPairs.contains(pair))
+				found++;
+		}
+		double recall = (double)found / expectedPairs.size();
+		assert !expectedPairs.isEmpty();
+		assert recall >= .9 : recall;
+	}
+	
+	private void assertSameAlignment(SentenceAlignmentAlgorithm expected, SentenceAlignmentAlgorithm actual) {
+		List<String> expectedPairs = getAlignedPairs(expected.getBestMatchingSentences(diffingSentences), null);
+		HashSet<Sentence> unmatched = new HashSet<Sentence>();
+		List<String> actualPairs = getAlignedPairs(actual.getBestMatchingSentences(diffingSentences), unmatched);
+		
+		assert !expectedPairs.isEmpty();
+		assert expectedPairs.equals(actualPairs) : actualPairs;
+		// all other sentences are unmatched
+		assert unmatched.size() + 2 * actualPairs.size() == diffingSentences.getDeletedSentences().size() + diffingSentences.getNewSentences().size();
+	}
+	
+	/**
+	 * Returns the pairs of sentences that are considered the same (but
+	 * modified) sentence, in the order they have been taken.
+	 * @param unmatched receives the other sentences, if not null
+	 */
+	private static List<String> getAlignedPairs(BestMatchingSentences alignment, Set<Sentence> unmatched) {
+		ArrayList<String> result = new ArrayList<String>();
+		for (BestMatchingSentence pair : alignment) {
+			if (pair.getDistance() < DISTANCE_THRESHOLD) {
+				result.add(pair.getOldSentence() + " -> " + pair.getNewSentence());
+			} else if (unmatched != null) {
+				// the sentences are completely different
+				unmatched.add(pair.getOldSentence());
+				unmatched.add(pair.getNewSentence());
+			}
+		}
+		if (unmatched != null) {
+			unmatched.addAll(alignment.oldRest());
+			unmatched.addAll(alignment.newRest());
+		}
+		return result;
+	}
+	
+	/**
+	 * Splits the test article into sentences of words. Stop words are
+	 * skipped, like in the analysis pipeline.
+	 */
+	static List<Sentence> readSentences() throws Exception {
+		String text = FileUtils.readFileToString(new File("src-test/Wiki.txt"), "UTF-8");
+		HashSet<String> stopwords = new HashSet<String>();
+		for (Object line : FileUtils.readLines(new File("resources/wordlists/stopWords_en"), "UTF-8")) {
+			stopwords.add(((String)line).trim().toLowerCase());
+		}
+		ArrayList<Sentence> result = new ArrayList<Sentence>();
+		int pos = 0;
+		for (String sentenceText : text.split("[.!?]\\s+")) {
+			Sentence sentence = new Sentence();
+			for (String word : sentenceText.split("\\W+")) {
+				word = word.toLowerCase();
+				if (word.length() == 0 || stopwords.contains(word))
+					continue;
+				sentence.addWord(new Word(word, null, pos, pos + word.length()));
+				pos += word.length() + 1;
+			}
+			if (!sentence.getWords().isEmpty())
+				result.add(sentence);
+		}
+		return result;
+	}
+	
+	/**
+	 * Simulates a heavy rewrite: a third of the sentences is deleted, a third
+	 * is modified by replacing, removing or inserting a few words, and as many
+	 * new sentences are added, made of words of random sentences.
+	 */
+	static DiffingSentences rewrite(List<Sentence> sentences, Random random) {
+		DiffingSentences result = new DiffingSentences();
+		int pos = 0;
+		for (Sentence sentence : sentences) {
+			switch (random.nextInt(3)) {
+			case 0:
+				result.addDeletedSentence(sentence);
+				break;
+			case 1:
+				result.addDeletedSentence(sentence);
+				List<Word> words = new ArrayList<Word>(sentence.getWords());
+				int changes = 1 + random.nextInt(Math.max(1, words.size() / 5));
+				for (int i = 0; i < changes; i++) {
+					int index = random.nextInt(words.size());
+					int change = random.nextInt(3);
+					if (change == 0 || words.size() == 1)
+						words.set(index, new Word("changed" + i, null, 0, 0));
+					else if (change == 1)
+						words.remove(index);
+					else
+						words.add(index, new Word("inserted" + i, null, 0, 0));
+				}
+				result.addNewSentence(makeSentence(words, pos));
+				pos += 1000;
+				break;
+			default:
+				// unchanged
+			}
+		}
+		int added = sentences.size() / 3;
+		for (int i = 0; i < added; i++) {
+			List<Word> words = new ArrayList<Word>();
+			int length = 3 + random.nextInt(15);
+			for (int j = 0; j < length; j++) {
+				List<Word> source = sentences.get(random.nextInt(sentences.size())).getWords();
+				words.add(source.get(random.nextInt(source.size())));
+			}
+			result.addNewSentence(makeSentence(words, pos));
+			pos += 1000;
+		}
+		return result;
+	}
+	
+	private static Sentence makeSentence(List<Word> words, int pos) {
+		Sentence sentence = new Sentence();
+		for (Word word : words) {
+			sentence.addWord(new Word(word.getWord(), null, pos, pos + word.getWord().length()));
+			pos += word.getWord().length() + 1;
+		}
+		return sentence;
+	}
+	
+	/**
+	 * Compares the time needed for aligning the sentences of a rewrite of the
+	 * test article (src-test/Wiki.txt) by comparing all pairs, by comparing
+	 * the pairs found in the inverted index and by MinHash signatures.
+	 * @param args the number of iterations (default: 200).
+	 */
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		TestSentenceAlignment test = new TestSentenceAlignment();
+		test.setUp();
+		DiffingSentences diffingSentences = test.diffingSentences;
+		System.out.println(diffingSentences.getDeletedSentences().size() + " deleted, " + diffingSentences.getNewSentences().size() + " new sentences");
+		
+		NounAndAnchorSentenceAligner allPairs = new NounAndAnchorSentenceAligner();
+		SentenceAlignmentAlgorithm[] algorithms = new SentenceAlignmentAlgorithm[] {
+				allPairs, new InvertedIndexSentenceAligner(allPairs), new JaccardSentenceAligner(), new MinHashSentenceAligner(64, 32, false) };
+		
+		// warm up
+		for (int i = 0; i < iterations / 10; i++) {
+			for (SentenceAlignmentAlgorithm algorithm : algorithms) {
+				getAlignedPairs(algorithm.getBestMatchingSentences(diffingSentences), null);
+			}
+		}
+		
+		for (SentenceAlignmentAlgorithm algorithm : algorithms) {
+			StopWatch stopWatch = new StopWatch();
+			stopWatch.start();
+			for (int i = 0; i < iterations; i++) {
+				getAlignedPairs(algorithm.getBestMatchingSentences(diffingSentences), null);
+			}
+			stopWatch.stop();
+			System.out.println(algorithm.getClass().getSimpleName() + ": " + stopWatch.getFormattedTime() + " (" + iterations + " iterations)");
+		}
+	}
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.test.mediawiki;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Type;
+import org.apache.uima.collection.CasConsumerDescription;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.XMLInputSource;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import de.csw.expertfinder.mediawiki.uima.MediaWikiExpertFinderConsumer;
+import de.csw.expertfinder.mediawiki.uima.MergedAnnotationIterator;
+import de.csw.expertfinder.mediawiki.uima.types.ArticleRevisionInfo;
+import de.csw.expertfinder.mediawiki.uima.types.markup.ExternalLink;
+import de.csw.expertfinder.mediawiki.uima.types.markup.InternalLink;
+import de.csw.expertfinder.mediawiki.uima.types.markup.Paragraph;
+import de.csw.expertfinder.mediawiki.uima.types.markup.Reference;
+import de.csw.expertfinder.mediawiki.uima.types.markup.Section;
+import de.csw.expertfinder.mediawiki.uima.types.markup.Tag;
+import de.csw.expertfinder.test.util.StopWatch;
+import de.csw.expertfinder.uima.types.Noun;
+import de.csw.expertfinder.uima.types.OntologyConcept;
+import de.csw.expertfinder.uima.types.Sentence;
+import de.csw.expertfinder.uima.types.Word;
+
+/**
+ * Tests the {@link MergedAnnotationIterator} used by the
+ * {@link MediaWikiExpertFinderConsumer} on a CAS annotated like the revisions
+ * of a wiki article (src-test/Wiki.txt). Run {@link #main(String[])} for a
+ * comparison of the iteration times.
+ * 
+ * @author ralph
+ */
+public class TestAnnotationIteration {
+	
+	private static final Pattern SECTION = Pattern.compile("^(=+)([^=]+)=+\\s*$", Pattern.MULTILINE);
+	private static final Pattern PARAGRAPH = Pattern.compile("[^\\n]+");
+	private static final Pattern SENTENCE = Pattern.compile("[^.!?\\n]+[.!?]?");
+	private static final Pattern WORD = Pattern.compile("\\w+");
+	private static final Pattern INTERNAL_LINK = Pattern.compile("\\[\\[[^\\]]*\\]\\]");
+	private static final Pattern EXTERNAL_LINK = Pattern.compile("\\[http[^\\]]*\\]");
+	private static final Pattern TAG = Pattern.compile("\\{\\{[^}]*\\}\\}|<[^>]+>");
+	
+	private JCas jCas;
+	
+	@BeforeClass
+	public void setUp() throws Exception {
+		jCas = createCas();
+	}
+	
+	/**
+	 * Creates a CAS with the type system of the consumer and annotates the
+	 * test article with revision info, sections, paragraphs, sentences, words,
+	 * nouns, concepts, links and tags.
+	 */
+	private static JCas createCas() throws Exception {
+		CasConsumerDescription description = UIMAFramework.getXMLParser().parseCasConsumerDescription(
+				new XMLInputSource(new File("desc/ExpertFinderConsumerDescriptor.xml")));
+		CAS cas = CasCreationUtils.createCas(description.getCasConsumerMetaData());
+		JCas jCas = cas.getJCas();
+		String text = FileUtils.readFileToString(new File("src-test/Wiki.txt"), "UTF-8");
+		jCas.setDocumentText(text);
+		
+		ArticleRevisionInfo revisionInfo = new ArticleRevisionInfo(jCas, 0, text.length());
+		revisionInfo.setArticleId(1);
+		revisionInfo.setRevisionId(1);
+		revisionInfo.setTitle("JFace");
+		revisionInfo.addToIndexes();
+		
+		// each section spans up to the next heading
+		Matcher m = SECTION.matcher(text);
+		ArrayList<int[]> headings = new ArrayList<int[]>();
+		while (m.find()) {
+			headings.add(new int[] {m.start(), m.group(1).length()});
+		}
+		for (int i = 0; i < headings.size(); i++) {
+			int end = i + 1 < headings.size() ? headings.get(i + 1)[0] : text.length();
+			Section section = new Section(jCas, headings.get(i)[0], end);
+			section.setLevel(headings.get(i)[1] - 1);
+			section.setTitle("Section " + i);
+			section.addToIndexes();
+		}
+		
+		m = PARAGRAPH.matcher(text);
+		while (m.find()) {
+			new Paragraph(jCas, m.start(), m.end()).addToIndexes();
+			Matcher s = SENTENCE.matcher(m.group());
+			while (s.find()) {
+				new Sentence(jCas, m.start() + s.start(), m.start() + s.end()).addToIndexes();
+			}
+		}
+		
+		m = WORD.matcher(text);
+		int count = 0;
+		while (m.find()) {
+			Word word;
+			if (count++ % 3 == 0) {
+				word = new Noun(jCas, m.start(), m.end());
+				new OntologyConcept(jCas, m.start(), m.end()).addToIndexes();
+			} else {
+				word = new Word(jCas, m.start(), m.end());
+			}
+			word.setLemma(m.group());
+			word.setWordStem(m.group().toLowerCase());
+			word.addToIndexes();
+		}
+		
+		m = INTERNAL_LINK.matcher(text);
+		while (m.find()) {
+			new InternalLink(jCas, m.start(), m.end()).addToIndexes();
+		}
+		m = EXTERNAL_LINK.matcher(text);
+		while (m.find()) {
+			new ExternalLink(jCas, m.start(), m.end()).addToIndexes();
+			new Reference(jCas, m.start(), m.end()).addToIndexes();
+		}
+		m = TAG.matcher(text);
+		while (m.find()) {
+			new Tag(jCas, m.start(), m.end()).addToIndexes();
+		}
+		return jCas;
+	}
+	
+	/**
+	 * The merged iterator must return exactly the annotations of the requested
+	 * types, ordered by their positions.
+	 */
+	@Test
+	public void testMergedOrder() {
+		List<Annotation> expected = new ArrayList<Annotation>();
+		for (FSIterator iter = jCas.getAnnotationIndex().iterator(); iter.hasNext(); ) {
+			Annotation annot = (Annotation)iter.next();
+			if (annot instanceof ArticleRevisionInfo || annot instanceof Section || annot instanceof Sentence || annot instanceof Word)
+				expected.add(annot);
+		}
+		
+		List<Annotation> merged = new ArrayList<Annotation>();
+		Iterator<Annotation> iter = new MergedAnnotationIterator(jCas, ArticleRevisionInfo.type, Section.type, Sentence.type, Word.type);
+		Annotation previous = null;
+		while (iter.hasNext()) {
+			Annotation annot = iter.next();
+			if (previous != null) {
+				assert previous.getBegin() < annot.getBegin() || 
+					previous.getBegin() == annot.getBegin() && previous.getEnd() >= annot.getEnd() : annot + " after " + previous;
+			}
+			merged.add(annot);
+			previous = annot;
+		}
+		
+		assert merged.size() == expected.size();
+		assert merged.containsAll(expected);
+		assert merged.get(0) instanceof ArticleRevisionInfo;
+	}
+	
+	/**
+	 * Iterates over the whole annotation index and dispatches by type, as the
+	 * consumer used to do.
+	 * @return the number of annotations handled.
+	 */
+	private static int iterateAll(JCas jCas) {
+		Type articleRevisionInfoType = jCas.getCasType(ArticleRevisionInfo.type);
+		Type paragraphType = jCas.getCasType(Paragraph.type);
+		Type sectionType = jCas.getCasType(Section.type);
+		Type sentenceType = jCas.getCasType(Sentence.type);
+		Type wordType = jCas.getCasType(Word.type);
+		Type nounType = jCas.getCasType(Noun.type);
+		Type ontologyConceptType = jCas.getCasType(OntologyConcept.type);
+		Type internalLinkType = jCas.getCasType(InternalLink.type);
+		Type externalLinkType = jCas.getCasType(ExternalLink.type);
+		Type referenceType = jCas.getCasType(Reference.type);
+		Type tagType = jCas.getCasType(Tag.type);
+		
+		int handled = 0;
+		for (FSIterator iter = jCas.getAnnotationIndex().iterator(); iter.hasNext(); ) {
+			Annotation annot = (Annotation)iter.next();
+			Type type = annot.getType();
+			if (type == articleRevisionInfoType || type == sectionType || type == nounType || type == wordType || type == sentenceType) {
+				handled++;
+			} else if (type == paragraphType || type == ontologyConceptType || type == internalLinkType 
+					|| type == externalLinkType || type == referenceType || type == tagType) {
+				annot.getBegin();
+			}
+		}
+		return handled;
+	}
+	
+	private static int iterateMerged(JCas jCas) {
+		Type articleRevisionInfoType = jCas.getCasType(ArticleRevisionInfo.type);
+		Type sectionType = jCas.getCasType(Section.type);
+		Type sentenceType = jCas.getCasType(Sentence.type);
+		Type wordType = jCas.getCasType(Word.type);
+		Type nounType = jCas.getCasType(Noun.type);
+		
+		int handled = 0;
+		Iterator<Annotation> iter = new MergedAnnotationIterator(jCas, ArticleRevisionInfo.type, Section.type, Sentence.type, Word.type);
+		while (iter.hasNext()) {
+			Type type = iter.next().getType();
+			if (type == articleRevisionInfoType || type == sectionType || type == nounType || type == wordType || type == sentenceType) {
+				handled++;
+			}
+		}
+		return handled;
+	}
+	
+	/**
+	 * Compares the time needed to iterate over the annotations of the test
+	 * article by the whole annotation index and by the merged type-specific
+	 * indexes.
+	 * @param args the number of iterations (default: 2000).
+	 */
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		JCas jCas = createCas();
+		System.out.println(jCas.getAnnotationIndex().size() + " annotations, " + iterateMerged(jCas) + " of them handled by the consumer");
+		
+		// warm up
+		for (int i = 0; i < iterations / 10; i++) {
+			iterateAll(jCas);
+			iterateMerged(jCas);
+		}
+		
+		StopWatch all = new StopWatch();
+		all.start();
+		for (int i = 0; i < iterations; i++) {
+			iterateAll(jCas);
+		}
+		all.stop();
+		
+		StopWatch merged = new StopWatch();
+		merged.start();
+		for (int i = 0; i < iterations; i++) {
+			iterateMerged(jCas);
+		}
+		merged.stop();
+		
+		System.out.println("whole annotation index: " + all.getFormattedTime() + ", merged type indexes: " + merged.getFormattedTime() + 
+				" (" + iterations + " iterations)");
+	}
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * This file is part of the Corporate Semantic Web Project at Freie Universitaet Berlin.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Corporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.expertfinder.test.ontology;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.hp.hpl.jena.ontology.OntClass;
+
+import de.csw.expertfinder.config.Config;
+import de.csw.expertfinder.ontology.LabelMatcher;
+import de.csw.expertfinder.ontology.OntologyIndex;
+import de.csw.expertfinder.test.util.StopWatch;
+
+/**
+ * Tests the {@link LabelMatcher} against
+ * {@link OntologyIndex#getClassesMatchingTerms(List)}. Run
+ * {@link #main(String[])} for a comparison of the matching times.
+ * 
+ * @author ralph
+ */
+public class TestLabelMatcher {
+	
+	private static final String SENTENCE = "In corporate semantic collaboration we research methods and tools to model knowledge collaboratively and share it in a company. Current tools support collaboration only on selected datatypes, e.g., group calendar, and files, e.g., document archive. In Corporate Ontology Engineering we examine Ontology Engineering in Corporate Environments";
+	
+	@BeforeClass
+	public void setUp() {
+		Config.read(TestLabelMatcher.class.getResourceAsStream("/conf/ExpertFinder.properties"));
+		OntologyIndex.get().load(TestLabelMatcher.class.getResource("test.owl"));
+	}
+	
+	@Test
+	public void testLongestMatches() {
+		OntologyIndex oi = OntologyIndex.get();
+		List<String> words = Arrays.asList(SENTENCE.split(OntologyIndex.DELIMITER_PATTERN_STRING));
+		
+		OntClass[] expected = matchByIndex(oi, words);
+		OntClass[] actual = matchByMatcher(oi.getLabelMatcher(), words);
+		
+		assert(Arrays.equals(expected, actual));
+		// the first word is matched as well
+		assert(matchByMatcher(oi.getLabelMatcher(), words.subList(1, words.size()))[0] != null);
+	}
+	
+	/**
+	 * Assigns to each word the class of the longest label matching the words
+	 * starting at it, if any, looked up by
+	 * {@link OntologyIndex#getClassesMatchingTerms(List)}. Words matched at
+	 * several positions get the class of the last match.
+	 */
+	private static OntClass[] matchByIndex(OntologyIndex oi, List<String> words) {
+		int maxTermSize = oi.getMaximumCompoundTermSize();
+		OntClass[] result = new OntClass[words.size()];
+		for (int start = 0; start < words.size(); start++) {
+			ArrayList<String> window = new ArrayList<String>(words.subList(start, Math.min(start + maxTermSize, words.size())));
+			Map<OntClass, Integer> matches = oi.getClassesMatchingTerms(window);
+			OntClass best = null;
+			int longest = -1;
+			for (Map.Entry<OntClass, Integer> match : matches.entrySet()) {
+				if (match.getValue() > longest) {
+					best = match.getKey();
+					longest = match.getValue();
+				}
+			}
+			for (int i = 0; i <= longest; i++) {
+				result[start + i] = best;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Like {@link #matchByIndex(OntologyIndex, List)}, but slides a ring
+	 * buffer of token ids over the words like the consumer does.
+	 */
+	private static OntClass[] matchByMatcher(LabelMatcher matcher, List<String> words) {
+		int maxTermSize = matcher.getMaximumLength();
+		OntClass[] result = new OntClass[words.size()];
+		int[] tokens = new int[maxTermSize];
+		int head = 0;
+		int count = 0;
+		int next = 0;
+		for (int start = 0; start < words.size(); start++) {
+			while (count < maxTermSize && next < words.size()) {
+				tokens[(head + count) % maxTermSize] = matcher.getTokenId(words.get(next++));
+				count++;
+			}
+			int match = matcher.match(tokens, head, count);
+			if (match != LabelMatcher.NO_MATCH) {
+				int length = matcher.getLength(match);
+				for (int i = 0; i < length; i++) {
+					result[start + i] = matcher.getOntClass(match);
+				}
+			}
+			head = (head + 1) % maxTermSize;
+			count--;
+		}
+		return result;
+	}
+	
+	/**
+	 * Compares the time needed to match the words of the test article
+	 * (src-test/Wiki.txt) and the test sentence by
+	 * {@link OntologyIndex#getClassesMatchingTerms(List)} and by the
+	 * {@link LabelMatcher}.
+	 * @param args the number of iterations (default: 200).
+	 */
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		new TestLabelMatcher().setUp();
+		OntologyIndex oi = OntologyIndex.get();
+		LabelMatcher matcher = oi.getLabelMatcher();
+		
+		String text = FileUtils.readFileToString(new File("src-test/Wiki.txt"), "UTF-8") + " " + SENTENCE;
+		List<String> words = Arrays.asList(text.split(OntologyIndex.DELIMITER_PATTERN_STRING));
+		System.out.println(words.size() + " words");
+		
+		// warm up
+		for (int i = 0; i < iterations / 10; i++) {
+			matchByIndex(oi, words);
+			matchByMatcher(matcher, words);
+		}
+		
+		StopWatch index = new StopWatch();
+		index.start();
+		for (int i = 0; i < iterations; i++) {
+			matchByIndex(oi, words);
+		}
+		index.stop();
+		
+		StopWatch ring = new StopWatch();
+		ring.start();
+		for (int i = 0; i < iterations; i++) {
+			matchByMatcher(matcher, words);
+		}
+		ring.stop();
+		
+		System.out.println("ontology index: " + index.getFormattedTime() + ", label matcher: " + ring.getFormattedTime() + 
+				" (" + iterations + " iterations)");
+	}
+}
@@ -28,23 +28,30 @@ package de.csw.expertfinder.test.persistence;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.testng.annotations.Test;
 
+import de.csw.expertfinder.diff.WordShifts;
 import de.csw.expertfinder.document.Author;
 import de.csw.expertfinder.document.Category;
 import de.csw.expertfinder.document.Concept;
 import de.csw.expertfinder.document.ConceptSimilarity;
 import de.csw.expertfinder.document.Document;
 import de.csw.expertfinder.document.DocumentCategory;
+import de.csw.expertfinder.document.Noun;
 import de.csw.expertfinder.document.PersistableEntity;
 import de.csw.expertfinder.document.Revision;
 import de.csw.expertfinder.document.Section;
+import de.csw.expertfinder.document.SectionConcept;
 import de.csw.expertfinder.document.Word;
+import de.csw.expertfinder.persistence.EntityResolver;
 import de.csw.expertfinder.persistence.PersistenceStoreFacade;
+import de.csw.expertfinder.util.SortedIntSet;
 
 /**
  * Tests the hibernate persistence store
@@ -154,6 +161,171 @@ public class TestPersistenceStore {
 		p.commitChanges();
 	}
 
+	/**
+	 * Tests that the latest revision is loaded with its current sections,
+	 * including those without words, and their current words.
+	 */
+	@Test
+	public void testLatestRevisionLoadFull() {
+		PersistenceStoreFacade p = PersistenceStoreFacade.get();
+		p.beginTransaction();
+
+		Document document = new Document(Integer.MAX_VALUE - 1, "Load Full");
+		Author author = new Author("Load Full");
+		Revision revision1 = new Revision((long)Integer.MAX_VALUE - 1, document, author, new Date());
+		Revision revision2 = new Revision((long)Integer.MAX_VALUE, document, author, new Date());
+		document.setLatestRevisionId(revision2.getId());
+		p.save(document);
+		p.save(author);
+		p.save(revision1);
+		p.save(revision2);
+
+		Section section1 = new Section("Section 1", 1, 0, 20);
+		section1.setRevisionCreated(revision1);
+		Section section2 = new Section("Section 2", 1, 20, 30);
+		section2.setRevisionCreated(revision2);
+		p.save(section1);
+		p.save(section2);
+
+		Word deletedWord = new Word("deleted", "delet", 0, 7);
+		deletedWord.setSection(section1);
+		deletedWord.setRevisionCreated(revision1);
+		deletedWord.setRevisionDeleted(revision2);
+		p.save(deletedWord);
+		for (int i = 2; i >= 1; i--) {
+			Word word = i == 1 ? new Noun("word" + i, "word" + i, i * 8, i * 8 + 5) : new Word("word" + i, "word" + i, i * 8, i * 8 + 5);
+			word.setSection(section1);
+			word.setRevisionCreated(revision1);
+			p.save(word);
+		}
+
+		Revision latestRevision = p.getLatestPersistedRevisionLoadFull(document);
+		try {
+			assert latestRevision == revision2;
+			List<Section> sections = latestRevision.getSections();
+			assert sections.size() == 2 : sections;
+			assert sections.get(0) == section1 && sections.get(1) == section2 : sections;
+			List<Word> words = section1.getWords();
+			assert words.size() == 2 : words;
+			assert words.get(0).getWord().equals("word1") && words.get(1).getWord().equals("word2") : words;
+			assert words.get(0) instanceof Noun && !(words.get(1) instanceof Noun);
+			assert section2.getWords().isEmpty();
+		} finally {
+			p.rollbackChanges();
+		}
+	}
+
+	@Test
+	public void testRevisionIds() {
+		PersistenceStoreFacade p = PersistenceStoreFacade.get();
+		p.beginTransaction();
+
+		Document document = new Document(Integer.MAX_VALUE - 1, "Revision Ids");
+		Author author = new Author("Revision Ids");
+		p.save(document);
+		p.save(author);
+		p.save(new Revision((long)Integer.MAX_VALUE, document, author, new Date()));
+		p.save(new Revision((long)Integer.MAX_VALUE - 2, document, author, new Date()));
+
+		try {
+			SortedIntSet revisionIds = p.getRevisionIds(document.getId());
+			assert revisionIds.size() == 2 : revisionIds;
+			assert revisionIds.contains(Integer.MAX_VALUE) && revisionIds.contains(Integer.MAX_VALUE - 2) : revisionIds;
+			assert !revisionIds.contains(Integer.MAX_VALUE - 1);
+			assert p.getRevisionIds((long)Integer.MAX_VALUE - 2).isEmpty();
+		} finally {
+			p.rollbackChanges();
+		}
+	}
+
+	/**
+	 * Tests that unchanged words are only written if they have moved, and
+	 * that words moved within their section are shifted by ranges, even if a
+	 * shifted range overlaps another range.
+	 */
+	@Test
+	public void testWordShifts() {
+		PersistenceStoreFacade p = PersistenceStoreFacade.get();
+		p.beginTransaction();
+
+		Document document = new Document(Integer.MAX_VALUE - 2, "Word Shifts");
+		Author author = new Author("Word Shifts");
+		Revision revision1 = new Revision((long)Integer.MAX_VALUE - 3, document, author, new Date());
+		Revision revision2 = new Revision((long)Integer.MAX_VALUE - 2, document, author, new Date());
+		p.save(document);
+		p.save(author);
+		p.save(revision1);
+		p.save(revision2);
+
+		Section oldSection = new Section("Section", 1, 0, 100);
+		oldSection.setRevisionCreated(revision1);
+		Section otherSection = new Section("Other Section", 1, 100, 200);
+		otherSection.setRevisionCreated(revision2);
+		p.save(oldSection);
+		p.save(otherSection);
+		
+		// a word deleted before, within the first range
+		Word deletedWord = new Word("deleted", "delet", 10, 14);
+		deletedWord.setSection(oldSection);
+		deletedWord.setRevisionCreated(revision1);
+		deletedWord.setRevisionDeleted(revision1);
+		p.save(deletedWord);
+		
+		ArrayList<Word> oldWords = new ArrayList<Word>();
+		for (int i = 0; i < 6; i++) {
+			Word word = new Word("word" + i, "word" + i, i * 10, i * 10 + 4);
+			word.setSection(oldSection);
+			word.setRevisionCreated(revision1);
+			p.save(word);
+			oldWords.add(word);
+		}
+		p.flush();
+		p.clearCache();
+		
+		Section newSection = new Section("Section", 1, 0, 100);
+		newSection.setId(oldSection.getId());
+		newSection.setRevisionCreated(revision1);
+		newSection.setConcepts(new HashSet<SectionConcept>());
+		
+		// word0 stays, word1 moves behind word3 and word4, which move ahead, word2 has
+		// been deleted and word5 moves to the other section.
+		int[] newPositions = {0, 30, -1, 25, 35, 110};
+		HashMap<Word, Word> unchangedWords = new HashMap<Word, Word>();
+		for (int i = 0; i < 6; i++) {
+			if (newPositions[i] < 0)
+				continue;
+			Word oldWord = oldWords.get(i);
+			Word newWord = new Word(oldWord.getWord(), oldWord.getWordStem(), newPositions[i], newPositions[i] + 4);
+			newWord.setId(oldWord.getId());
+			newWord.setRevisionCreated(revision1);
+			newWord.setSection(i == 5 ? otherSection : newSection);
+			unchangedWords.put(oldWord, newWord);
+		}
+		
+		try {
+			List<Word> changedWords = WordShifts.track(oldWords, unchangedWords);
+			assert changedWords.size() == 1 && changedWords.get(0).getId().equals(oldWords.get(5).getId()) : changedWords;
+			assert newSection.getWordShiftCount() == 2 : newSection.getWordShiftCount();
+			
+			ArrayList<PersistableEntity<? extends Serializable>> objectsToSave = new ArrayList<PersistableEntity<? extends Serializable>>();
+			objectsToSave.add(newSection);
+			objectsToSave.addAll(changedWords);
+			p.saveAll(objectsToSave);
+			p.flush();
+			p.clearCache();
+			
+			int[] expectedPositions = {0, 30, 20, 25, 35, 110};
+			for (int i = 0; i < 6; i++) {
+				Word word = (Word)p.getEntity(oldWords.get(i).getId(), Word.class);
+				assert word.getStartPos() == expectedPositions[i] && word.getEndPos() == expectedPositions[i] + 4 : word;
+			}
+			Word word = (Word)p.getEntity(deletedWord.getId(), Word.class);
+			assert word.getStartPos() == 10 : word;
+		} finally {
+			p.rollbackChanges();
+		}
+	}
+
 	/**
 	 * Tests saving of a section and associated concepts (n-m relation)
 	 */
@@ -206,6 +378,66 @@ public class TestPersistenceStore {
 		p.commitChanges();
 	}
 
+	/**
+	 * Tests that nested units of work join the outer one and that a nested
+	 * unit of work that has not been committed prevents the outer commit.
+	 */
+	@Test
+	public void testNestedUnitOfWork() {
+		PersistenceStoreFacade p = PersistenceStoreFacade.get();
+		
+		p.beginUnitOfWork(false);
+		try {
+			p.beginUnitOfWork(true);
+			try {
+				p.getAuthor("Ralph");
+				// not committed
+			} finally {
+				p.endUnitOfWork();
+			}
+			try {
+				p.commitUnitOfWork();
+				assert false : "commit after a failed nested unit of work";
+			} catch (IllegalStateException expected) {
+			}
+		} finally {
+			p.endUnitOfWork();
+		}
+		
+		p.beginUnitOfWork(true);
+		try {
+			try {
+				p.beginUnitOfWork(false);
+				assert false : "read-write unit of work joined a read-only one";
+			} catch (IllegalStateException expected) {
+			}
+			p.commitUnitOfWork();
+		} finally {
+			p.endUnitOfWork();
+		}
+	}
+
+	@Test
+	public void testEntityResolver() {
+		PersistenceStoreFacade p = PersistenceStoreFacade.get();
+		EntityResolver resolver = p.getEntityResolver();
+		String uri = "http://www.example.org/test#ResolverConcept";
+		
+		p.beginTransaction();
+		Concept concept = resolver.getOrCreateConcept(uri);
+		assert resolver.getOrCreateConcept(uri) == concept : "concept created twice";
+		resolver.revisionStored(Integer.MAX_VALUE, 2);
+		assert resolver.isNewRevision(Integer.MAX_VALUE, 3);
+		assert !resolver.isNewRevision(Integer.MAX_VALUE, 2);
+		p.rollbackChanges();
+		resolver.rolledBack();
+		
+		p.beginTransaction();
+		assert resolver.getConcept(uri) == null : "concept of a rolled back transaction";
+		assert resolver.getDocument(Integer.MAX_VALUE) == null;
+		p.endTransaction();
+	}
+	
 //	@Test
 	public void testConceptSimilarities() {
 		PersistenceStoreFacade p = PersistenceStoreFacade.get();